@@ -0,0 +1,85 @@
+package ru.lidzhiev.bankcards;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result ({@code -rf json}) with a stored baseline in the same format and exits with
+ * status 1 when a benchmark regressed by more than the threshold and the confidence intervals of the two runs
+ * ({@code score ± scoreError}) do not overlap, so that noisy benchmarks do not fail the comparison on their own.
+ * For throughput modes a lower score is a regression, for time modes a higher one. Benchmarks are matched by
+ * name plus parameters; benchmarks missing on either side, or measured in different units, are reported and skipped.
+ * <p>
+ * Usage: {@code BenchmarkBaselineComparator <result.json> <baseline.json> [threshold, default 0.10]}.
+ */
+public final class BenchmarkBaselineComparator {
+
+    private BenchmarkBaselineComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkBaselineComparator <result.json> <baseline.json> [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        Map<String, Score> results = read(Path.of(args[0]));
+        Map<String, Score> baseline = read(Path.of(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-80s %12s %12s %8s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, Score> entry : results.entrySet()) {
+            Score current = entry.getValue();
+            Score previous = baseline.get(entry.getKey());
+            if (previous == null) {
+                System.out.printf("%-80s %12s %12.3f %8s  %s%n", entry.getKey(), "-", current.value(), "-", "no baseline");
+                continue;
+            }
+            if (!previous.unit().equals(current.unit())) {
+                System.out.printf("%-80s unit changed from %s to %s, skipped%n", entry.getKey(), previous.unit(), current.unit());
+                continue;
+            }
+            double change = (current.value() - previous.value()) / previous.value();
+            boolean regressed = current.higherIsBetter()
+                    ? change < -threshold && current.value() + current.error() < previous.value() - previous.error()
+                    : change > threshold && current.value() - current.error() > previous.value() + previous.error();
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-80s %12.3f %12.3f %+7.1f%%  %s%s%n", entry.getKey(), previous.value(), current.value(),
+                    change * 100, current.unit(), regressed ? "  REGRESSION" : "");
+        }
+        baseline.keySet().stream()
+                .filter(name -> !results.containsKey(name))
+                .forEach(name -> System.out.printf("%-80s not run%n", name));
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+        System.out.printf("No regressions beyond %.0f%%%n", threshold * 100);
+    }
+
+    private static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(Files.readAllBytes(file))) {
+            StringBuilder name = new StringBuilder(run.path("benchmark").asText());
+            run.path("params").fields().forEachRemaining(param ->
+                    name.append(':').append(param.getKey()).append('=').append(param.getValue().asText()));
+            JsonNode metric = run.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble();
+            scores.put(name.toString(), new Score(metric.path("score").asDouble(), Double.isNaN(error) ? 0 : error,
+                    metric.path("scoreUnit").asText(), "thrpt".equals(run.path("mode").asText())));
+        }
+        return scores;
+    }
+
+    private record Score(double value, double error, String unit, boolean higherIsBetter) {
+    }
+}
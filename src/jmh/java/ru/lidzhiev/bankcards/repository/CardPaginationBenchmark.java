@@ -0,0 +1,115 @@
+package ru.lidzhiev.bankcards.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OFFSET pagination ({@code /api/cards/me/paged}) against keyset pagination ({@code /api/cards/me/cursor})
+ * at increasing depth, on an in-memory H2 database with the cards/users schema from the Liquibase changelog.
+ * The SQL mirrors what Hibernate generates for {@code findViewsByOwnerUsername(username, pageable)} (page query
+ * plus count query) and for the owner lookup plus {@code findViewsByOwnerIdAfter}. H2 result reuse is disabled, otherwise repeated
+ * identical queries would be answered from its cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardPaginationBenchmark {
+    private static final int CARDS = 200_000;
+    private static final int PAGE_SIZE = 20;
+    private static final String USERNAME = "owner";
+
+    private static final String OFFSET_SQL = "select c.id, c.number, c.expire_at, c.status, c.balance, u.username " +
+            "from cards c join users u on u.id = c.user_id where u.username = ? order by c.id offset ? rows fetch first ? rows only";
+    private static final String COUNT_SQL = "select count(c.id) from cards c join users u on u.id = c.user_id where u.username = ?";
+    private static final String USER_ID_SQL = "select u.id from users u where u.username = ?";
+    private static final String KEYSET_SQL = "select c.id, c.number, c.expire_at, c.status, c.balance, u.username " +
+            "from cards c join users u on u.id = c.user_id where c.user_id = ? and c.id > ? order by c.user_id, c.id fetch first ? rows only";
+
+    @Param({"0", "10000", "190000"})
+    public int offset;
+
+    private Connection connection;
+    private long afterId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:pagination;MODE=PostgreSQL;OPTIMIZE_REUSE_RESULTS=FALSE", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table users (id bigint generated by default as identity primary key, username varchar(100) not null unique)");
+            statement.execute("create table cards (id bigint generated by default as identity primary key, number varchar(16) not null, " +
+                    "expire_at date not null, status varchar(50) not null, balance decimal(15,2) not null, user_id bigint not null, " +
+                    "constraint fk_cards_users foreign key (user_id) references users (id))");
+            statement.execute("create index idx_cards_user_id_id on cards (user_id, id)");
+            statement.execute("insert into users (username) values ('other')");
+            statement.execute("insert into users (username) values ('" + USERNAME + "')");
+            // every tenth card belongs to another user, so the owner's cards are interleaved with foreign ones
+            statement.execute("insert into cards (number, expire_at, status, balance, user_id) " +
+                    "select lpad(x, 16, '0'), date '2030-01-01', 'ACTIVE', 100.00, case when mod(x, 10) = 0 then 1 else 2 end " +
+                    "from system_range(1, " + (CARDS * 10 / 9) + ")");
+        }
+        if (offset == 0) {
+            afterId = 0;
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select c.id from cards c join users u on u.id = c.user_id where u.username = ? order by c.id offset ? rows fetch first 1 rows only")) {
+            statement.setString(1, USERNAME);
+            statement.setInt(2, offset - 1);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                afterId = resultSet.getLong(1);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void offsetPage(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(OFFSET_SQL)) {
+            statement.setString(1, USERNAME);
+            statement.setInt(2, offset);
+            statement.setInt(3, PAGE_SIZE);
+            consume(statement, blackhole);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(COUNT_SQL)) {
+            statement.setString(1, USERNAME);
+            consume(statement, blackhole);
+        }
+    }
+
+    @Benchmark
+    public void keysetPage(Blackhole blackhole) throws SQLException {
+        long ownerId;
+        try (PreparedStatement statement = connection.prepareStatement(USER_ID_SQL)) {
+            statement.setString(1, USERNAME);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                ownerId = resultSet.getLong(1);
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(KEYSET_SQL)) {
+            statement.setLong(1, ownerId);
+            statement.setLong(2, afterId);
+            statement.setInt(3, PAGE_SIZE + 1);
+            consume(statement, blackhole);
+        }
+    }
+
+    private static void consume(PreparedStatement statement, Blackhole blackhole) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getLong(1));
+            }
+        }
+    }
+}
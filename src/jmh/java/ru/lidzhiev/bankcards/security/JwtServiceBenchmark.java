@@ -0,0 +1,89 @@
+package ru.lidzhiev.bankcards.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of JWT authentication as done by {@link JwtAuthenticationFilter}:
+ * {@code extractUserName} followed by {@code isTokenValid}, and the cost of issuing a token on sign-in.
+ * <ul>
+ *     <li>{@code generate} - {@link JwtService#generateToken} (claims, HMAC signature, serialization);</li>
+ *     <li>{@code legacy} - the previous implementation: the key is decoded and the token is parsed and verified
+ *     three times per request;</li>
+ *     <li>{@code singleVerification} - one parse with a prebuilt key and parser, i.e. a claims cache miss;</li>
+ *     <li>{@code cached} - the current {@link JwtService}, where the token has already been seen.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+    private static final String SECRET = "976158266ca2e3a13918e4d3fc067e8f9113a300ba1f6f7539ff6f3085e1a79a";
+
+    private JwtService jwtService;
+    private User user;
+    private String token;
+    private JwtParser parser;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "jwtSigningKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "tokenExpirationHours", 24);
+        ReflectionTestUtils.setField(jwtService, "claimsCacheMaxSize", 10_000L);
+        jwtService.init();
+
+        user = new User();
+        user.setId(1L);
+        user.setUsername("bench");
+        user.setUserRole(UserRole.ROLE_USER);
+        token = jwtService.generateToken(user);
+        parser = Jwts.parser().verifyWith(legacyKey()).build();
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        String username = legacyClaims(token).getSubject();
+        return username.equals(user.getUsername())
+                && legacyClaims(token).getSubject().equals(user.getUsername())
+                && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public Claims singleVerification() {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    @Benchmark
+    public boolean cached() {
+        String username = jwtService.extractUserName(token);
+        return !username.isEmpty() && jwtService.isTokenValid(token, user);
+    }
+
+    private static Claims legacyClaims(String token) {
+        return Jwts.parser().verifyWith(legacyKey()).build().parseSignedClaims(token).getPayload();
+    }
+
+    private static SecretKey legacyKey() {
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+    }
+}
@@ -0,0 +1,66 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.openjdk.jmh.annotations.*;
+import ru.lidzhiev.bankcards.service.impl.CardNumberAllocatorImpl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of producing one card number.
+ * <ul>
+ *     <li>{@code legacy} - the removed {@code RandomCardNumber}: 16 calls to {@code Math.random()},
+ *     whose shared generator is a single CAS-updated seed, no Luhn digit and no uniqueness;</li>
+ *     <li>{@code allocator} - {@link CardNumberAllocatorImpl} with an in-memory block source
+ *     (one sequence call per 1000 numbers in production);</li>
+ *     <li>{@code *Contended} - the same with four threads.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberAllocatorBenchmark {
+    private static final int BLOCK_SIZE = 1000;
+
+    private CardNumberAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        AtomicLong sequence = new AtomicLong();
+        allocator = new CardNumberAllocatorImpl(() -> sequence.getAndAdd(BLOCK_SIZE) % 900_000_000L, "220070",
+                "benchmark-key", BLOCK_SIZE);
+    }
+
+    @Benchmark
+    public String legacy() {
+        return legacyNumber();
+    }
+
+    @Benchmark
+    public String allocator() {
+        return allocator.nextNumber();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String legacyContended() {
+        return legacyNumber();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String allocatorContended() {
+        return allocator.nextNumber();
+    }
+
+    private static String legacyNumber() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            sb.append((int) (Math.random() * 10));
+        }
+        return sb.toString();
+    }
+}
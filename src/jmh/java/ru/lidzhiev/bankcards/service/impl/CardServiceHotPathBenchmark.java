@@ -0,0 +1,83 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.lidzhiev.bankcards.dto.CardDto;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory parts of the card and transfer paths, without the database.
+ * <ul>
+ *     <li>{@code toDto} - {@link CardServiceImpl#toDto(Card)}: masking plus DTO construction;</li>
+ *     <li>{@code validateTransfer} - the checks of {@link TransferServiceImpl} for a valid transfer;</li>
+ *     <li>{@code validateTransferRejected} - the same checks failing with insufficient funds,
+ *     dominated by constructing the {@link CardOperationException} and its stack trace.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardServiceHotPathBenchmark {
+
+    private CardServiceImpl cardService;
+    private Card from;
+    private Card to;
+    private TransferRequestDto validRequest;
+    private TransferRequestDto overdraftRequest;
+
+    @Setup
+    public void setUp() {
+        cardService = new CardServiceImpl(null, null, null, null, null, null, new SimpleMeterRegistry());
+
+        User owner = new User();
+        owner.setId(1L);
+        owner.setUsername("bench");
+        from = card(1L, "2200701234567890", owner, "1000.00");
+        to = card(2L, "2200709876543210", owner, "0.00");
+        validRequest = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("10.00"));
+        overdraftRequest = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("5000.00"));
+    }
+
+    @Benchmark
+    public CardDto toDto() {
+        return cardService.toDto(from);
+    }
+
+    @Benchmark
+    public boolean validateTransfer() {
+        TransferServiceImpl.validateTransfer(validRequest, from, to);
+        return true;
+    }
+
+    @Benchmark
+    public Object validateTransferRejected() {
+        try {
+            TransferServiceImpl.validateTransfer(overdraftRequest, from, to);
+            return null;
+        } catch (CardOperationException e) {
+            return e;
+        }
+    }
+
+    private static Card card(Long id, String number, User owner, String balance) {
+        Card card = new Card();
+        card.setId(id);
+        card.setNumber(number);
+        card.setOwner(owner);
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setExpireAt(LocalDate.of(2030, 1, 31));
+        card.setBalance(Money.of(balance));
+        return card;
+    }
+}
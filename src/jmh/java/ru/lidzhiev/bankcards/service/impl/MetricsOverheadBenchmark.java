@@ -0,0 +1,77 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import ru.lidzhiev.bankcards.config.ServiceMetricsAspect;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of the metrics layer with a Prometheus registry.
+ * <ul>
+ *     <li>{@code direct} - a trivial service method without instrumentation;</li>
+ *     <li>{@code timedProxy} - the same method behind a Spring AOP proxy with {@link ServiceMetricsAspect},
+ *     i.e. proxy dispatch plus a histogram timer update;</li>
+ *     <li>{@code transferOutcome}, {@code lockWait} - {@link TransferMetrics} around a trivial operation.</li>
+ * </ul>
+ * The overhead of a call is the difference to {@code direct}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    /**
+     * Stand-in for a service bean; lives in {@code service.impl} so the aspect's pointcut matches it.
+     */
+    public static class Target {
+        public long call(long value) {
+            return value * 31 + 7;
+        }
+    }
+
+    private Target target;
+    private Target timedTarget;
+    private TransferMetrics transferMetrics;
+    private long value;
+
+    @Setup
+    public void setUp() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        target = new Target();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new Target());
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new ServiceMetricsAspect(registry));
+        timedTarget = proxyFactory.getProxy();
+        transferMetrics = new TransferMetrics(registry, "benchmark");
+        timedTarget.call(1);
+        if (registry.find("bank.service.method").timers().isEmpty()) {
+            throw new IllegalStateException("ServiceMetricsAspect did not apply to the benchmark target");
+        }
+    }
+
+    @Benchmark
+    public long direct() {
+        return target.call(value++);
+    }
+
+    @Benchmark
+    public long timedProxy() {
+        return timedTarget.call(value++);
+    }
+
+    @Benchmark
+    public long transferOutcome() {
+        return transferMetrics.record(() -> target.call(value++));
+    }
+
+    @Benchmark
+    public long lockWait() {
+        return transferMetrics.lock(() -> target.call(value++));
+    }
+}
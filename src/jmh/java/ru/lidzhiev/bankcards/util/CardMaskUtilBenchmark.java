@@ -0,0 +1,24 @@
+package ru.lidzhiev.bankcards.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link CardMaskUtil#maskCardNumber}, called once per card in every card response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardMaskUtilBenchmark {
+
+    public String number = "2200701234567890";
+
+    @Benchmark
+    public String maskCardNumber() {
+        return CardMaskUtil.maskCardNumber(number);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.lidzhiev.bankcards.load;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.lidzhiev.bankcards.Application;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.dto.TransferResultDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.service.BatchTransferService;
+import ru.lidzhiev.bankcards.service.TransferService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput of the batch transfer path against single transfers on PostgreSQL.
+ * Boots the application without a web server, seeds {@code load.cards} cards of one user and applies the same
+ * {@code load.transfers} random transfers twice: one by one through {@link TransferService}, then as one batch
+ * through {@link BatchTransferService}.
+ * <p>
+ * The report lists transfers per second of both paths. The batch path must be at least {@code load.min-speedup}
+ * times faster, every batched transfer must complete and the total balance must be unchanged.
+ * <p>
+ * The database is an embedded PostgreSQL unless {@code load.jdbc-url} (with {@code load.jdbc-username},
+ * {@code load.jdbc-password}) points to a server; its tables must be empty or absent. System properties
+ * {@code load.property.<name>} are passed to the application as {@code <name>}, e.g.
+ * {@code -Dload.property.app.transfer.batch.chunk-size=1000}.
+ * Run with {@code mvn -Pload test -Dtest=BatchTransferLoadTest}.
+ */
+@Tag("load")
+class BatchTransferLoadTest {
+
+    private static final int CARDS = Integer.getInteger("load.cards", 100);
+    private static final int TRANSFERS = Integer.getInteger("load.transfers", 5_000);
+    private static final double MIN_SPEEDUP = Double.parseDouble(System.getProperty("load.min-speedup", "1.0"));
+    private static final Money INITIAL_BALANCE = Money.of("1000000.00");
+    private static final String PROPERTY_PREFIX = "load.property.";
+
+    @Test
+    void batchThroughputAgainstSingleTransfers() throws Exception {
+        String jdbcUrl = System.getProperty("load.jdbc-url");
+        try (EmbeddedPostgres postgres = jdbcUrl == null ? EmbeddedPostgres.builder().start() : null) {
+            List<String> properties = new ArrayList<>(List.of(
+                    "spring.datasource.url=" + (postgres != null ? postgres.getJdbcUrl("postgres", "postgres") : jdbcUrl),
+                    "spring.datasource.username=" + (postgres != null ? "postgres" : System.getProperty("load.jdbc-username", "postgres")),
+                    "spring.datasource.password=" + (postgres != null ? "" : System.getProperty("load.jdbc-password", "")),
+                    "spring.jpa.show-sql=false",
+                    "logging.level.root=WARN",
+                    "logging.level.org.springframework=WARN",
+                    "logging.level.ru.lidzhiev=INFO"));
+            int overrides = properties.size();
+            System.getProperties().stringPropertyNames().stream()
+                    .filter(name -> name.startsWith(PROPERTY_PREFIX))
+                    .forEach(name -> properties.add(name.substring(PROPERTY_PREFIX.length()) + "=" + System.getProperty(name)));
+
+            // command line arguments, so that they take precedence over application.yml
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                    .web(WebApplicationType.NONE)
+                    .run(properties.stream().map(property -> "--" + property).toArray(String[]::new))) {
+                JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+                TransferService transferService = context.getBean(TransferService.class);
+                BatchTransferService batchTransferService = context.getBean(BatchTransferService.class);
+                User owner = seedOwner(context);
+                List<Card> cards = seedCards(context, owner);
+                List<TransferRequestDto> requests = randomTransfers(cards, new Random(42));
+                BigDecimal before = totalBalance(jdbcTemplate);
+
+                long singleStart = System.nanoTime();
+                for (TransferRequestDto request : requests) {
+                    transferService.transfer(request);
+                }
+                long singleNanos = System.nanoTime() - singleStart;
+
+                long batchStart = System.nanoTime();
+                List<TransferResultDto> results = batchTransferService.transferBatch(requests, owner.getUsername());
+                long batchNanos = System.nanoTime() - batchStart;
+
+                double singleRate = TRANSFERS / (singleNanos / 1e9);
+                double batchRate = TRANSFERS / (batchNanos / 1e9);
+                System.out.printf("%n%d transfers between %d cards, %s%n", TRANSFERS, CARDS, properties.subList(overrides, properties.size()));
+                System.out.printf("single path %.0f/s, batch path %.0f/s, speedup %.2f%n", singleRate, batchRate, batchRate / singleRate);
+
+                assertEquals(TRANSFERS, results.size());
+                assertTrue(results.stream().allMatch(result -> TransferResultDto.COMPLETED.equals(result.getStatus())),
+                        "every batched transfer must complete");
+                assertEquals(0, before.compareTo(totalBalance(jdbcTemplate)), "total balance changed");
+                assertTrue(batchRate >= MIN_SPEEDUP * singleRate,
+                        String.format("batch path %.0f/s, single path %.0f/s", batchRate, singleRate));
+            }
+        }
+    }
+
+    private User seedOwner(ConfigurableApplicationContext context) {
+        User owner = new User();
+        owner.setUsername("load_batch");
+        owner.setEmail("load_batch@mail.com");
+        owner.setPassword("password");
+        owner.setUserRole(UserRole.ROLE_USER);
+        return context.getBean(UserRepository.class).save(owner);
+    }
+
+    private List<Card> seedCards(ConfigurableApplicationContext context, User owner) {
+        List<Card> cards = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setNumber(String.format("7%015d", i));
+            card.setExpireAt(LocalDate.now().plusYears(1));
+            card.setStatus(CardStatus.ACTIVE.name());
+            card.setBalance(INITIAL_BALANCE);
+            card.setOwner(owner);
+            cards.add(card);
+        }
+        return context.getBean(CardRepository.class).saveAll(cards);
+    }
+
+    private static List<TransferRequestDto> randomTransfers(List<Card> cards, Random random) {
+        List<TransferRequestDto> requests = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            int from = random.nextInt(CARDS);
+            int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+            requests.add(new TransferRequestDto(cards.get(from).getNumber(), cards.get(to).getNumber(), Money.ofMinor(1 + random.nextInt(1_000))));
+        }
+        return requests;
+    }
+
+    private static BigDecimal totalBalance(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject(
+                "SELECT (SELECT coalesce(sum(balance), 0) FROM cards) + (SELECT coalesce(sum(amount), 0) FROM card_balance_buckets)",
+                BigDecimal.class);
+    }
+}
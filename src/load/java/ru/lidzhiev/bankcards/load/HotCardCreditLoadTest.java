@@ -0,0 +1,210 @@
+package ru.lidzhiev.bankcards.load;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.lidzhiev.bankcards.Application;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.service.CardBalanceBucketService;
+import ru.lidzhiev.bankcards.service.TransferService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Credit throughput of a single hot card against PostgreSQL, with and without balance buckets.
+ * Boots the application without a web server, then for every thread count in {@code load.threads} lets that many
+ * threads transfer 1.00 each from their own payer card to one merchant card through {@link TransferService}
+ * for {@code load.duration-seconds} after {@code load.warmup-seconds} of warm-up. Each run gets a fresh merchant card:
+ * an ordinary one, then one with {@code load.buckets} balance buckets.
+ * <p>
+ * The report lists credits per second and the scaling over one thread for both cards. Credits to an ordinary card
+ * serialise on its row, so they stay flat as threads are added; credits to a bucketed card should grow close to
+ * linearly until the database runs out of cores. At the largest thread count the bucketed card must be at least
+ * {@code load.min-speedup} times faster than the ordinary one. Afterwards every merchant balance must equal the sum
+ * of its credits, also after its buckets have been removed, and the total balance must be unchanged.
+ * <p>
+ * The database is an embedded PostgreSQL unless {@code load.jdbc-url} (with {@code load.jdbc-username},
+ * {@code load.jdbc-password}) points to a server; its tables must be empty or absent. System properties
+ * {@code load.property.<name>} are passed to the application as {@code <name>}, e.g.
+ * {@code -Dload.property.app.transfer.lock-strategy=ATOMIC}.
+ * Run with {@code mvn -Pload test -Dtest=HotCardCreditLoadTest}.
+ */
+@Tag("load")
+class HotCardCreditLoadTest {
+
+    private static final int[] THREADS = Arrays.stream(System.getProperty("load.threads", "1,2,4,8,16").split(","))
+            .mapToInt(threads -> Integer.parseInt(threads.trim()))
+            .toArray();
+    private static final int BUCKETS = Integer.getInteger("load.buckets", 16);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 3);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 10);
+    private static final double MIN_SPEEDUP = Double.parseDouble(System.getProperty("load.min-speedup", "2.0"));
+    private static final String PAYER_BALANCE = "1000000.00";
+    private static final Money AMOUNT = Money.of("1.00");
+    private static final String PROPERTY_PREFIX = "load.property.";
+
+    private int nextCardNumber;
+
+    @Test
+    void creditThroughput() throws Exception {
+        assertTrue(BUCKETS >= 1, "load.buckets must be positive");
+
+        String jdbcUrl = System.getProperty("load.jdbc-url");
+        try (EmbeddedPostgres postgres = jdbcUrl == null ? EmbeddedPostgres.builder().start() : null) {
+            List<String> properties = new ArrayList<>(List.of(
+                    "spring.datasource.url=" + (postgres != null ? postgres.getJdbcUrl("postgres", "postgres") : jdbcUrl),
+                    "spring.datasource.username=" + (postgres != null ? "postgres" : System.getProperty("load.jdbc-username", "postgres")),
+                    "spring.datasource.password=" + (postgres != null ? "" : System.getProperty("load.jdbc-password", "")),
+                    "spring.jpa.show-sql=false",
+                    "logging.level.root=WARN",
+                    "logging.level.org.springframework=WARN",
+                    "logging.level.ru.lidzhiev=INFO"));
+            int overrides = properties.size();
+            System.getProperties().stringPropertyNames().stream()
+                    .filter(name -> name.startsWith(PROPERTY_PREFIX))
+                    .forEach(name -> properties.add(name.substring(PROPERTY_PREFIX.length()) + "=" + System.getProperty(name)));
+
+            // command line arguments, so that they take precedence over application.yml
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                    .web(WebApplicationType.NONE)
+                    .run(properties.stream().map(property -> "--" + property).toArray(String[]::new))) {
+                JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+                User owner = seedOwner(context);
+                BigDecimal before = totalBalance(jdbcTemplate);
+
+                double[] rowRates = new double[THREADS.length];
+                double[] bucketRates = new double[THREADS.length];
+                for (int i = 0; i < THREADS.length; i++) {
+                    rowRates[i] = run(context, owner, 0, THREADS[i]);
+                    bucketRates[i] = run(context, owner, BUCKETS, THREADS[i]);
+                }
+
+                System.out.printf("%n1 hot card, %d balance buckets, 1.00 per credit, %d s after %d s warm-up, %s%n",
+                        BUCKETS, DURATION_SECONDS, WARMUP_SECONDS, properties.subList(overrides, properties.size()));
+                System.out.printf("%8s %14s %9s %14s %9s %9s%n",
+                        "threads", "row credits/s", "scaling", "bucket cred/s", "scaling", "speedup");
+                for (int i = 0; i < THREADS.length; i++) {
+                    System.out.printf("%8d %14.1f %9.2f %14.1f %9.2f %9.2f%n", THREADS[i],
+                            rowRates[i], rowRates[i] / rowRates[0], bucketRates[i], bucketRates[i] / bucketRates[0],
+                            bucketRates[i] / rowRates[i]);
+                }
+
+                BigDecimal after = totalBalance(jdbcTemplate);
+                assertEquals(0, before.compareTo(after), "total balance changed");
+                int last = THREADS.length - 1;
+                assertTrue(bucketRates[last] >= MIN_SPEEDUP * rowRates[last],
+                        String.format("%d threads: %.1f credits/s with buckets, %.1f without", THREADS[last], bucketRates[last], rowRates[last]));
+            }
+        }
+    }
+
+    /**
+     * Credits a fresh merchant card from {@code threads} threads, each with its own payer card.
+     *
+     * @return measured credits per second.
+     */
+    private double run(ConfigurableApplicationContext context, User owner, int buckets, int threads) throws Exception {
+        CardRepository cardRepository = context.getBean(CardRepository.class);
+        CardBalanceBucketService balanceBuckets = context.getBean(CardBalanceBucketService.class);
+        TransferService transferService = context.getBean(TransferService.class);
+
+        Card merchant = cardRepository.save(card(owner, "0.00"));
+        List<Card> payers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            payers.add(card(owner, PAYER_BALANCE));
+        }
+        payers = cardRepository.saveAll(payers);
+        if (buckets > 0) {
+            balanceBuckets.resize(merchant.getId(), buckets);
+        }
+
+        long[] credits = new long[threads];
+        long[] measured = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                TransferRequestDto dto = new TransferRequestDto(payers.get(t).getNumber(), merchant.getNumber(), AMOUNT);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                        transferService.transfer(dto);
+                        credits[thread]++;
+                        if (now >= warmupEnd) {
+                            measured[thread]++;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(WARMUP_SECONDS + DURATION_SECONDS + 60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Money expected = Money.ofMinor(Arrays.stream(credits).sum() * AMOUNT.getMinorUnits());
+        assertEquals(expected, cardRepository.findById(merchant.getId()).orElseThrow().getTotalBalance(),
+                "merchant balance with " + buckets + " buckets and " + threads + " threads");
+        if (buckets > 0) {
+            // removing the buckets moves their credits into the card row
+            balanceBuckets.resize(merchant.getId(), 0);
+            assertEquals(expected, cardRepository.findById(merchant.getId()).orElseThrow().getBalance(),
+                    "merchant balance after removing the buckets");
+        }
+        return Arrays.stream(measured).sum() / (double) DURATION_SECONDS;
+    }
+
+    private User seedOwner(ConfigurableApplicationContext context) {
+        User owner = new User();
+        owner.setUsername("load_merchant");
+        owner.setEmail("load_merchant@mail.com");
+        owner.setPassword("password");
+        owner.setUserRole(UserRole.ROLE_USER);
+        return context.getBean(UserRepository.class).save(owner);
+    }
+
+    private Card card(User owner, String balance) {
+        Card card = new Card();
+        card.setNumber(String.format("8%015d", nextCardNumber++));
+        card.setExpireAt(LocalDate.now().plusYears(1));
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setBalance(Money.of(balance));
+        card.setOwner(owner);
+        return card;
+    }
+
+    private static BigDecimal totalBalance(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject(
+                "SELECT (SELECT coalesce(sum(balance), 0) FROM cards) + (SELECT coalesce(sum(amount), 0) FROM card_balance_buckets)",
+                BigDecimal.class);
+    }
+}
@@ -0,0 +1,163 @@
+package ru.lidzhiev.bankcards.load;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.lidzhiev.bankcards.Application;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.security.JwtService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares platform-thread and virtual-thread request handling under the same closed-loop workload:
+ * {@code load.clients} concurrent clients (5000 by default) each issue {@code load.requests-per-client}
+ * authenticated card list requests. Each mode boots its own application instance on a random port.
+ * Requests the client gave up on after {@link #CLIENT_TIMEOUT} are reported under status -1.
+ * Run with {@code mvn -Pload test -Dtest=ThreadModeLoadTest}.
+ */
+@Tag("load")
+class ThreadModeLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 5000);
+    private static final int REQUESTS_PER_CLIENT = Integer.getInteger("load.requests-per-client", 4);
+    private static final Duration CLIENT_TIMEOUT = Duration.ofSeconds(60);
+    private static final int CLIENT_GAVE_UP = -1;
+
+    @Test
+    void compareThreadModes() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%n%-9s %8s %10s %9s %9s %9s  %s%n", "mode", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "statuses");
+        System.out.println(platform);
+        System.out.println(virtual);
+
+        for (Result result : List.of(platform, virtual)) {
+            assertTrue(result.statuses.getOrDefault(200, 0) > 0, result.mode + ": no successful requests");
+            result.statuses.keySet().forEach(status -> assertTrue(status == 200 || status == 503 || status == CLIENT_GAVE_UP,
+                    result.mode + ": unexpected status " + status));
+        }
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.max-connections=" + (CLIENTS * 2),
+                        "server.tomcat.accept-count=" + CLIENTS)
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String token = seed(context);
+            return drive(virtualThreads ? "virtual" : "platform", URI.create("http://localhost:" + port + "/api/cards/me/cursor?size=5"), token);
+        }
+    }
+
+    private String seed(ConfigurableApplicationContext context) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        CardRepository cardRepository = context.getBean(CardRepository.class);
+        User user = new User();
+        user.setUsername("load_user");
+        user.setEmail("load_user@mail.com");
+        user.setPassword("password");
+        user.setUserRole(UserRole.ROLE_USER);
+        user = userRepository.save(user);
+        for (int i = 0; i < 5; i++) {
+            Card card = new Card();
+            card.setNumber("400000000000000" + i);
+            card.setExpireAt(LocalDate.now().plusYears(1));
+            card.setStatus(CardStatus.ACTIVE.name());
+            card.setBalance(Money.of("100.00"));
+            card.setOwner(user);
+            cardRepository.save(card);
+        }
+        return context.getBean(JwtService.class).generateToken(user);
+    }
+
+    private Result drive(String mode, URI uri, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token)
+                .timeout(CLIENT_TIMEOUT)
+                .GET()
+                .build();
+        long[] latencies = new long[CLIENTS * REQUESTS_PER_CLIENT];
+        AtomicInteger next = new AtomicInteger();
+        Map<Integer, Integer> statuses = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(CLIENTS);
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(clients.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        long begin = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException e) {
+                            status = CLIENT_GAVE_UP;
+                        }
+                        latencies[next.getAndIncrement()] = System.nanoTime() - begin;
+                        statuses.merge(status, 1, Integer::sum);
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.MINUTES);
+            }
+            long elapsed = System.nanoTime() - begin;
+            Arrays.sort(latencies);
+            return new Result(mode, latencies, elapsed, new TreeMap<>(statuses));
+        }
+    }
+
+    private record Result(String mode, long[] latencies, long elapsedNanos, Map<Integer, Integer> statuses) {
+
+        private double percentileMillis(double percentile) {
+            int index = (int) Math.ceil(percentile * latencies.length) - 1;
+            return latencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            double throughput = latencies.length / (elapsedNanos / 1_000_000_000.0);
+            return String.format("%-9s %8d %10.1f %9.1f %9.1f %9.1f  %s", mode, latencies.length, throughput,
+                    percentileMillis(0.50), percentileMillis(0.99), latencies[latencies.length - 1] / 1_000_000.0, statuses);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package ru.lidzhiev.bankcards.load;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.lidzhiev.bankcards.Application;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.security.JwtService;
+import ru.lidzhiev.bankcards.service.CardBalanceBucketService;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end transfer throughput against PostgreSQL: boots the application with its real configuration and
+ * Liquibase migrations, seeds {@code load.users} users owning {@code load.cards} cards and drives
+ * {@code POST /api/transfer} and {@code POST /api/cards/transfer} over HTTP.
+ * <p>
+ * The workload is open-loop: requests are started at a fixed rate of {@code load.rate} per second regardless of
+ * how many are still in flight, and latency is measured from the scheduled start, so a stalled server shows up as
+ * latency instead of silently lowering the offered load. {@code load.hot-fraction} of the transfers touch one of
+ * the first {@code load.hot-cards} cards (as source or destination), the rest pick cards uniformly;
+ * {@code load.card-endpoint-fraction} of the requests go to {@code /api/cards/transfer} between two cards of the
+ * same user. Requests of the first {@code load.warmup-seconds} are not measured. With {@code load.idempotency-keys=true}
+ * every request carries its own {@code Idempotency-Key}. With {@code load.hot-card-buckets} greater than 0 the hot cards
+ * get that many balance buckets.
+ * <p>
+ * The report lists per endpoint the achieved request rate, successful transfers per second, latency percentiles
+ * and status counts. Afterwards the total balance must be unchanged, no balance may be negative and every
+ * successful {@code /api/transfer} must have been journaled exactly once.
+ * <p>
+ * The database is an embedded PostgreSQL unless {@code load.jdbc-url} (with {@code load.jdbc-username},
+ * {@code load.jdbc-password}) points to a server; its tables must be empty or absent. System properties
+ * {@code load.property.<name>} are passed to the application as {@code <name>}, e.g.
+ * {@code -Dload.property.app.transfer.lock-strategy=ATOMIC}.
+ * Run with {@code mvn -Pload test -Dtest=TransferLoadTest}.
+ */
+@Tag("load")
+class TransferLoadTest {
+
+    private static final int USERS = Integer.getInteger("load.users", 100);
+    private static final int CARDS = Integer.getInteger("load.cards", 1000);
+    private static final int HOT_CARDS = Integer.getInteger("load.hot-cards", 10);
+    private static final double HOT_FRACTION = Double.parseDouble(System.getProperty("load.hot-fraction", "0.8"));
+    private static final double CARD_ENDPOINT_FRACTION = Double.parseDouble(System.getProperty("load.card-endpoint-fraction", "0.5"));
+    private static final int RATE = Integer.getInteger("load.rate", 100);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 10);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 30);
+    private static final String INITIAL_BALANCE = System.getProperty("load.initial-balance", "1000.00");
+    private static final boolean IDEMPOTENCY_KEYS = Boolean.getBoolean("load.idempotency-keys");
+    private static final int HOT_CARD_BUCKETS = Integer.getInteger("load.hot-card-buckets", 0);
+    private static final String PROPERTY_PREFIX = "load.property.";
+    private static final Duration CLIENT_TIMEOUT = Duration.ofSeconds(30);
+    private static final int CLIENT_GAVE_UP = -1;
+
+    private static final int TRANSFER = 0;
+    private static final int CARD_TRANSFER = 1;
+    private static final String[] ENDPOINTS = {"/api/transfer", "/api/cards/transfer"};
+    private static final int[] SUCCESS_STATUSES = {200, 204};
+
+    @Test
+    void transferThroughput() throws Exception {
+        assertTrue(HOT_CARDS >= 1 && HOT_CARDS <= USERS, "load.hot-cards must be between 1 and load.users");
+        assertTrue(CARDS >= 2 * USERS, "every user needs at least two cards, load.cards >= 2 * load.users");
+
+        String jdbcUrl = System.getProperty("load.jdbc-url");
+        try (EmbeddedPostgres postgres = jdbcUrl == null ? EmbeddedPostgres.builder().start() : null) {
+            List<String> properties = new ArrayList<>(List.of(
+                    "server.port=0",
+                    "spring.datasource.url=" + (postgres != null ? postgres.getJdbcUrl("postgres", "postgres") : jdbcUrl),
+                    "spring.datasource.username=" + (postgres != null ? "postgres" : System.getProperty("load.jdbc-username", "postgres")),
+                    "spring.datasource.password=" + (postgres != null ? "" : System.getProperty("load.jdbc-password", "")),
+                    "spring.jpa.show-sql=false",
+                    "logging.level.root=WARN",
+                    "logging.level.org.springframework=WARN",
+                    "logging.level.ru.lidzhiev=INFO"));
+            int overrides = properties.size();
+            System.getProperties().stringPropertyNames().stream()
+                    .filter(name -> name.startsWith(PROPERTY_PREFIX))
+                    .forEach(name -> properties.add(name.substring(PROPERTY_PREFIX.length()) + "=" + System.getProperty(name)));
+
+            // command line arguments, so that they take precedence over application.yml
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                    .run(properties.stream().map(property -> "--" + property).toArray(String[]::new))) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+                Fixture fixture = seed(context);
+                Ledger before = Ledger.read(jdbcTemplate);
+
+                Result result = drive(URI.create("http://localhost:" + port), fixture);
+
+                Ledger after = Ledger.read(jdbcTemplate);
+                System.out.printf("%n%d users, %d cards, %d hot cards (%.0f%% of transfers, %d balance buckets), %d req/s for %d s after %d s warm-up, idempotency keys %s, %s%n",
+                        USERS, CARDS, HOT_CARDS, HOT_FRACTION * 100, HOT_CARD_BUCKETS, RATE, DURATION_SECONDS, WARMUP_SECONDS, IDEMPOTENCY_KEYS,
+                        properties.subList(overrides, properties.size()));
+                System.out.printf("%-20s %8s %9s %11s %9s %9s %9s %9s %9s  %s%n",
+                        "endpoint", "requests", "req/s", "transfers/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+                for (int endpoint = 0; endpoint < ENDPOINTS.length; endpoint++) {
+                    System.out.println(result.report(endpoint));
+                }
+                long journaled = after.journaled - before.journaled;
+                long succeeded = result.count(TRANSFER, SUCCESS_STATUSES[TRANSFER]);
+                long abandoned = result.count(TRANSFER, CLIENT_GAVE_UP);
+                System.out.printf("total balance %s -> %s, negative balances %d, journaled transfers %d of %d succeeded and %d abandoned%n",
+                        before.totalBalance, after.totalBalance, after.negativeBalances, journaled, succeeded, abandoned);
+
+                assertEquals(0, before.totalBalance.compareTo(after.totalBalance), "total balance changed");
+                assertEquals(0, after.negativeBalances, "negative balances");
+                // a request the client gave up on may still have been committed
+                assertTrue(journaled >= succeeded && journaled <= succeeded + abandoned, "journaled transfers");
+                for (int endpoint = 0; endpoint < ENDPOINTS.length; endpoint++) {
+                    assertTrue(result.successes(endpoint) > 0, ENDPOINTS[endpoint] + ": no successful transfers");
+                    for (int status : result.statuses(endpoint).keySet()) {
+                        assertTrue(status < 500, ENDPOINTS[endpoint] + ": status " + status);
+                    }
+                }
+            }
+        }
+    }
+
+    private Fixture seed(ConfigurableApplicationContext context) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        CardRepository cardRepository = context.getBean(CardRepository.class);
+        JwtService jwtService = context.getBean(JwtService.class);
+
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("load_user_" + i);
+            user.setEmail("load_user_" + i + "@mail.com");
+            user.setPassword("password");
+            user.setUserRole(UserRole.ROLE_USER);
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        // card i belongs to user i % USERS, so the hot cards 0..HOT_CARDS-1 have different owners
+        List<Card> cards = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setNumber(String.format("9%015d", i));
+            card.setExpireAt(LocalDate.now().plusYears(1));
+            card.setStatus(CardStatus.ACTIVE.name());
+            card.setBalance(Money.of(INITIAL_BALANCE));
+            card.setOwner(users.get(i % USERS));
+            cards.add(card);
+        }
+        cards = cardRepository.saveAll(cards);
+        if (HOT_CARD_BUCKETS > 0) {
+            CardBalanceBucketService balanceBuckets = context.getBean(CardBalanceBucketService.class);
+            for (int i = 0; i < HOT_CARDS; i++) {
+                balanceBuckets.resize(cards.get(i).getId(), HOT_CARD_BUCKETS);
+            }
+        }
+
+        String[] tokens = users.stream().map(jwtService::generateToken).toArray(String[]::new);
+        String[] numbers = cards.stream().map(Card::getNumber).toArray(String[]::new);
+        return new Fixture(tokens, numbers);
+    }
+
+    private Result drive(URI baseUri, Fixture fixture) throws InterruptedException {
+        int warmupRequests = RATE * WARMUP_SECONDS;
+        int total = warmupRequests + RATE * DURATION_SECONDS;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+        HttpRequest[] requests = new HttpRequest[total];
+        int[] endpoints = new int[total];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < total; i++) {
+            endpoints[i] = random.nextDouble() < CARD_ENDPOINT_FRACTION ? CARD_TRANSFER : TRANSFER;
+            requests[i] = request(baseUri, endpoints[i], fixture, random, "load-" + i);
+        }
+
+        long[] latencies = new long[total];
+        int[] statuses = new int[total];
+        long start;
+        long end;
+        try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            start = System.nanoTime();
+            for (int i = 0; i < total; i++) {
+                long scheduled = start + i * intervalNanos;
+                for (long delay = scheduled - System.nanoTime(); delay > 0; delay = scheduled - System.nanoTime()) {
+                    LockSupport.parkNanos(delay);
+                }
+                int index = i;
+                senders.execute(() -> {
+                    int status;
+                    try {
+                        status = client.send(requests[index], HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (IOException e) {
+                        status = CLIENT_GAVE_UP;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        status = CLIENT_GAVE_UP;
+                    }
+                    latencies[index] = System.nanoTime() - scheduled;
+                    statuses[index] = status;
+                });
+            }
+            senders.shutdown();
+            assertTrue(senders.awaitTermination(10, TimeUnit.MINUTES), "requests did not complete");
+            end = System.nanoTime();
+        }
+        long measuredStart = start + warmupRequests * intervalNanos;
+        return new Result(Arrays.copyOfRange(endpoints, warmupRequests, total), Arrays.copyOfRange(latencies, warmupRequests, total),
+                Arrays.copyOfRange(statuses, warmupRequests, total), statuses, endpoints, end - measuredStart);
+    }
+
+    private HttpRequest request(URI baseUri, int endpoint, Fixture fixture, SplittableRandom random, String idempotencyKey) {
+        int from;
+        int to;
+        if (endpoint == CARD_TRANSFER) {
+            // two cards of the same owner: card i and card i + k * USERS
+            int first = random.nextDouble() < HOT_FRACTION ? random.nextInt(HOT_CARDS) : random.nextInt(CARDS);
+            int owner = first % USERS;
+            int ownedCards = (CARDS - owner + USERS - 1) / USERS;
+            int second;
+            do {
+                second = owner + random.nextInt(ownedCards) * USERS;
+            } while (second == first);
+            boolean outgoing = random.nextBoolean();
+            from = outgoing ? first : second;
+            to = outgoing ? second : first;
+        } else {
+            boolean hot = random.nextDouble() < HOT_FRACTION;
+            int first = hot ? random.nextInt(HOT_CARDS) : random.nextInt(CARDS);
+            int second;
+            do {
+                second = random.nextInt(CARDS);
+            } while (second == first);
+            boolean outgoing = random.nextBoolean();
+            from = outgoing ? first : second;
+            to = outgoing ? second : first;
+        }
+        // 1.00 to 10.00, the minimum amount of a transfer is 1
+        String amount = Money.ofMinor(100 + random.nextInt(901)).toString();
+        String body = String.format("{\"fromCardNumber\":\"%s\",\"toCardNumber\":\"%s\",\"amount\":%s}",
+                fixture.numbers[from], fixture.numbers[to], amount);
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(ENDPOINTS[endpoint]))
+                .header("Authorization", "Bearer " + fixture.tokens[from % USERS])
+                .header("Content-Type", "application/json")
+                .timeout(CLIENT_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (IDEMPOTENCY_KEYS) {
+            request.header(TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        return request.build();
+    }
+
+    /**
+     * Tokens by user index and card numbers by card index.
+     */
+    private record Fixture(String[] tokens, String[] numbers) {
+    }
+
+    /**
+     * Sum of all balances (balance buckets included), number of negative balances and journaled transfers (journal plus outbox).
+     */
+    private record Ledger(BigDecimal totalBalance, long negativeBalances, long journaled) {
+
+        static Ledger read(JdbcTemplate jdbcTemplate) {
+            // credits of hot cards wait in card_balance_buckets until a debit consolidates them
+            BigDecimal total = jdbcTemplate.queryForObject(
+                    "SELECT (SELECT coalesce(sum(balance), 0) FROM cards) + (SELECT coalesce(sum(amount), 0) FROM card_balance_buckets)",
+                    BigDecimal.class);
+            Long negative = jdbcTemplate.queryForObject("SELECT count(*) FROM cards WHERE balance < 0", Long.class);
+            Long journaled = jdbcTemplate.queryForObject(
+                    "SELECT (SELECT count(*) FROM transactions) + (SELECT count(*) FROM transaction_outbox)", Long.class);
+            return new Ledger(total, negative, journaled);
+        }
+    }
+
+    /**
+     * Measured requests (without warm-up) plus the statuses of all requests, which the ledger check needs.
+     */
+    private record Result(int[] endpoints, long[] latencies, int[] statuses,
+                          int[] allStatuses, int[] allEndpoints, long elapsedNanos) {
+
+        /**
+         * Successful measured requests of the endpoint.
+         */
+        long successes(int endpoint) {
+            long count = 0;
+            for (int i = 0; i < statuses.length; i++) {
+                if (endpoints[i] == endpoint && statuses[i] == SUCCESS_STATUSES[endpoint]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Requests of the endpoint with the given status, warm-up included.
+         */
+        long count(int endpoint, int status) {
+            long count = 0;
+            for (int i = 0; i < allStatuses.length; i++) {
+                if (allEndpoints[i] == endpoint && allStatuses[i] == status) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        Map<Integer, Integer> statuses(int endpoint) {
+            Map<Integer, Integer> counts = new TreeMap<>();
+            for (int i = 0; i < statuses.length; i++) {
+                if (endpoints[i] == endpoint) {
+                    counts.merge(statuses[i], 1, Integer::sum);
+                }
+            }
+            return counts;
+        }
+
+        String report(int endpoint) {
+            long[] sorted = new long[latencies.length];
+            int count = 0;
+            for (int i = 0; i < latencies.length; i++) {
+                if (endpoints[i] == endpoint) {
+                    sorted[count++] = latencies[i];
+                }
+            }
+            sorted = Arrays.copyOf(sorted, count);
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            return String.format("%-20s %8d %9.1f %11.1f %9.1f %9.1f %9.1f %9.1f %9.1f  %s", ENDPOINTS[endpoint], count,
+                    count / seconds, successes(endpoint) / seconds, percentileMillis(sorted, 0.50),
+                    percentileMillis(sorted, 0.90), percentileMillis(sorted, 0.99), percentileMillis(sorted, 0.999),
+                    percentileMillis(sorted, 1.0), statuses(endpoint));
+        }
+
+        private static double percentileMillis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.lidzhiev.bankcards.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.boot.jackson.JsonComponent;
+import ru.lidzhiev.bankcards.entity.Money;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * JSON-представление {@link Money}: десятичное число с двумя знаками после запятой, например {@code 100.50}.
+ * При чтении принимаются число или строка; значение разбирается без промежуточного double,
+ * поэтому точность не теряется, а суммы с долями копейки отклоняются.
+ */
+@JsonComponent
+public class MoneyJsonComponent {
+
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeNumber(value.toBigDecimal());
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = p.currentToken();
+            try {
+                if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    return Money.of(p.getDecimalValue());
+                }
+                if (token == JsonToken.VALUE_STRING) {
+                    return Money.of(new BigDecimal(p.getText().trim()));
+                }
+            } catch (ArithmeticException | NumberFormatException e) {
+                return (Money) ctxt.handleWeirdStringValue(Money.class, p.getText(), "invalid money amount: %s", e.getMessage());
+            }
+            return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package ru.lidzhiev.bankcards.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,15 +14,22 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
+import ru.lidzhiev.bankcards.security.AuthMode;
 import ru.lidzhiev.bankcards.security.JwtAuthenticationFilter;
 import ru.lidzhiev.bankcards.security.JwtService;
+import ru.lidzhiev.bankcards.security.OffloadingPasswordEncoder;
+import ru.lidzhiev.bankcards.security.PasswordHashingExecutor;
+import ru.lidzhiev.bankcards.security.TokenRevocationService;
 import ru.lidzhiev.bankcards.service.UserService;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.springframework.security.config.http.SessionCreationPolicy.STATELESS;
 
@@ -30,7 +39,8 @@ import static org.springframework.security.config.http.SessionCreationPolicy.STA
 public class SecurityConfiguration {
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtService jwtService, UserService userService) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtAuthenticationFilter jwtAuthenticationFilter,
+                                                   AuthenticationProvider authenticationProvider) throws Exception {
 
         http
                 .csrf(AbstractHttpConfigurer::disable)
@@ -44,6 +54,8 @@ public class SecurityConfiguration {
                 }))
                 .authorizeHttpRequests(request -> request
                         .requestMatchers("/auth/**", "/swagger-ui/**", "/swagger-resources/*", "/v3/api-docs/**").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.POST, "/api/cards").hasRole("ADMIN")
                         .requestMatchers("/api/cards/admin/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/api/cards/{id}").hasRole("ADMIN")
@@ -53,26 +65,47 @@ public class SecurityConfiguration {
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(manager -> manager.sessionCreationPolicy(STATELESS))
-                .authenticationProvider(authenticationProvider(userService))
-                .addFilterBefore(jwtAuthenticationFilter(jwtService, userService), UsernamePasswordAuthenticationFilter.class);
+                .authenticationProvider(authenticationProvider)
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
     @Bean
-    public JwtAuthenticationFilter jwtAuthenticationFilter(JwtService jwtService, UserService userService) {
-        return new JwtAuthenticationFilter(jwtService, userService);
+    public JwtAuthenticationFilter jwtAuthenticationFilter(JwtService jwtService, UserService userService,
+                                                           TokenRevocationService tokenRevocationService,
+                                                           @Value("${app.security.auth-mode:STATEFUL}") AuthMode authMode,
+                                                           MeterRegistry meterRegistry) {
+        return new JwtAuthenticationFilter(jwtService, userService, tokenRevocationService, authMode, meterRegistry);
     }
 
+    /**
+     * Кодировщик паролей с префиксом алгоритма ({bcrypt}, {pbkdf2}).
+     * Новые пароли хешируются алгоритмом app.security.password.encoder-id, хеши без префикса
+     * считаются bcrypt. Хеши другим алгоритмом или с меньшей стоимостью bcrypt перехешируются при входе
+     * (см. {@link UserService#updatePassword}). Вычисления выполняются в {@link PasswordHashingExecutor}.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(PasswordHashingExecutor passwordHashingExecutor,
+                                           @Value("${app.security.password.encoder-id:bcrypt}") String encoderId,
+                                           @Value("${app.security.password.bcrypt-strength:10}") int bcryptStrength) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", bcrypt,
+                "pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        if (!encoders.containsKey(encoderId)) {
+            throw new IllegalArgumentException("Unsupported password encoder: " + encoderId);
+        }
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(encoderId, encoders);
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return new OffloadingPasswordEncoder(delegating, passwordHashingExecutor);
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider(UserService userService) {
+    public AuthenticationProvider authenticationProvider(UserService userService, PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider(userService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        authProvider.setUserDetailsPasswordService(userService);
         return authProvider;
     }
 
@@ -3,16 +3,25 @@ package ru.lidzhiev.bankcards.config;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Info;
 import io.swagger.v3.oas.models.info.License;
+import io.swagger.v3.oas.models.media.NumberSchema;
 import io.swagger.v3.oas.models.servers.Server;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springdoc.core.utils.SpringDocUtils;
+import ru.lidzhiev.bankcards.entity.Money;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Configuration
 public class SwaggerConfig {
 
+    static {
+        // Money is serialized as a plain decimal number, see MoneyJsonComponent
+        SpringDocUtils.getConfig().replaceWithSchema(Money.class, new NumberSchema().example(new BigDecimal("100.00")));
+    }
+
     @Bean
     public OpenAPI customOpenApi(@Value("${application-description}") String appDescription,
                                  @Value("${application-version}") String appVersion) {
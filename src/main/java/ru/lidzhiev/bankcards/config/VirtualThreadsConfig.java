@@ -0,0 +1,49 @@
+package ru.lidzhiev.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Ограничение параллелизма для режима виртуальных потоков (spring.threads.virtual.enabled=true).
+ * Spring Boot в этом режиме обрабатывает запросы Tomcat, задачи {@code @Async} и {@code @Scheduled}
+ * в виртуальных потоках, и число одновременно выполняемых запросов больше не ограничено пулом Tomcat.
+ * Лимит запросов выводится из размера пула соединений HikariCP, чтобы лишние запросы получали 503,
+ * а не ждали соединения до таймаута.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public FilterRegistrationBean<RequestConcurrencyLimitFilter> requestConcurrencyLimitFilter(
+            DataSource dataSource,
+            @Value("${app.threads.virtual.max-concurrent-requests:0}") int maxConcurrentRequests,
+            @Value("${app.threads.virtual.requests-per-connection:10}") int requestsPerConnection,
+            @Value("${app.threads.virtual.acquire-timeout-millis:1000}") long acquireTimeoutMillis) throws SQLException {
+        int poolSize = maximumPoolSize(dataSource);
+        int limit = maxConcurrentRequests > 0 ? maxConcurrentRequests : poolSize * requestsPerConnection;
+        log.info("Virtual threads enabled: at most {} concurrent requests for {} database connections", limit, poolSize);
+
+        FilterRegistrationBean<RequestConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new RequestConcurrencyLimitFilter(limit, acquireTimeoutMillis));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    private static int maximumPoolSize(DataSource dataSource) throws SQLException {
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        }
+        throw new IllegalStateException("Virtual threads require a HikariCP data source to size the request limit");
+    }
+}
@@ -5,16 +5,27 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.lidzhiev.bankcards.dto.CardDto;
+import ru.lidzhiev.bankcards.dto.CardIssueResultDto;
+import ru.lidzhiev.bankcards.dto.CardSliceDto;
 import ru.lidzhiev.bankcards.dto.CreateCardDto;
 import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.service.BulkCardService;
+import ru.lidzhiev.bankcards.service.CardExportFormat;
+import ru.lidzhiev.bankcards.service.CardExportService;
 import ru.lidzhiev.bankcards.service.CardService;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyKey;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Slf4j
@@ -22,9 +33,16 @@ import java.util.List;
 @RequestMapping("/api/cards")
 public class CardController {
     private final CardService cardService;
+    private final CardExportService cardExportService;
+    private final BulkCardService bulkCardService;
+    private final TransferIdempotencyService transferIdempotency;
 
-    public CardController(CardService cardService) {
+    public CardController(CardService cardService, CardExportService cardExportService, BulkCardService bulkCardService,
+                          TransferIdempotencyService transferIdempotency) {
         this.cardService = cardService;
+        this.cardExportService = cardExportService;
+        this.bulkCardService = bulkCardService;
+        this.transferIdempotency = transferIdempotency;
     }
 
     @GetMapping("/me/paged")
@@ -37,6 +55,15 @@ public class CardController {
         return cardService.getByUsername(userDetails.getUsername(), pageable);
     }
 
+    @GetMapping("/me/cursor")
+    public CardSliceDto getMyCardsByCursor(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size
+    ) {
+        return cardService.getByUsername(userDetails.getUsername(), cursor, size);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping
     public CardDto createCard(@Valid @RequestBody CreateCardDto dto,
@@ -44,6 +71,18 @@ public class CardController {
         return cardService.create(dto, dto.getUsername());
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<CardIssueResultDto> issueCards(@RequestBody List<CreateCardDto> requests) {
+        return bulkCardService.issueCards(requests);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    public List<CardIssueResultDto> issueCardsFromCsv(InputStream csv) throws IOException {
+        return bulkCardService.issueCards(csv);
+    }
+
     @GetMapping("/{id}")
     public CardDto getById(@PathVariable Long id) {
         return cardService.getById(id);
@@ -73,6 +112,24 @@ public class CardController {
         return cardService.getAllCards();
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/export")
+    public ResponseEntity<StreamingResponseBody> exportCards(
+            @RequestParam(defaultValue = "NDJSON") CardExportFormat format) {
+        StreamingResponseBody body = out -> cardExportService.exportCards(format, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header("Content-Disposition", "attachment; filename=\"cards." + format.name().toLowerCase() + "\"")
+                .body(body);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/admin/cursor")
+    public CardSliceDto getAllCardsByCursor(@RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "20") int size) {
+        return cardService.getAllCards(cursor, size);
+    }
+
     // admin, set status of card
     @PreAuthorize("hasRole('ADMIN')")
     @PutMapping("/admin/set-status")
@@ -81,12 +138,27 @@ public class CardController {
         return cardService.adminUpdateCardStatus(cardId, status);
     }
 
+    // admin, spread credits of a hot card over sub-balance buckets; 0 turns the buckets off
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/admin/balance-buckets")
+    public CardDto setBalanceBuckets(@RequestParam Long cardId,
+                                     @RequestParam int buckets) {
+        return cardService.setBalanceBuckets(cardId, buckets);
+    }
+
+    // a retry with the same Idempotency-Key is answered without transferring again
     @PreAuthorize("hasRole('USER')")
     @PostMapping("/transfer")
     public ResponseEntity<Void>  transfer(@Valid @RequestBody TransferRequestDto dto,
+                         @RequestHeader(name = TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
                          @AuthenticationPrincipal UserDetails userDetails) {
-        cardService.transfer(dto, userDetails.getUsername());
-        return ResponseEntity.noContent().build();
+        if (idempotencyKey == null) {
+            cardService.transfer(dto, userDetails.getUsername());
+            return ResponseEntity.noContent().build();
+        }
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(userDetails.getUsername(), idempotencyKey, "card_transfer", dto);
+        boolean replayed = transferIdempotency.execute(key, () -> cardService.transfer(dto, userDetails.getUsername(), key));
+        return ResponseEntity.noContent().header(TransferIdempotencyService.REPLAYED_HEADER, String.valueOf(replayed)).build();
     }
 
 }
@@ -0,0 +1,64 @@
+package ru.lidzhiev.bankcards.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.lidzhiev.bankcards.dto.TransactionSliceDto;
+import ru.lidzhiev.bankcards.service.TransactionHistoryService;
+
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+@RequestMapping("/api/transactions")
+@RestController
+@PreAuthorize("hasRole('USER')")
+public class TransactionController {
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final TransactionHistoryService transactionHistoryService;
+
+    @GetMapping("/me")
+    public TransactionSliceDto getMyHistory(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return transactionHistoryService.getUserHistory(userDetails.getUsername(), from, to, cursor, size);
+    }
+
+    @GetMapping("/cards/{cardId}")
+    public TransactionSliceDto getCardHistory(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long cardId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return transactionHistoryService.getCardHistory(cardId, userDetails.getUsername(), from, to, cursor, size);
+    }
+
+    @GetMapping("/cards/{cardId}/export")
+    public ResponseEntity<StreamingResponseBody> exportCardHistory(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long cardId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        String username = userDetails.getUsername();
+        transactionHistoryService.checkCardOwner(cardId, username);
+        StreamingResponseBody body = out -> transactionHistoryService.exportCardHistory(cardId, username, from, to, out);
+        return ResponseEntity.ok()
+                .header("Content-Type", NDJSON)
+                .header("Content-Disposition", "attachment; filename=\"card-" + cardId + "-transactions.ndjson\"")
+                .body(body);
+    }
+}
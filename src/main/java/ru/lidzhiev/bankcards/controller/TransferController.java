@@ -2,22 +2,53 @@ package ru.lidzhiev.bankcards.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.dto.TransferResultDto;
+import ru.lidzhiev.bankcards.service.BatchTransferService;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyKey;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
 import ru.lidzhiev.bankcards.service.TransferService;
 
+import java.util.List;
+
 @RequiredArgsConstructor
 @RequestMapping("/api")
 @RestController
 public class TransferController {
     private final TransferService transferService;
+    private final BatchTransferService batchTransferService;
+    private final TransferIdempotencyService transferIdempotency;
 
+    // a retry with the same Idempotency-Key is answered without transferring again
     @PostMapping("/transfer")
-    public ResponseEntity<Void> transfer(@RequestBody TransferRequestDto transferRequest) {
-        transferService.transfer(transferRequest);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<Void> transfer(@RequestBody TransferRequestDto transferRequest,
+                                         @RequestHeader(name = TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                         @AuthenticationPrincipal UserDetails userDetails) {
+        if (idempotencyKey == null) {
+            transferService.transfer(transferRequest);
+            return ResponseEntity.ok().build();
+        }
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(userDetails.getUsername(), idempotencyKey, "transfer", transferRequest);
+        boolean replayed = transferIdempotency.execute(key, () -> transferService.transfer(transferRequest, key));
+        return ResponseEntity.ok().header(TransferIdempotencyService.REPLAYED_HEADER, String.valueOf(replayed)).build();
+    }
+
+    // a retry with the same Idempotency-Key returns the stored results and runs only the chunks that did not commit
+    @PostMapping("/transfers/batch")
+    public List<TransferResultDto> transferBatch(@RequestBody List<TransferRequestDto> transferRequests,
+                                                 @RequestHeader(name = TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                 @AuthenticationPrincipal UserDetails userDetails) {
+        if (idempotencyKey == null) {
+            return batchTransferService.transferBatch(transferRequests, userDetails.getUsername());
+        }
+        TransferIdempotencyKey key = TransferIdempotencyKey.ofBatch(userDetails.getUsername(), idempotencyKey, "transfers/batch", transferRequests);
+        return batchTransferService.transferBatch(transferRequests, userDetails.getUsername(), key);
     }
 }
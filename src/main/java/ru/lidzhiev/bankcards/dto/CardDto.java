@@ -2,6 +2,7 @@ package ru.lidzhiev.bankcards.dto;
 
 import lombok.Getter;
 import lombok.Setter;
+import ru.lidzhiev.bankcards.entity.Money;
 
 @Setter
 @Getter
@@ -10,13 +11,13 @@ public class CardDto {
     private String maskedNumber;
     private String status;
     private String expireAt;
-    private Double balance;
+    private Money balance;
     private String ownerUsername;
 
     public CardDto() {}
 
 
-    public CardDto(Long id, String maskedNumber, String status, String expireAt, Double balance, String ownerUsername) {
+    public CardDto(Long id, String maskedNumber, String status, String expireAt, Money balance, String ownerUsername) {
         this.id = id;
         this.maskedNumber = maskedNumber;
         this.status = status;
@@ -0,0 +1,33 @@
+package ru.lidzhiev.bankcards.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+public class CardIssueResultDto {
+    public static final String ISSUED = "ISSUED";
+    public static final String FAILED = "FAILED";
+
+    private int index;
+    private String status;
+    private Long cardId;
+    private String errorCode;
+
+    public CardIssueResultDto() {}
+
+    public CardIssueResultDto(int index, String status, Long cardId, String errorCode) {
+        this.index = index;
+        this.status = status;
+        this.cardId = cardId;
+        this.errorCode = errorCode;
+    }
+
+    public static CardIssueResultDto issued(int index, Long cardId) {
+        return new CardIssueResultDto(index, ISSUED, cardId, null);
+    }
+
+    public static CardIssueResultDto failed(int index, String errorCode) {
+        return new CardIssueResultDto(index, FAILED, null, errorCode);
+    }
+}
@@ -0,0 +1,29 @@
+package ru.lidzhiev.bankcards.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Часть списка карт при постраничном обходе по курсору.
+ * В отличие от {@link org.springframework.data.domain.Page} не содержит общего количества элементов.
+ */
+@Setter
+@Getter
+public class CardSliceDto {
+    private List<CardDto> content;
+    /**
+     * Курсор для запроса следующей части или null, если это последняя часть.
+     */
+    private String nextCursor;
+    private boolean hasNext;
+
+    public CardSliceDto() {}
+
+    public CardSliceDto(List<CardDto> content, String nextCursor, boolean hasNext) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+    }
+}
@@ -3,6 +3,8 @@ package ru.lidzhiev.bankcards.dto;
 import jakarta.validation.constraints.*;
 import lombok.Getter;
 import lombok.Setter;
+import ru.lidzhiev.bankcards.dto.validation.MinMoney;
+import ru.lidzhiev.bankcards.entity.Money;
 
 @Setter
 @Getter
@@ -13,8 +15,8 @@ public class CreateCardDto {
     private String expireAt;
 
     @NotNull(message = "Balance is required")
-    @Min(value = 0, message = "Balance cannot be negative")
-    private Double balance;
+    @MinMoney(value = "0", message = "Balance cannot be negative")
+    private Money balance;
 
     @NotBlank(message = "Username is required")
     @Size(min = 3, max = 30, message = "Username must be 3-30 chars")
@@ -23,7 +25,7 @@ public class CreateCardDto {
     public CreateCardDto() {
     }
 
-    public CreateCardDto(String expireAt, Double balance, String username) {
+    public CreateCardDto(String expireAt, Money balance, String username) {
         this.expireAt = expireAt;
         this.balance = balance;
         this.username = username;
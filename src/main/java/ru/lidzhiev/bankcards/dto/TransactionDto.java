@@ -0,0 +1,29 @@
+package ru.lidzhiev.bankcards.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import ru.lidzhiev.bankcards.entity.Money;
+
+import java.time.LocalDateTime;
+
+@Setter
+@Getter
+public class TransactionDto {
+    private Long id;
+    private Long fromCardId;
+    private Long toCardId;
+    private Money amount;
+    private LocalDateTime createdAt;
+    private String status;
+
+    public TransactionDto() {}
+
+    public TransactionDto(Long id, Long fromCardId, Long toCardId, Money amount, LocalDateTime createdAt, String status) {
+        this.id = id;
+        this.fromCardId = fromCardId;
+        this.toCardId = toCardId;
+        this.amount = amount;
+        this.createdAt = createdAt;
+        this.status = status;
+    }
+}
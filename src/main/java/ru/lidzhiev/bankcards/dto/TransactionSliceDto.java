@@ -0,0 +1,28 @@
+package ru.lidzhiev.bankcards.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Часть истории транзакций при постраничном обходе по курсору, от новых транзакций к старым.
+ */
+@Setter
+@Getter
+public class TransactionSliceDto {
+    private List<TransactionDto> content;
+    /**
+     * Курсор для запроса следующей части или null, если это последняя часть.
+     */
+    private String nextCursor;
+    private boolean hasNext;
+
+    public TransactionSliceDto() {}
+
+    public TransactionSliceDto(List<TransactionDto> content, String nextCursor, boolean hasNext) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+    }
+}
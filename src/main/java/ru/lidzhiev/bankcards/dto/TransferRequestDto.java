@@ -1,10 +1,11 @@
 package ru.lidzhiev.bankcards.dto;
 
-import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
+import ru.lidzhiev.bankcards.dto.validation.MinMoney;
+import ru.lidzhiev.bankcards.entity.Money;
 
 @Setter
 @Getter
@@ -17,13 +18,13 @@ public class TransferRequestDto {
     private String toCardNumber;
 
     @NotNull(message = "Amount is required")
-    @Min(value = 1, message = "Amount must be greater than 0")
-    private Double amount;
+    @MinMoney(value = "1", message = "Amount must be greater than 0")
+    private Money amount;
 
     public TransferRequestDto() {
     }
 
-    public TransferRequestDto(String fromCardNumber, String toCardNumber, Double amount) {
+    public TransferRequestDto(String fromCardNumber, String toCardNumber, Money amount) {
         this.fromCardNumber = fromCardNumber;
         this.toCardNumber = toCardNumber;
         this.amount = amount;
@@ -0,0 +1,31 @@
+package ru.lidzhiev.bankcards.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+public class TransferResultDto {
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private int index;
+    private String status;
+    private String errorCode;
+
+    public TransferResultDto() {}
+
+    public TransferResultDto(int index, String status, String errorCode) {
+        this.index = index;
+        this.status = status;
+        this.errorCode = errorCode;
+    }
+
+    public static TransferResultDto completed(int index) {
+        return new TransferResultDto(index, COMPLETED, null);
+    }
+
+    public static TransferResultDto failed(int index, String errorCode) {
+        return new TransferResultDto(index, FAILED, errorCode);
+    }
+}
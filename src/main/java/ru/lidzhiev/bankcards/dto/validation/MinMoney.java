@@ -0,0 +1,27 @@
+package ru.lidzhiev.bankcards.dto.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.*;
+
+/**
+ * Проверяет, что денежная сумма ({@link ru.lidzhiev.bankcards.entity.Money}) не меньше указанного значения.
+ * {@code null} считается корректным значением, для обязательных полей используйте вместе с {@code @NotNull}.
+ */
+@Documented
+@Constraint(validatedBy = MinMoneyValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MinMoney {
+    /**
+     * Минимальная сумма в виде десятичной строки, например {@code "0.01"}.
+     */
+    String value();
+
+    String message() default "Amount is too small";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,19 @@
+package ru.lidzhiev.bankcards.dto.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import ru.lidzhiev.bankcards.entity.Money;
+
+public class MinMoneyValidator implements ConstraintValidator<MinMoney, Money> {
+    private Money min;
+
+    @Override
+    public void initialize(MinMoney constraint) {
+        min = Money.of(constraint.value());
+    }
+
+    @Override
+    public boolean isValid(Money value, ConstraintValidatorContext context) {
+        return value == null || !value.isLessThan(min);
+    }
+}
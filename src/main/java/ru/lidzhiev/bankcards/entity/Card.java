@@ -1,8 +1,10 @@
 package ru.lidzhiev.bankcards.entity;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Formula;
 
 import java.time.LocalDate;
 
@@ -12,17 +14,50 @@ import java.time.LocalDate;
 @Setter
 public class Card {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_id_seq")
+    @SequenceGenerator(name = "cards_id_seq", sequenceName = "cards_id_seq", allocationSize = 50)
     private Long id;
 
     private String number;
     private LocalDate expireAt;
     private String status;
-    private Double balance;
+
+    // the consolidated part of the balance; see getTotalBalance()
+    private Money balance;
+
+    @Version
+    private Long version;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id") // user_id is the foreign key column in the cards table
     private User owner;
 
-}
+    // number of sub-balance buckets of a hot card, 0 for an ordinary card
+    @Column(updatable = false)
+    private int balanceBuckets;
 
+    // credits accumulated in card_balance_buckets and not yet moved into balance
+    @Formula("case when balance_buckets > 0 then " +
+            "(select coalesce(sum(b.amount), 0) from card_balance_buckets b where b.card_id = id) else 0 end")
+    @Setter(AccessLevel.NONE)
+    private Money bucketedBalance;
+
+    /**
+     * Баланс карты: консолидированная часть и зачисления, накопленные в корзинах.
+     *
+     * @return баланс карты.
+     */
+    public Money getTotalBalance() {
+        return bucketedBalance != null ? balance.plus(bucketedBalance) : balance;
+    }
+
+    /**
+     * Переносит зачисления, списанные из корзин, в консолидированную часть баланса.
+     *
+     * @param drained сумма, списанная из корзин карты.
+     */
+    public void consolidate(Money drained) {
+        balance = balance.plus(drained);
+        bucketedBalance = Money.ZERO;
+    }
+}
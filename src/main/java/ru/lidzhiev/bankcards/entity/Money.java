@@ -0,0 +1,107 @@
+package ru.lidzhiev.bankcards.entity;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма с фиксированной точкой: хранится как целое число копеек (минорных единиц) в примитивном long.
+ * Соответствует колонкам DECIMAL(15,2), арифметика точная и без округлений,
+ * а сравнения не создают объектов и не требуют распаковки.
+ * Экземпляры неизменяемы.
+ */
+public final class Money implements Comparable<Money>, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    /**
+     * Создает сумму из количества минорных единиц (копеек).
+     *
+     * @param minorUnits сумма в копейках.
+     * @return денежная сумма.
+     */
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Создает сумму из десятичного значения.
+     *
+     * @param amount сумма в рублях.
+     * @return денежная сумма.
+     * @throws ArithmeticException если у суммы больше двух знаков после запятой или она не помещается в long.
+     */
+    public static Money of(BigDecimal amount) {
+        return ofMinor(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Создает сумму из десятичной строки, например {@code "100.50"}.
+     *
+     * @param amount сумма в рублях.
+     * @return денежная сумма.
+     * @throws NumberFormatException если строка не является числом.
+     * @throws ArithmeticException   если у суммы больше двух знаков после запятой.
+     */
+    public static Money of(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Money other && minorUnits == other.minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
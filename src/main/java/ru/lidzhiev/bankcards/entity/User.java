@@ -17,7 +17,8 @@ import java.util.List;
 @Setter
 public class User implements UserDetails {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
     private String username;
@@ -27,6 +28,10 @@ public class User implements UserDetails {
     @Enumerated(EnumType.STRING)
     private UserRole userRole;
 
+    // version of the JWT tokens of the user, changed only by UserRepository.incrementTokenVersion
+    @Column(updatable = false)
+    private long tokenVersion;
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         // list of authorities based on the user's Role
@@ -0,0 +1,25 @@
+package ru.lidzhiev.bankcards.entity.converter;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import ru.lidzhiev.bankcards.entity.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Преобразует {@link Money} в колонку DECIMAL(15,2) и обратно.
+ * Применяется ко всем атрибутам типа Money автоматически.
+ */
+@Converter(autoApply = true)
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money money) {
+        return money != null ? money.toBigDecimal() : null;
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal value) {
+        return value != null ? Money.of(value) : null;
+    }
+}
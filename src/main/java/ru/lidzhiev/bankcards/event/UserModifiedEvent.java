@@ -0,0 +1,21 @@
+package ru.lidzhiev.bankcards.event;
+
+import lombok.Getter;
+
+/**
+ * Событие изменения или удаления пользователя.
+ * Публикуется после того, как изменения сохранены, чтобы сбросить зависящие от пользователя данные.
+ */
+@Getter
+public class UserModifiedEvent {
+    private final Long userId;
+    /**
+     * Имя пользователя до изменения.
+     */
+    private final String username;
+
+    public UserModifiedEvent(Long userId, String username) {
+        this.userId = userId;
+        this.username = username;
+    }
+}
@@ -13,6 +13,19 @@ public enum ErrorCode {
     INVALID_STATUS(HttpStatus.FORBIDDEN, "Операция невозможна: некорректный статус карты"),
     CARD_INSUFFICIENT_FUNDS(HttpStatus.BAD_REQUEST, "Недостаточно средств на карте"),
     SAME_CARD_TRANSFER(HttpStatus.CONFLICT, "Перевод на одну и ту же карту невозможен"),
+    INVALID_TRANSFER_REQUEST(HttpStatus.BAD_REQUEST, "Некорректные параметры перевода"),
+    INVALID_CARD_REQUEST(HttpStatus.BAD_REQUEST, "Некорректные параметры выпуска карты"),
+    INVALID_CURSOR(HttpStatus.BAD_REQUEST, "Некорректный курсор постраничного обхода"),
+    BATCH_TOO_LARGE(HttpStatus.BAD_REQUEST, "Превышен максимальный размер пакета"),
+    BATCH_CHUNK_FAILED(HttpStatus.SERVICE_UNAVAILABLE, "Часть пакета не выполнена, повторите попытку позже"),
+    PASSWORD_HASHING_OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE, "Сервис аутентификации перегружен, повторите попытку позже"),
+    SERVER_BUSY(HttpStatus.SERVICE_UNAVAILABLE, "Сервер перегружен, повторите попытку позже"),
+    CARD_CONCURRENT_UPDATE(HttpStatus.CONFLICT, "Карта изменяется другой операцией, повторите попытку позже"),
+    INVALID_IDEMPOTENCY_KEY(HttpStatus.BAD_REQUEST, "Некорректный ключ идемпотентности"),
+    IDEMPOTENCY_KEY_REUSED(HttpStatus.UNPROCESSABLE_ENTITY, "Ключ идемпотентности уже использован для другого запроса"),
+    INVALID_BALANCE_BUCKETS(HttpStatus.BAD_REQUEST, "Некорректное количество корзин баланса"),
+    AMBIGUOUS_CARD_NUMBER(HttpStatus.CONFLICT, "Номер карты принадлежит нескольким картам"),
+    CARD_NUMBER_COLLISION(HttpStatus.CONFLICT, "Номер карты совпал с уже выпущенной картой, повторите выпуск"),
     NOT_OWNER(HttpStatus.FORBIDDEN, "Ошибка при выполнении операции. Карта не принадлежит владельцу");
 
     private final HttpStatus httpStatus;
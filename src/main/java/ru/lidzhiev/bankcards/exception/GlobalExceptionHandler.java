@@ -1,5 +1,7 @@
 package ru.lidzhiev.bankcards.exception;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -7,13 +9,28 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 @Slf4j
 @ControllerAdvice
 public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+    private final Map<ErrorCode, Counter> errorCounters = new EnumMap<>(ErrorCode.class);
+
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            errorCounters.put(errorCode, Counter.builder("bank.errors")
+                    .description("Business errors returned to clients by ErrorCode")
+                    .tag("code", errorCode.name())
+                    .tag("status", String.valueOf(errorCode.getHttpStatus().value()))
+                    .register(meterRegistry));
+        }
+    }
 
     @ExceptionHandler(ResourceNotFoundException.class)
     public ResponseEntity<String> handleResourceNotFoundException(ResourceNotFoundException ex) {
         log.info("Resource not found: {}", ex.getMessage());
+        errorCounters.get(ex.getErrorCode()).increment();
         HttpStatus s = ex.getErrorCode().getHttpStatus();
         return ResponseEntity.status(s).body(ex.getMessage());
     }
@@ -21,6 +38,7 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     @ExceptionHandler(UserOperationException.class)
     public ResponseEntity<String> handleUserOperationException(UserOperationException ex) {
         log.warn("User operation error: {}", ex.getMessage());
+        errorCounters.get(ex.getErrorCode()).increment();
         HttpStatus s = ex.getErrorCode().getHttpStatus();
         return ResponseEntity.status(s).body(ex.getMessage());
     }
@@ -28,6 +46,7 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     @ExceptionHandler(CardOperationException.class)
     public ResponseEntity<String> handleCardOperationException(CardOperationException ex) {
         log.warn("Card operation error: {}", ex.getMessage());
+        errorCounters.get(ex.getErrorCode()).increment();
         HttpStatus s = ex.getErrorCode().getHttpStatus();
         return ResponseEntity.status(s).body(ex.getMessage());
     }
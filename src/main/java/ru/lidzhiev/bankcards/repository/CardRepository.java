@@ -1,16 +1,180 @@
 package ru.lidzhiev.bankcards.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.repository.projection.CardCreditTarget;
+import ru.lidzhiev.bankcards.repository.projection.CardNumberId;
+import ru.lidzhiev.bankcards.repository.projection.CardView;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface CardRepository extends JpaRepository<Card, Long> {
+    String CARD_VIEW_SELECT = "select c.id as id, c.number as number, c.status as status, c.expireAt as expireAt, " +
+            "c.balance as balance, c.bucketedBalance as bucketedBalance, o.username as ownerUsername from Card c left join c.owner o ";
+
     Page<Card> findByOwnerUsername(String username, Pageable pageable);
     List<Card> findByOwnerUsername(String username);
     Optional<Card> findByNumber(String number);
-}
 
+    /**
+     * Возвращает страницу карт пользователя вместе с именем владельца одним запросом.
+     *
+     * @param username имя владельца.
+     * @param pageable объект пагинации.
+     * @return страница проекций карт.
+     */
+    @Query(value = CARD_VIEW_SELECT + "where o.username = :username",
+            countQuery = "select count(c) from Card c join c.owner o where o.username = :username")
+    Page<CardView> findViewsByOwnerUsername(@Param("username") String username, Pageable pageable);
+
+    /**
+     * Возвращает все карты вместе с именами владельцев одним запросом.
+     *
+     * @return проекции всех карт, отсортированные по id.
+     */
+    @Query(CARD_VIEW_SELECT + "order by c.id")
+    List<CardView> findAllViews();
+
+    /**
+     * Возвращает карту вместе с именем владельца и суммой корзин баланса одним запросом.
+     * В отличие от {@link #findById} не требует открытой сессии для чтения владельца.
+     *
+     * @param id ID карты.
+     * @return проекция карты или пустой Optional, если карта не найдена.
+     */
+    @Query(CARD_VIEW_SELECT + "where c.id = :id")
+    Optional<CardView> findViewById(@Param("id") Long id);
+
+    /**
+     * Возвращает карты пользователя с id больше заданного в порядке возрастания id (keyset-пагинация).
+     * В отличие от OFFSET не перебирает пропущенные строки и не требует запроса COUNT.
+     * Сортировка по (user_id, id) совпадает с индексом idx_cards_user_id_id, поэтому строки читаются
+     * из индекса уже упорядоченными и чтение останавливается после {@code limit} строк.
+     *
+     * @param ownerId id владельца.
+     * @param afterId id последней карты предыдущей части, 0 для первой части.
+     * @param limit   максимальное количество карт.
+     * @return проекции карт.
+     */
+    @Query(CARD_VIEW_SELECT + "where c.owner.id = :ownerId and c.id > :afterId order by c.owner.id, c.id")
+    List<CardView> findViewsByOwnerIdAfter(@Param("ownerId") Long ownerId, @Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Возвращает карты всех пользователей с id больше заданного в порядке возрастания id (keyset-пагинация).
+     *
+     * @param afterId id последней карты предыдущей части, 0 для первой части.
+     * @param limit   максимальное количество карт.
+     * @return проекции карт.
+     */
+    @Query(CARD_VIEW_SELECT + "where c.id > :afterId order by c.id")
+    List<CardView> findAllViewsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Читает все карты вместе с владельцами однонаправленным курсором в порядке возрастания id.
+     * Строки подгружаются из БД порциями по fetch size, поэтому поток должен потребляться внутри транзакции
+     * и закрываться после использования. Сущности загружаются только для чтения.
+     *
+     * @return поток карт.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select c from Card c left join fetch c.owner order by c.id")
+    Stream<Card> streamAll();
+
+    /**
+     * Загружает карты по id с блокировкой строк (SELECT ... FOR UPDATE) в порядке возрастания id,
+     * поэтому конкурирующие переводы по одним и тем же картам не могут взаимно заблокировать друг друга.
+     * Номера карт разрешаются в id заранее через {@link #findIdsByNumberIn} без блокировки:
+     * при выборке по индексу номера некоторые СУБД (H2) блокируют строки в порядке этого индекса, а не id.
+     *
+     * @param ids идентификаторы карт.
+     * @return заблокированные карты, отсортированные по id.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Читает статус и количество корзин баланса карты под разделяемой блокировкой строки (SELECT ... FOR SHARE).
+     * Зачисления в корзины одной карты не блокируют друг друга, но не выполняются одновременно
+     * со списанием или консолидацией, которые блокируют строку карты монопольно.
+     * СУБД без разделяемых блокировок (H2) блокируют строку монопольно.
+     *
+     * @param id ID карты.
+     * @return статус и количество корзин карты или пустой Optional, если карта не найдена.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select c.id as id, c.status as status, c.balanceBuckets as balanceBuckets from Card c where c.id = :id")
+    Optional<CardCreditTarget> findCreditTargetForShare(@Param("id") Long id);
+
+    /**
+     * Возвращает имя владельца карты, не загружая саму карту.
+     *
+     * @param id ID карты.
+     * @return имя владельца или пустой Optional, если карта не найдена.
+     */
+    @Query("select o.username from Card c join c.owner o where c.id = :id")
+    Optional<String> findOwnerUsernameById(@Param("id") Long id);
+
+    /**
+     * Возвращает идентификаторы карт пользователя.
+     *
+     * @param username имя владельца.
+     * @return идентификаторы карт, отсортированные по возрастанию.
+     */
+    @Query("select c.id from Card c join c.owner o where o.username = :username order by c.id")
+    List<Long> findIdsByOwnerUsername(@Param("username") String username);
+
+    /**
+     * Возвращает идентификаторы карт по номерам, не загружая сами сущности.
+     *
+     * @param numbers номера карт.
+     * @return id, номера и количество корзин баланса найденных карт.
+     */
+    @Query("select c.id as id, c.number as number, c.balanceBuckets as balanceBuckets from Card c where c.number in :numbers")
+    List<CardNumberId> findIdsByNumberIn(@Param("numbers") Collection<String> numbers);
+
+    /**
+     * Атомарно списывает сумму с активной карты, если на ней достаточно средств.
+     * Проверка статуса и баланса выполняется в том же UPDATE, поэтому гонки между чтением и записью нет.
+     *
+     * @param id     ID карты.
+     * @param amount сумма списания.
+     * @return количество измененных строк: 1 при успехе, 0 если карта не активна или средств недостаточно.
+     */
+    @Modifying
+    @Query(value = "UPDATE cards SET balance = balance - :amount, version = version + 1 " +
+            "WHERE id = :id AND status = 'ACTIVE' AND balance >= :amount", nativeQuery = true)
+    int debit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Атомарно зачисляет сумму на активную карту.
+     *
+     * @param id     ID карты.
+     * @param amount сумма зачисления.
+     * @return количество измененных строк: 1 при успехе, 0 если карта не активна.
+     */
+    @Modifying
+    @Query(value = "UPDATE cards SET balance = balance + :amount, version = version + 1 " +
+            "WHERE id = :id AND status = 'ACTIVE'", nativeQuery = true)
+    int credit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+}
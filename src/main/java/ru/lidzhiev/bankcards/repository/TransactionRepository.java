@@ -1,13 +1,82 @@
 package ru.lidzhiev.bankcards.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import ru.lidzhiev.bankcards.entity.Card;
 import ru.lidzhiev.bankcards.entity.Transaction;
+import ru.lidzhiev.bankcards.repository.projection.TransactionView;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    String TRANSACTION_VIEW_SELECT = "select t.id as id, t.fromCard.id as fromCardId, t.toCard.id as toCardId, " +
+            "t.amount as amount, t.createdAt as createdAt, t.status as status from Transaction t ";
+    String BEFORE_KEY = "and t.createdAt >= :from " +
+            "and (t.createdAt < :beforeTime or (t.createdAt = :beforeTime and t.id < :beforeId)) " +
+            "order by t.createdAt desc, t.id desc";
+
     List<Transaction> findByFromCard(Card fromCard);
     List<Transaction> findByToCard(Card toCard);
     List<Transaction> findByFromCardOrToCard(Card fromCard, Card toCard);
+
+    /**
+     * Возвращает исходящие транзакции карты не раньше {@code from} и строго до ключа {@code (beforeTime, beforeId)},
+     * от новых к старым (keyset-пагинация по (created_at, id)).
+     * Запрос читает диапазон индекса idx_transactions_from_card_id_created_at в обратном порядке.
+     *
+     * @param cardId     id карты-отправителя.
+     * @param from       нижняя граница времени (включительно).
+     * @param beforeTime время последней транзакции предыдущей части или верхняя граница времени.
+     * @param beforeId   id последней транзакции предыдущей части, 0 для первой части.
+     * @param limit      максимальное количество транзакций.
+     * @return проекции транзакций.
+     */
+    @Query(TRANSACTION_VIEW_SELECT + "where t.fromCard.id = :cardId " + BEFORE_KEY)
+    List<TransactionView> findOutgoingBefore(@Param("cardId") Long cardId,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("beforeTime") LocalDateTime beforeTime,
+                                             @Param("beforeId") Long beforeId,
+                                             Limit limit);
+
+    /**
+     * Возвращает входящие транзакции карты, аналогично {@link #findOutgoingBefore}.
+     * Запрос читает диапазон индекса idx_transactions_to_card_id_created_at в обратном порядке.
+     *
+     * @param cardId     id карты-получателя.
+     * @param from       нижняя граница времени (включительно).
+     * @param beforeTime время последней транзакции предыдущей части или верхняя граница времени.
+     * @param beforeId   id последней транзакции предыдущей части, 0 для первой части.
+     * @param limit      максимальное количество транзакций.
+     * @return проекции транзакций.
+     */
+    @Query(TRANSACTION_VIEW_SELECT + "where t.toCard.id = :cardId " + BEFORE_KEY)
+    List<TransactionView> findIncomingBefore(@Param("cardId") Long cardId,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("beforeTime") LocalDateTime beforeTime,
+                                             @Param("beforeId") Long beforeId,
+                                             Limit limit);
+
+    /**
+     * Читает все транзакции карты за период однонаправленным курсором, от старых к новым.
+     * Поток должен потребляться внутри транзакции и закрываться после использования.
+     *
+     * @param cardId id карты.
+     * @param from   нижняя граница времени (включительно).
+     * @param to     верхняя граница времени (исключительно).
+     * @return поток проекций транзакций.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(TRANSACTION_VIEW_SELECT + "where (t.fromCard.id = :cardId or t.toCard.id = :cardId) " +
+            "and t.createdAt >= :from and t.createdAt < :to order by t.createdAt, t.id")
+    Stream<TransactionView> streamByCard(@Param("cardId") Long cardId,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to);
 }
@@ -2,7 +2,14 @@ package ru.lidzhiev.bankcards.repository;
 
 import ru.lidzhiev.bankcards.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.lidzhiev.bankcards.repository.projection.UsernameId;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -10,4 +17,32 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    /**
+     * Возвращает идентификаторы пользователей по именам одним запросом, не загружая сами сущности.
+     *
+     * @param usernames имена пользователей.
+     * @return пары (id, имя) найденных пользователей.
+     */
+    List<UsernameId> findByUsernameIn(Collection<String> usernames);
+
+    /**
+     * Возвращает версию JWT-токенов пользователя, не загружая саму сущность.
+     *
+     * @param id идентификатор пользователя.
+     * @return версия токенов или пустой Optional, если пользователь не найден.
+     */
+    @Query("select u.tokenVersion from User u where u.id = :id")
+    Optional<Long> findTokenVersionById(@Param("id") Long id);
+
+    /**
+     * Увеличивает версию JWT-токенов пользователя, делая недействительными все ранее выпущенные токены.
+     *
+     * @param id идентификатор пользователя.
+     * @return количество измененных строк: 1 или 0, если пользователь не найден.
+     */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.tokenVersion = u.tokenVersion + 1 where u.id = :id")
+    int incrementTokenVersion(@Param("id") Long id);
 }
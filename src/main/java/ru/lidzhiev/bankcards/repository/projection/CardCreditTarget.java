@@ -0,0 +1,11 @@
+package ru.lidzhiev.bankcards.repository.projection;
+
+/**
+ * Проекция карты-получателя зачисления в корзину: статус и количество корзин,
+ * прочитанные под разделяемой блокировкой строки карты.
+ */
+public interface CardCreditTarget {
+    Long getId();
+    String getStatus();
+    int getBalanceBuckets();
+}
@@ -0,0 +1,33 @@
+package ru.lidzhiev.bankcards.repository.projection;
+
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Проекция карты, содержащая только идентификатор, номер и количество корзин баланса.
+ * Используется там, где баланс и остальные поля карты читать не нужно.
+ */
+public interface CardNumberId {
+    Long getId();
+    String getNumber();
+    int getBalanceBuckets();
+
+    /**
+     * Группирует карты по номеру.
+     *
+     * @param cards карты.
+     * @return карты, сгруппированные по номеру.
+     * @throws CardOperationException если один номер принадлежит нескольким картам.
+     */
+    static Map<String, CardNumberId> byNumber(Collection<CardNumberId> cards) {
+        return cards.stream()
+                .collect(Collectors.toMap(CardNumberId::getNumber, Function.identity(), (first, second) -> {
+                    throw new CardOperationException(ErrorCode.AMBIGUOUS_CARD_NUMBER);
+                }));
+    }
+}
@@ -0,0 +1,28 @@
+package ru.lidzhiev.bankcards.repository.projection;
+
+import ru.lidzhiev.bankcards.entity.Money;
+
+import java.time.LocalDate;
+
+/**
+ * Проекция карты для списков: поля карты и имя владельца, прочитанные одним запросом с join.
+ * В отличие от сущности не требует отдельного запроса за владельцем для каждой карты.
+ */
+public interface CardView {
+    Long getId();
+    String getNumber();
+    String getStatus();
+    LocalDate getExpireAt();
+    Money getBalance();
+    Money getBucketedBalance();
+    String getOwnerUsername();
+
+    /**
+     * Баланс карты вместе с зачислениями, накопленными в корзинах.
+     *
+     * @return баланс карты.
+     */
+    default Money getTotalBalance() {
+        return getBucketedBalance() != null ? getBalance().plus(getBucketedBalance()) : getBalance();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.lidzhiev.bankcards.repository.projection;
+
+import ru.lidzhiev.bankcards.entity.Money;
+
+import java.time.LocalDateTime;
+
+/**
+ * Проекция транзакции для истории операций: id карт вместо сущностей, без загрузки самих карт.
+ */
+public interface TransactionView {
+    Long getId();
+    Long getFromCardId();
+    Long getToCardId();
+    Money getAmount();
+    LocalDateTime getCreatedAt();
+    String getStatus();
+}
@@ -0,0 +1,9 @@
+package ru.lidzhiev.bankcards.repository.projection;
+
+/**
+ * Проекция пользователя, содержащая только идентификатор и имя.
+ */
+public interface UsernameId {
+    Long getId();
+    String getUsername();
+}
@@ -0,0 +1,16 @@
+package ru.lidzhiev.bankcards.security;
+
+/**
+ * Способ построения аутентификации по JWT-токену.
+ */
+public enum AuthMode {
+    /**
+     * Пользователь загружается из БД на каждый запрос.
+     */
+    STATEFUL,
+    /**
+     * Principal строится из проверенных claims токена без обращения к БД,
+     * отозванные токены отсекаются через {@link TokenRevocationService}.
+     */
+    STATELESS
+}
@@ -1,5 +1,8 @@
 package ru.lidzhiev.bankcards.security;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,28 +15,44 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
-import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import ru.lidzhiev.bankcards.service.UserService;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Фильтр аутентификации на основе JSON Web Token (JWT).
  * Этот фильтр обрабатывает запросы HTTP, извлекает JWT-токены из заголовков и проверяет их действительность.
  * Если токен действительный, устанавливается соответствующий объект аутентификации в контексте безопасности Spring Security.
+ * В режиме {@link AuthMode#STATELESS} пользователь берется из claims токена без запроса к БД.
+ * Время проверки токена (без остальной цепочки фильтров) публикуется гистограммой bank.auth.jwt.filter.
  */
-@Component
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     public static final String BEARER_PREFIX = "Bearer ";
     public static final String HEADER_NAME = "Authorization";
     private final JwtService jwtService;
     private final UserService userService;
+    private final TokenRevocationService tokenRevocationService;
+    private final AuthMode authMode;
+    private final Timer authenticationTimer;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserService userService) {
+    public JwtAuthenticationFilter(JwtService jwtService, UserService userService,
+                                   TokenRevocationService tokenRevocationService, AuthMode authMode,
+                                   MeterRegistry meterRegistry) {
         this.jwtService = jwtService;
         this.userService = userService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.authMode = authMode;
+        this.authenticationTimer = Timer.builder("bank.auth.jwt.filter")
+                .description("Time spent validating the bearer token and loading its user")
+                .tag("mode", authMode.name())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(meterRegistry);
     }
 
     /**
@@ -67,13 +86,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         // Cut off "Bearer " prefix
         var jwt = authHeader.substring(BEARER_PREFIX.length());
-        var username = jwtService.extractUserName(jwt);
-
-        if (!username.isEmpty() && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userService.loadUserByUsername(username);
-
-            //If the token is valid, set the authentication in the security context
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            long start = System.nanoTime();
+            UserDetails userDetails;
+            try {
+                userDetails = authMode == AuthMode.STATELESS
+                        ? loadFromClaims(jwt)
+                        : loadFromDatabase(jwt);
+            } finally {
+                authenticationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            if (userDetails != null) {
                 SecurityContext context = SecurityContextHolder.createEmptyContext();
 
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
@@ -88,4 +111,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Загружает пользователя токена из БД.
+     *
+     * @param jwt токен.
+     * @return пользователь или null, если токен недействителен.
+     */
+    private UserDetails loadFromDatabase(String jwt) {
+        var username = jwtService.extractUserName(jwt);
+        if (username.isEmpty()) {
+            return null;
+        }
+        UserDetails userDetails = userService.loadUserByUsername(username);
+        return jwtService.isTokenValid(jwt, userDetails) ? userDetails : null;
+    }
+
+    /**
+     * Строит пользователя из claims токена. Срок действия и подпись уже проверены при разборе токена.
+     * Токены без id или роли (выпущенные не для {@link ru.lidzhiev.bankcards.entity.User}) загружаются из БД.
+     *
+     * @param jwt токен.
+     * @return пользователь или null, если токен отозван.
+     */
+    private UserDetails loadFromClaims(String jwt) {
+        Claims claims = jwtService.getClaims(jwt);
+        JwtUserPrincipal principal = jwtService.toPrincipal(claims);
+        if (principal == null) {
+            return loadFromDatabase(jwt);
+        }
+        if (tokenRevocationService.isRevoked(principal.getId(), jwtService.getTokenVersion(claims))) {
+            return null;
+        }
+        return principal;
+    }
+}
@@ -1,24 +1,38 @@
 package ru.lidzhiev.bankcards.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * Сервис для работы с JWT-токенами.
  * Предоставляет методы для генерации, проверки и извлечения информации из токенов.
+ * Ключ подписи и парсер создаются один раз при старте, а проверенные claims кэшируются
+ * по SHA-256 хэшу токена до истечения срока действия токена, поэтому подпись каждого токена
+ * проверяется один раз, а не на каждое обращение.
  */
 @Service
 @Slf4j
@@ -27,7 +41,27 @@ public class JwtService {
     private String jwtSigningKey;
     @Value("${app.jwt.expiration.hours}")
     private int tokenExpirationHours;
+    @Value("${app.jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
     public static long millisecondsInHour = 60 * 60 * 1000;
+    private static final String TOKEN_VERSION_CLAIM = "tokenVersion";
+
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+    private Cache<String, Claims> claimsCache;
+
+    /**
+     * Создает ключ подписи, парсер токенов и кэш проверенных claims.
+     */
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSigningKey));
+        jwtParser = Jwts.parser().verifyWith(signingKey).build();
+        claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new ClaimsExpiry())
+                .build();
+    }
 
     /**
      * Извлекает имя пользователя из JWT-токена.
@@ -40,17 +74,34 @@ public class JwtService {
     }
 
     /**
-     * Генерирует JWT-токен для указанного пользователя.
+     * Генерирует JWT-токен для указанного пользователя с начальной версией токенов 0.
      *
      * @param userDetails объект пользователя с подробностями.
      * @return созданный JWT-токен.
      */
     public String generateToken(UserDetails userDetails) {
+        return generateToken(userDetails, 0);
+    }
+
+    /**
+     * Генерирует JWT-токен для указанного пользователя.
+     *
+     * @param userDetails  объект пользователя с подробностями.
+     * @param tokenVersion текущая версия токенов пользователя (см. {@link TokenRevocationService}).
+     * @return созданный JWT-токен.
+     */
+    public String generateToken(UserDetails userDetails, long tokenVersion) {
         Map<String, Object> claims = new HashMap<>();
-        if (userDetails instanceof User customUserDetails) {
-            claims.put("id", customUserDetails.getId());
-            claims.put("username", customUserDetails.getUsername());
-            claims.put("userRole", customUserDetails.getUserRole());
+        UserSnapshot user = switch (userDetails) {
+            case UserSnapshot snapshot -> snapshot;
+            case User entity -> UserSnapshot.of(entity);
+            default -> null;
+        };
+        if (user != null) {
+            claims.put("id", user.getId());
+            claims.put("username", user.getUsername());
+            claims.put("userRole", user.getUserRole());
+            claims.put(TOKEN_VERSION_CLAIM, tokenVersion);
         }
         return generateToken(claims, userDetails);
     }
@@ -67,6 +118,43 @@ public class JwtService {
         return (userName.equals(userDetails.getUsername())) && !isTokenExpired(token);
     }
 
+    /**
+     * Возвращает проверенные claims JWT-токена.
+     * Подпись проверяется только при первом обращении, далее claims берутся из кэша.
+     *
+     * @param token токен для анализа.
+     * @return объекты утверждений (claims).
+     */
+    public Claims getClaims(String token) {
+        return claimsCache.get(hash(token), key -> extractAllClaims(token));
+    }
+
+    /**
+     * Строит данные пользователя из claims JWT-токена без обращения к БД.
+     *
+     * @param claims проверенные claims токена.
+     * @return данные пользователя или null, если в токене нет нужных claims.
+     */
+    public JwtUserPrincipal toPrincipal(Claims claims) {
+        Long id = claims.get("id", Long.class);
+        String userRole = claims.get("userRole", String.class);
+        if (id == null || userRole == null || claims.getSubject() == null) {
+            return null;
+        }
+        return new JwtUserPrincipal(id, claims.getSubject(), UserRole.valueOf(userRole));
+    }
+
+    /**
+     * Возвращает версию токенов пользователя, с которой выпущен токен.
+     *
+     * @param claims проверенные claims токена.
+     * @return версия токенов; 0 для токенов, выпущенных без нее.
+     */
+    public long getTokenVersion(Claims claims) {
+        Long tokenVersion = claims.get(TOKEN_VERSION_CLAIM, Long.class);
+        return tokenVersion != null ? tokenVersion : 0;
+    }
+
     /**
      * Извлекает значение поля из JWT-токена.
      *
@@ -76,7 +164,7 @@ public class JwtService {
      * @return извлеченное значение.
      */
     private <T> T extractClaim(String token, Function<Claims, T> claimsResolvers) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = getClaims(token);
         return claimsResolvers.apply(claims);
     }
 
@@ -91,7 +179,7 @@ public class JwtService {
         return Jwts.builder().claims(extraClaims).subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + tokenExpirationHours * millisecondsInHour)) //24 hours expiration
-                .signWith(getSigningKey()).compact();
+                .signWith(signingKey).compact();
     }
 
     /**
@@ -115,21 +203,52 @@ public class JwtService {
     }
 
     /**
-     * Извлекает все claims из JWT-токена.
+     * Извлекает все claims из JWT-токена с проверкой подписи и срока действия.
      *
      * @param token токен для анализа.
      * @return объекты утверждений (claims).
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser().verifyWith(getSigningKey()).build().parseSignedClaims(token).getPayload();
+        return jwtParser.parseSignedClaims(token).getPayload();
     }
 
     /**
-     * Возвращает ключ подписи для JWT-токенов.
+     * Вычисляет ключ кэша для токена, чтобы не хранить сами токены в памяти.
      *
-     * @return секретный ключ подписи.
-     */    private SecretKey getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSigningKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+     * @param token токен.
+     * @return SHA-256 хэш токена в шестнадцатеричном виде.
+     */
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Политика истечения записей кэша: claims хранятся не дольше срока действия токена.
+     */
+    private static class ClaimsExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            long millis = expiration.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,37 @@
+package ru.lidzhiev.bankcards.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Данные аутентифицированного пользователя, восстановленные из claims JWT-токена.
+ * Используется в режиме {@link AuthMode#STATELESS} вместо сущности пользователя.
+ */
+@Getter
+public class JwtUserPrincipal implements UserDetails {
+    private final Long id;
+    private final String username;
+    private final UserRole userRole;
+
+    public JwtUserPrincipal(Long id, String username, UserRole userRole) {
+        this.id = id;
+        this.username = username;
+        this.userRole = userRole;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(userRole.name()));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.lidzhiev.bankcards.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Кодировщик паролей, выполняющий хеширование и проверку пароля в {@link PasswordHashingExecutor}.
+ * Проверка необходимости перехеширования дешевая и выполняется в вызывающем потоке.
+ */
+public class OffloadingPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+
+    public OffloadingPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.encode(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.matches(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
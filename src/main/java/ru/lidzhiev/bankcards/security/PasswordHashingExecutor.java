@@ -0,0 +1,136 @@
+package ru.lidzhiev.bankcards.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.exception.UserOperationException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Пул потоков для хеширования паролей.
+ * Хеширование занимает заметное время процессора, поэтому число одновременных вычислений ограничено
+ * размером пула, а ожидающие задачи — емкостью очереди. Когда очередь заполнена, запрос сразу отклоняется
+ * с ошибкой {@link ErrorCode#PASSWORD_HASHING_OVERLOADED} (503), а не копится на потоках веб-сервера.
+ * Время ожидания в очереди и время самого хеширования публикуются как гистограммы.
+ */
+@Slf4j
+@Component
+public class PasswordHashingExecutor {
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingExecutor(MeterRegistry meterRegistry,
+                                   @Value("${app.security.password.hashing.threads:0}") int threads,
+                                   @Value("${app.security.password.hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${app.security.password.hashing.timeout-millis:5000}") long timeoutMillis) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMillis = timeoutMillis;
+        this.encodeTimer = hashingTimer(meterRegistry, "encode");
+        this.matchesTimer = hashingTimer(meterRegistry, "matches");
+        this.queueTimer = Timer.builder("bank.auth.password.hashing.queue.wait")
+                .description("Time a password hashing task waits in the queue")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("bank.auth.password.hashing.rejected")
+                .description("Password hashing tasks rejected because the queue was full or the task timed out")
+                .register(meterRegistry);
+        Gauge.builder("bank.auth.password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Password hashing tasks waiting in the queue")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Вычисляет хеш пароля в пуле хеширования.
+     *
+     * @param task вычисление хеша.
+     * @return хеш пароля.
+     * @throws UserOperationException если пул перегружен или хеширование не уложилось в таймаут.
+     */
+    public String encode(Supplier<String> task) {
+        return execute(encodeTimer, task);
+    }
+
+    /**
+     * Сравнивает пароль с хешем в пуле хеширования.
+     *
+     * @param task сравнение пароля с хешем.
+     * @return true, если пароль совпадает с хешем.
+     * @throws UserOperationException если пул перегружен или сравнение не уложилось в таймаут.
+     */
+    public boolean matches(Supplier<Boolean> task) {
+        return execute(matchesTimer, task);
+    }
+
+    private <T> T execute(Timer timer, Supplier<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return timer.record(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("Password hashing queue is full ({} tasks), request rejected", executor.getQueue().size());
+            throw new UserOperationException(ErrorCode.PASSWORD_HASHING_OVERLOADED);
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCounter.increment();
+            log.warn("Password hashing did not finish in {} ms", timeoutMillis);
+            throw new UserOperationException(ErrorCode.PASSWORD_HASHING_OVERLOADED);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new UserOperationException(ErrorCode.PASSWORD_HASHING_OVERLOADED);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Timer hashingTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("bank.auth.password.hashing")
+                .description("Time spent computing or checking a password hash")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
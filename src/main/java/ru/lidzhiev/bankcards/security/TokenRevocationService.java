@@ -0,0 +1,80 @@
+package ru.lidzhiev.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.lidzhiev.bankcards.event.UserModifiedEvent;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+
+import java.time.Duration;
+
+/**
+ * Сервис отзыва JWT-токенов.
+ * Каждый токен несет версию токенов пользователя (колонка users.token_version) на момент выпуска.
+ * Отзыв увеличивает версию в БД, после чего токены с меньшей версией недействительны на всех экземплярах приложения,
+ * в том числе после перезапуска. Текущие версии кэшируются на {@code app.jwt.revocation-cache.ttl-seconds},
+ * поэтому отзыв на другом экземпляре вступает в силу не позже чем через это время.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+    private final UserRepository userRepository;
+    private final Cache<Long, Long> tokenVersions;
+
+    public TokenRevocationService(UserRepository userRepository,
+                                  @Value("${app.jwt.revocation-cache.max-size:100000}") long cacheMaxSize,
+                                  @Value("${app.jwt.revocation-cache.ttl-seconds:30}") long cacheTtlSeconds) {
+        this.userRepository = userRepository;
+        this.tokenVersions = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Возвращает текущую версию токенов пользователя для выпуска нового токена.
+     * Версия читается из БД, а не из кэша, чтобы новый токен не оказался отозванным на других экземплярах.
+     *
+     * @param userId идентификатор пользователя.
+     * @return версия токенов, 0 если пользователь не найден.
+     */
+    public long getTokenVersion(Long userId) {
+        Long version = userRepository.findTokenVersionById(userId).orElse(null);
+        if (version == null) {
+            return 0;
+        }
+        tokenVersions.put(userId, version);
+        return version;
+    }
+
+    /**
+     * Отзывает все ранее выпущенные токены пользователя.
+     *
+     * @param userId идентификатор пользователя.
+     */
+    public void revokeTokens(Long userId) {
+        userRepository.incrementTokenVersion(userId);
+        tokenVersions.invalidate(userId);
+        log.debug("Tokens of user {} revoked", userId);
+    }
+
+    /**
+     * Проверяет, отозван ли токен пользователя.
+     *
+     * @param userId       идентификатор пользователя.
+     * @param tokenVersion версия токенов из токена.
+     * @return true, если токен выпущен до отзыва или пользователь удален, иначе false.
+     */
+    public boolean isRevoked(Long userId, long tokenVersion) {
+        Long current = tokenVersions.get(userId, id -> userRepository.findTokenVersionById(id).orElse(null));
+        return current == null || tokenVersion < current;
+    }
+
+    @EventListener
+    public void onUserModified(UserModifiedEvent event) {
+        revokeTokens(event.getUserId());
+    }
+}
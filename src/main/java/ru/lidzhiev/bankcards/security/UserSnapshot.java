@@ -0,0 +1,48 @@
+package ru.lidzhiev.bankcards.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Неизменяемый снимок пользователя для аутентификации.
+ * В отличие от сущности {@link User} не привязан к контексту персистентности,
+ * поэтому его можно кэшировать и использовать из разных потоков.
+ */
+@Getter
+public final class UserSnapshot implements UserDetails {
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final String email;
+    private final UserRole userRole;
+
+    public UserSnapshot(Long id, String username, String password, String email, UserRole userRole) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.email = email;
+        this.userRole = userRole;
+    }
+
+    /**
+     * Создает снимок сущности пользователя.
+     *
+     * @param user сущность пользователя.
+     * @return снимок пользователя.
+     */
+    public static UserSnapshot of(User user) {
+        return new UserSnapshot(user.getId(), user.getUsername(), user.getPassword(), user.getEmail(), user.getUserRole());
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(userRole.name()));
+    }
+}
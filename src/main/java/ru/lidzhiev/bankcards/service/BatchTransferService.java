@@ -0,0 +1,48 @@
+package ru.lidzhiev.bankcards.service;
+
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.dto.TransferResultDto;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
+
+import java.util.List;
+
+/**
+ * Интерфейс сервиса пакетных переводов между банковскими картами.
+ * Предназначен для массовых операций (например, начисления зарплаты), где выполнение
+ * каждого перевода отдельным HTTP-запросом и отдельной транзакцией слишком дорого.
+ */
+public interface BatchTransferService {
+    /**
+     * Выполняет пакет переводов с карт пользователя.
+     * Все карты пакета находятся одним запросом, переводы применяются частями (chunk),
+     * каждая часть - в отдельной транзакции с пакетной (JDBC batch) записью балансов и транзакций.
+     * Ошибка одного перевода не отменяет остальные. Если транзакция части откатывается, переводы этой части
+     * получают код BATCH_CHUNK_FAILED, а остальные части выполняются.
+     *
+     * @param transferRequests список запросов на перевод.
+     * @param username         имя пользователя; списывать средства можно только с его карт.
+     * @return результаты переводов в порядке запросов: COMPLETED или код ошибки.
+     * @throws CardOperationException    если размер пакета превышает допустимый.
+     * @throws ResourceNotFoundException если пользователь не найден.
+     */
+    List<TransferResultDto> transferBatch(List<TransferRequestDto> transferRequests, String username);
+
+    /**
+     * Выполняет пакет переводов с ключом идемпотентности.
+     * Каждая часть в своей транзакции записывает результаты своих переводов под этим ключом
+     * (см. {@link TransferIdempotencyService#registerBatchResults}). Повтор пакета с тем же ключом получает
+     * записанные результаты, не выполняя их переводы снова, и продолжает с первой невыполненной части.
+     * Если транзакция части откатывается, остальные части не выполняются и тоже получают код BATCH_CHUNK_FAILED:
+     * их выполнит повтор пакета.
+     *
+     * @param transferRequests список запросов на перевод.
+     * @param username         имя пользователя; списывать средства можно только с его карт.
+     * @param idempotencyKey   ключ идемпотентности пакета.
+     * @return результаты переводов в порядке запросов: COMPLETED или код ошибки.
+     * @throws CardOperationException    если размер пакета превышает допустимый или ключ использован для другого запроса.
+     * @throws ResourceNotFoundException если пользователь не найден.
+     */
+    List<TransferResultDto> transferBatch(List<TransferRequestDto> transferRequests, String username,
+                                          TransferIdempotencyKey idempotencyKey);
+}
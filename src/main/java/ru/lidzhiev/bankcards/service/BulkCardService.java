@@ -0,0 +1,41 @@
+package ru.lidzhiev.bankcards.service;
+
+import ru.lidzhiev.bankcards.dto.CardIssueResultDto;
+import ru.lidzhiev.bankcards.dto.CreateCardDto;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Интерфейс сервиса массового выпуска банковских карт (для администраторов).
+ * Предназначен для плановых перевыпусков, где создание каждой карты отдельным запросом
+ * с отдельным поиском владельца и отдельным INSERT слишком дорого.
+ */
+public interface BulkCardService {
+    /**
+     * Выпускает пакет карт.
+     * Владельцы всего пакета находятся одним запросом, номера генерируются в памяти без повторов,
+     * карты сохраняются частями (chunk) пакетными INSERT-запросами, каждая часть - в отдельной транзакции.
+     * Ошибка в одной записи не отменяет выпуск остальных карт.
+     * Доступно только пользователям с ролью ADMIN.
+     *
+     * @param requests список запросов на выпуск карты.
+     * @return результаты в порядке запросов: id выпущенной карты или код ошибки.
+     * @throws CardOperationException если размер пакета превышает допустимый.
+     */
+    List<CardIssueResultDto> issueCards(List<CreateCardDto> requests);
+
+    /**
+     * Выпускает пакет карт, заданный в CSV: по строке {@code expireAt,balance,username} на карту,
+     * необязательная первая строка - заголовок. Строка, которую не удалось разобрать, получает код ошибки
+     * INVALID_CARD_REQUEST, остальные обрабатываются как в {@link #issueCards(List)}.
+     *
+     * @param csv поток с содержимым CSV в кодировке UTF-8.
+     * @return результаты в порядке строк данных.
+     * @throws IOException при ошибке чтения потока.
+     * @throws CardOperationException если размер пакета превышает допустимый.
+     */
+    List<CardIssueResultDto> issueCards(InputStream csv) throws IOException;
+}
@@ -0,0 +1,66 @@
+package ru.lidzhiev.bankcards.service;
+
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
+
+/**
+ * Интерфейс корзин баланса горячих карт.
+ * Баланс карты с {@code balance_buckets > 0} хранится в строке карты и в нескольких строках таблицы
+ * card_balance_buckets: зачисления переводов распределяются по корзинам и не блокируют строку карты монопольно,
+ * поэтому не выстраиваются в очередь друг за другом. Списание консолидирует корзины в строку карты,
+ * только если консолидированной части баланса не хватает.
+ * Корзины изменяются только под блокировкой строки карты: разделяемой при зачислении
+ * ({@link ru.lidzhiev.bankcards.repository.CardRepository#findCreditTargetForShare}),
+ * монопольной при консолидации и изменении количества корзин.
+ */
+public interface CardBalanceBucketService {
+    /**
+     * Зачисляет сумму в случайно выбранную корзину карты.
+     * Вызывающий удерживает разделяемую блокировку строки карты.
+     *
+     * @param cardId  ID карты.
+     * @param buckets количество корзин карты, прочитанное под этой блокировкой.
+     * @param amount  сумма зачисления.
+     */
+    void credit(Long cardId, int buckets, Money amount);
+
+    /**
+     * Обнуляет корзины карты и возвращает сумму, которая в них была.
+     * Вызывающий удерживает монопольную блокировку строки карты и сам добавляет сумму к ее балансу.
+     *
+     * @param cardId ID карты.
+     * @return сумма зачислений, накопленных в корзинах.
+     */
+    Money drain(Long cardId);
+
+    /**
+     * Переносит зачисления из корзин в консолидированную часть баланса сущности карты,
+     * если ее не хватает для списания суммы. Строка карты блокируется монопольно, если еще не заблокирована.
+     *
+     * @param card   карта-отправитель.
+     * @param amount сумма списания.
+     */
+    void consolidateIfShort(Card card, Money amount);
+
+    /**
+     * Блокирует строку карты и переносит зачисления из корзин в столбец balance одним UPDATE.
+     * Используется там, где баланс изменяется запросами без загрузки сущности.
+     *
+     * @param cardId ID карты.
+     * @return true, если в корзинах были зачисления.
+     */
+    boolean consolidate(Long cardId);
+
+    /**
+     * Изменяет количество корзин карты. Накопленные зачисления переносятся в строку карты,
+     * 0 возвращает карту к обычному хранению баланса.
+     *
+     * @param cardId  ID карты.
+     * @param buckets новое количество корзин.
+     * @throws CardOperationException    если количество корзин вне допустимого диапазона.
+     * @throws ResourceNotFoundException если карта не найдена.
+     */
+    void resize(Long cardId, int buckets);
+}
@@ -0,0 +1,25 @@
+package ru.lidzhiev.bankcards.service;
+
+/**
+ * Формат выгрузки карт.
+ */
+public enum CardExportFormat {
+    /**
+     * Один JSON-объект карты на строку (application/x-ndjson).
+     */
+    NDJSON("application/x-ndjson"),
+    /**
+     * CSV с заголовком (text/csv).
+     */
+    CSV("text/csv");
+
+    private final String contentType;
+
+    CardExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
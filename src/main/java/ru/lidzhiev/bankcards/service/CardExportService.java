@@ -0,0 +1,21 @@
+package ru.lidzhiev.bankcards.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Интерфейс сервиса выгрузки всех карт (для администраторов).
+ * В отличие от {@link CardService#getAllCards()} не загружает все карты в память:
+ * карты читаются курсором и сразу пишутся в выходной поток.
+ */
+public interface CardExportService {
+    /**
+     * Выгружает все карты в порядке возрастания id.
+     * Доступно только пользователям с ролью ADMIN.
+     *
+     * @param format формат выгрузки.
+     * @param out    поток, в который пишется выгрузка; не закрывается.
+     * @throws IOException при ошибке записи в поток.
+     */
+    void exportCards(CardExportFormat format, OutputStream out) throws IOException;
+}
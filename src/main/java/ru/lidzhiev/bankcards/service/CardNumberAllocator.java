@@ -0,0 +1,14 @@
+package ru.lidzhiev.bankcards.service;
+
+/**
+ * Интерфейс выдачи номеров новых банковских карт.
+ */
+public interface CardNumberAllocator {
+    /**
+     * Выдает номер новой карты: BIN банка, номер счета и контрольная цифра по алгоритму Луна.
+     * Номер не совпадает ни с одним ранее выданным этим же механизмом номером.
+     *
+     * @return шестнадцатизначный номер карты.
+     */
+    String nextNumber();
+}
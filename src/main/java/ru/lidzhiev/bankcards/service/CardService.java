@@ -3,6 +3,7 @@ package ru.lidzhiev.bankcards.service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import ru.lidzhiev.bankcards.dto.CardDto;
+import ru.lidzhiev.bankcards.dto.CardSliceDto;
 import ru.lidzhiev.bankcards.dto.CreateCardDto;
 import ru.lidzhiev.bankcards.dto.TransferRequestDto;
 import ru.lidzhiev.bankcards.exception.CardOperationException;
@@ -51,6 +52,17 @@ public interface CardService {
      * @return страница объектов DTO карт.
      */
     Page<CardDto> getByUsername(String username, Pageable pageable);
+
+    /**
+     * Возвращает часть списка карт пользователя по курсору, без подсчета общего количества.
+     *
+     * @param username имя пользователя.
+     * @param cursor   курсор из предыдущего ответа или null для первой части.
+     * @param size     размер части, ограничивается диапазоном от 1 до 100.
+     * @return часть списка карт и курсор следующей части.
+     * @throws CardOperationException если курсор некорректен.
+     */
+    CardSliceDto getByUsername(String username, String cursor, int size);
     /**
      * Возвращает информацию о конкретной карте по её ID.
      *
@@ -70,6 +82,18 @@ public interface CardService {
      * @throws CardOperationException    если указанный статус недействителен.
      */
     CardDto adminUpdateCardStatus(Long id, String status);
+    /**
+     * Изменяет количество корзин баланса карты (см. {@link CardBalanceBucketService}).
+     * Требуется роль ADMIN. Корзины включают для карт, на которые одновременно приходит много зачислений;
+     * 0 возвращает карту к обычному хранению баланса. Баланс карты при этом не меняется.
+     *
+     * @param id      ID карты.
+     * @param buckets новое количество корзин.
+     * @return объект DTO обновленной карты.
+     * @throws ResourceNotFoundException если карта не найдена.
+     * @throws CardOperationException    если количество корзин вне допустимого диапазона.
+     */
+    CardDto setBalanceBuckets(Long id, int buckets);
     /**
      * Удаляет карту администраторским действием.
      * Требуется роль ADMIN.
@@ -81,10 +105,23 @@ public interface CardService {
     /**
      * Возвращает полный список всех карт (для администраторов).
      * Доступно только пользователям с ролью ADMIN.
+     * Загружает все карты в память; для больших объемов используйте {@link #getAllCards(String, int)}
+     * или {@link CardExportService}.
      *
      * @return список объектов DTO всех карт.
      */
     List<CardDto> getAllCards();
+
+    /**
+     * Возвращает часть списка всех карт по курсору (для администраторов).
+     * Доступно только пользователям с ролью ADMIN.
+     *
+     * @param cursor курсор из предыдущего ответа или null для первой части.
+     * @param size   размер части, ограничивается диапазоном от 1 до 100.
+     * @return часть списка карт и курсор следующей части.
+     * @throws CardOperationException если курсор некорректен.
+     */
+    CardSliceDto getAllCards(String cursor, int size);
     /**
      * Выполняет денежный перевод между двумя картами.
      * Осуществляется транзакционный перевод средств с одной карты на другую.
@@ -94,4 +131,16 @@ public interface CardService {
      * @throws CardOperationException если возникают проблемы с переводом (недостаточно средств, неправильный владелец и др.).
      */
     void transfer(TransferRequestDto dto, String username);
+
+    /**
+     * Выполняет денежный перевод между двумя картами пользователя и в той же транзакции записывает
+     * ключ идемпотентности перевода (см. {@link TransferIdempotencyService#register}).
+     *
+     * @param dto            объект DTO с деталями перевода.
+     * @param username       имя пользователя владельца карт.
+     * @param idempotencyKey ключ идемпотентности перевода.
+     * @throws CardOperationException если возникают проблемы с переводом (недостаточно средств, неправильный владелец и др.).
+     * @throws org.springframework.dao.DuplicateKeyException если перевод с этим ключом уже выполнен.
+     */
+    void transfer(TransferRequestDto dto, String username, TransferIdempotencyKey idempotencyKey);
 }
@@ -0,0 +1,15 @@
+package ru.lidzhiev.bankcards.service;
+
+/**
+ * Что делать с партициями транзакций старше срока хранения.
+ */
+public enum ExpiredPartitionAction {
+    /**
+     * Отсоединить партицию: данные остаются в отдельной архивной таблице с тем же именем.
+     */
+    DETACH,
+    /**
+     * Отсоединить и удалить партицию вместе с данными.
+     */
+    DROP
+}
@@ -0,0 +1,63 @@
+package ru.lidzhiev.bankcards.service;
+
+import ru.lidzhiev.bankcards.dto.TransactionSliceDto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+/**
+ * Интерфейс сервиса истории транзакций.
+ * Границы периода необязательны: null означает отсутствие ограничения с соответствующей стороны.
+ */
+public interface TransactionHistoryService {
+    /**
+     * Возвращает часть истории транзакций карты (входящих и исходящих) от новых к старым.
+     *
+     * @param cardId   ID карты.
+     * @param username имя пользователя, который должен быть владельцем карты.
+     * @param from     начало периода (включительно) или null.
+     * @param to       конец периода (исключительно) или null.
+     * @param cursor   курсор из предыдущего ответа или null для первой части.
+     * @param size     размер части.
+     * @return часть истории транзакций.
+     */
+    TransactionSliceDto getCardHistory(Long cardId, String username, LocalDateTime from, LocalDateTime to,
+                                       String cursor, int size);
+
+    /**
+     * Возвращает часть истории транзакций по всем картам пользователя от новых к старым.
+     * Перевод между двумя картами пользователя попадает в историю один раз.
+     *
+     * @param username имя пользователя.
+     * @param from     начало периода (включительно) или null.
+     * @param to       конец периода (исключительно) или null.
+     * @param cursor   курсор из предыдущего ответа или null для первой части.
+     * @param size     размер части.
+     * @return часть истории транзакций.
+     */
+    TransactionSliceDto getUserHistory(String username, LocalDateTime from, LocalDateTime to, String cursor, int size);
+
+    /**
+     * Проверяет, что карта существует и принадлежит пользователю.
+     * Вызывается до начала выгрузки, пока ответ еще можно вернуть с кодом ошибки.
+     *
+     * @param cardId   ID карты.
+     * @param username имя пользователя.
+     */
+    void checkCardOwner(Long cardId, String username);
+
+    /**
+     * Выгружает всю историю транзакций карты за период в формате NDJSON, от старых к новым.
+     * Транзакции читаются курсором и сразу пишутся в поток, не накапливаясь в памяти.
+     *
+     * @param cardId   ID карты.
+     * @param username имя пользователя, который должен быть владельцем карты.
+     * @param from     начало периода (включительно) или null.
+     * @param to       конец периода (исключительно) или null.
+     * @param out      поток, в который пишется выгрузка; не закрывается.
+     * @throws IOException при ошибке записи в поток.
+     */
+    void exportCardHistory(Long cardId, String username, LocalDateTime from, LocalDateTime to, OutputStream out)
+            throws IOException;
+}
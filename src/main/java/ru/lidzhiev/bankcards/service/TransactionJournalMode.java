@@ -0,0 +1,17 @@
+package ru.lidzhiev.bankcards.service;
+
+/**
+ * Способ записи транзакций при одиночном переводе.
+ * Выбирается для всего приложения свойством {@code app.transfer.journal.mode}.
+ */
+public enum TransactionJournalMode {
+    /**
+     * Транзакция сохраняется в таблицу transactions в той же транзакции БД, что и изменение балансов.
+     */
+    DIRECT,
+    /**
+     * В транзакции перевода запись добавляется в таблицу transaction_outbox,
+     * а в transactions ее переносит фоновая задача многострочными INSERT-запросами.
+     */
+    OUTBOX
+}
@@ -0,0 +1,28 @@
+package ru.lidzhiev.bankcards.service;
+
+import ru.lidzhiev.bankcards.entity.Transaction;
+
+/**
+ * Интерфейс журнала транзакций с отложенной записью (transactional outbox).
+ * Запись в журнал выполняется в транзакции перевода и фиксируется вместе с балансами,
+ * поэтому после сбоя ни одна проведенная транзакция не теряется: необработанные записи
+ * переносятся в таблицу transactions при следующем запуске фоновой задачи.
+ */
+public interface TransactionOutboxService {
+    /**
+     * Добавляет транзакцию в журнал в рамках текущей транзакции БД.
+     * Транзакция должна ссылаться на сохраненные карты; id транзакции не назначается.
+     *
+     * @param transaction транзакция.
+     */
+    void append(Transaction transaction);
+
+    /**
+     * Переносит в таблицу transactions одну порцию записей журнала в порядке их добавления.
+     * Перенос и удаление записей из журнала выполняются в одной транзакции БД:
+     * при ошибке порция остается в журнале целиком и будет перенесена повторно.
+     *
+     * @return количество перенесенных записей.
+     */
+    int flush();
+}
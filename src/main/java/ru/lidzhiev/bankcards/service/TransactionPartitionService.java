@@ -0,0 +1,16 @@
+package ru.lidzhiev.bankcards.service;
+
+import java.time.YearMonth;
+
+/**
+ * Интерфейс сервиса обслуживания помесячных партиций таблицы транзакций (только PostgreSQL).
+ */
+public interface TransactionPartitionService {
+    /**
+     * Создает недостающие партиции на текущий и следующие месяцы
+     * и отсоединяет партиции старше срока хранения.
+     *
+     * @param current текущий месяц.
+     */
+    void maintainPartitions(YearMonth current);
+}
@@ -0,0 +1,80 @@
+package ru.lidzhiev.bankcards.service;
+
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Ключ идемпотентности перевода: значение заголовка {@code Idempotency-Key} в пространстве ключей пользователя
+ * и отпечаток запроса, по которому повтор отличается от другого запроса с тем же ключом.
+ *
+ * @param username    имя пользователя, выполняющего перевод.
+ * @param key         значение заголовка.
+ * @param fingerprint SHA-256 операции, номеров карт и суммы перевода в шестнадцатеричном виде.
+ */
+public record TransferIdempotencyKey(String username, String key, String fingerprint) {
+    public static final int MAX_KEY_LENGTH = 64;
+
+    /**
+     * Создает ключ идемпотентности запроса на перевод.
+     *
+     * @param username  имя пользователя.
+     * @param key       значение заголовка {@code Idempotency-Key}.
+     * @param operation путь, которым выполняется перевод; один ключ нельзя использовать на разных путях.
+     * @param dto       объект данных запроса на перевод.
+     * @return ключ идемпотентности.
+     * @throws CardOperationException если ключ пуст или длиннее {@link #MAX_KEY_LENGTH} символов.
+     */
+    public static TransferIdempotencyKey of(String username, String key, String operation, TransferRequestDto dto) {
+        validate(key);
+        return new TransferIdempotencyKey(username, key, sha256(operation + "\n" + describe(dto)));
+    }
+
+    /**
+     * Создает ключ идемпотентности пакета переводов. Отпечаток покрывает все запросы пакета в их порядке.
+     *
+     * @param username  имя пользователя.
+     * @param key       значение заголовка {@code Idempotency-Key}.
+     * @param operation путь, которым выполняется пакет.
+     * @param requests  запросы на перевод.
+     * @return ключ идемпотентности.
+     * @throws CardOperationException если ключ пуст или длиннее {@link #MAX_KEY_LENGTH} символов.
+     */
+    public static TransferIdempotencyKey ofBatch(String username, String key, String operation, List<TransferRequestDto> requests) {
+        validate(key);
+        StringBuilder batch = new StringBuilder(operation);
+        for (TransferRequestDto dto : requests) {
+            batch.append('\n').append(describe(dto));
+        }
+        return new TransferIdempotencyKey(username, key, sha256(batch.toString()));
+    }
+
+    private static void validate(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new CardOperationException(ErrorCode.INVALID_IDEMPOTENCY_KEY);
+        }
+    }
+
+    private static String describe(TransferRequestDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        return String.join("\n", dto.getFromCardNumber(), dto.getToCardNumber(),
+                dto.getAmount() != null ? dto.getAmount().toString() : null);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.lidzhiev.bankcards.service;
+
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+
+import java.util.List;
+
+/**
+ * Интерфейс защиты переводов от повторного выполнения при повторе запроса клиентом.
+ * Выполненный перевод записывает свой ключ идемпотентности в той же транзакции БД, что и изменение балансов,
+ * поэтому ключ сохраняется тогда и только тогда, когда перевод проведен. Повтор запроса с тем же ключом
+ * не выполняет перевод и не обращается к картам, а получает прежний результат.
+ */
+public interface TransferIdempotencyService {
+    /**
+     * Заголовок запроса с ключом идемпотентности.
+     */
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    /**
+     * Заголовок ответа, отмечающий повтор уже выполненного перевода.
+     */
+    String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    /**
+     * Выполняет перевод, если перевод с этим ключом еще не выполнялся.
+     * Проверка обходится не дороже одного поиска по первичному ключу таблицы ключей,
+     * недавно выполненные переводы находятся в кэше без обращения к БД.
+     * Если одновременно выполняется перевод с тем же ключом, запрос дожидается его завершения
+     * и считается повтором, если тот перевод был проведен.
+     *
+     * @param key      ключ идемпотентности.
+     * @param transfer перевод; должен вызвать {@link #register} в своей транзакции.
+     * @return true, если перевод уже был выполнен и не выполнялся повторно, иначе false.
+     * @throws CardOperationException если ключ уже использован для другого запроса.
+     */
+    boolean execute(TransferIdempotencyKey key, Runnable transfer);
+
+    /**
+     * Записывает ключ выполненного перевода в рамках текущей транзакции БД.
+     * Вызывается первым действием транзакции перевода: одновременный перевод с тем же ключом
+     * ожидает на уникальном индексе, а не выполняет перевод второй раз.
+     *
+     * @param key ключ идемпотентности.
+     * @throws org.springframework.dao.DuplicateKeyException если ключ уже записан.
+     */
+    void register(TransferIdempotencyKey key);
+
+    /**
+     * Возвращает результаты переводов пакета, записанные выполненными частями пакета с этим ключом.
+     *
+     * @param key ключ идемпотентности пакета.
+     * @return результаты переводов в порядке запросов, начиная с первого: COMPLETED или код ошибки;
+     * пустой список, если с этим ключом не выполнено ни одной части.
+     * @throws CardOperationException если ключ уже использован для другого запроса.
+     */
+    List<String> findBatchResults(TransferIdempotencyKey key);
+
+    /**
+     * Записывает результаты выполненной части пакета в рамках текущей транзакции БД.
+     * Вызывается последним действием транзакции части, когда результаты ее переводов известны.
+     *
+     * @param key      ключ идемпотентности пакета.
+     * @param recorded количество результатов, записанных предыдущими частями.
+     * @param results  результаты всех выполненных частей, включая текущую.
+     * @throws org.springframework.dao.DuplicateKeyException если первую часть одновременно выполнил другой запрос.
+     * @throws org.springframework.dao.OptimisticLockingFailureException если часть одновременно выполнил другой запрос.
+     */
+    void registerBatchResults(TransferIdempotencyKey key, int recorded, List<String> results);
+
+    /**
+     * Удаляет ключи старше {@code app.transfer.idempotency.retention-hours}.
+     * Повтор запроса с удаленным ключом выполняется как новый перевод.
+     *
+     * @return количество удаленных ключей.
+     */
+    int purgeExpired();
+}
@@ -0,0 +1,22 @@
+package ru.lidzhiev.bankcards.service;
+
+/**
+ * Стратегия защиты балансов карт от конкурентных изменений при переводе.
+ * Выбирается для всего приложения свойством {@code app.transfer.lock-strategy}.
+ */
+public enum TransferLockStrategy {
+    /**
+     * Строки обеих карт блокируются (SELECT ... FOR UPDATE) в порядке возрастания id.
+     */
+    PESSIMISTIC,
+    /**
+     * Карты читаются без блокировок, конфликт определяется по колонке version,
+     * перевод повторяется ограниченное число раз.
+     */
+    OPTIMISTIC,
+    /**
+     * Балансы не читаются в приложение: списание и зачисление выполняются условными
+     * UPDATE-запросами, результат проверяется по количеству измененных строк.
+     */
+    ATOMIC
+}
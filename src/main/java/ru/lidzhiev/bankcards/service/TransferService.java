@@ -17,4 +17,15 @@ public interface TransferService {
      * @return объект транзакции, отражающей совершённый перевод.
      */
     Transaction transfer(TransferRequestDto transferRequest);
+
+    /**
+     * Выполняет перевод и в той же транзакции записывает его ключ идемпотентности
+     * (см. {@link TransferIdempotencyService#register}).
+     *
+     * @param transferRequest объект с данными о переводе (карта-отправитель, карта-получатель, сумма).
+     * @param idempotencyKey  ключ идемпотентности перевода.
+     * @return объект транзакции, отражающей совершённый перевод.
+     * @throws org.springframework.dao.DuplicateKeyException если перевод с этим ключом уже выполнен.
+     */
+    Transaction transfer(TransferRequestDto transferRequest, TransferIdempotencyKey idempotencyKey);
 }
@@ -1,18 +1,22 @@
 package ru.lidzhiev.bankcards.service;
 
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import ru.lidzhiev.bankcards.dto.CreateUserDto;
 import ru.lidzhiev.bankcards.dto.UserDto;
 import ru.lidzhiev.bankcards.entity.User;
 import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
 import ru.lidzhiev.bankcards.exception.UserOperationException;
+import ru.lidzhiev.bankcards.security.UserSnapshot;
 
 /**
  * Интерфейс для предоставления сервисов, связанных с управлением пользователями приложения.
  * Расширяет стандартный интерфейс Spring Security {@code UserDetailsService},
  * реализуя специфичные методы для работы с пользователями.
+ * Через {@code UserDetailsPasswordService} сохраняет хеш пароля, перехешированный при входе.
  */
-public interface UserService extends UserDetailsService {
+public interface UserService extends UserDetailsService, UserDetailsPasswordService {
     /**
      * Создает нового пользователя.
      * Перед созданием проверяет уникальность имен пользователя и электронной почты.
@@ -25,13 +29,13 @@ public interface UserService extends UserDetailsService {
 
 
     /**
-     * Поиск сущности пользователя по имени пользователя.
+     * Поиск пользователя по имени пользователя.
      *
      * @param username Имя пользователя.
-     * @return Объект User с полной информацией о пользователе.
+     * @return Неизменяемый снимок пользователя.
      * @throws ResourceNotFoundException Если пользователь не найден.
      */
-    User findEntityByUsername(String username);
+    UserSnapshot findSnapshotByUsername(String username);
 
     /**
      * Получает публичную информацию о пользователе по имени пользователя.
@@ -84,4 +88,15 @@ public interface UserService extends UserDetailsService {
      * @return Объект UserDto с минимальной информацией о пользователе.
      */
     UserDto toDto(User user);
+
+    /**
+     * Сохраняет новый хеш пароля пользователя после успешного входа,
+     * если прежний хеш получен устаревшим алгоритмом или с меньшей стоимостью.
+     *
+     * @param user        пользователь, прошедший аутентификацию.
+     * @param newPassword новый хеш пароля.
+     * @return пользователь с обновленным хешем пароля.
+     */
+    @Override
+    UserDetails updatePassword(UserDetails user, String newPassword);
 }
@@ -7,9 +7,10 @@ import ru.lidzhiev.bankcards.dto.CreateUserDto;
 import ru.lidzhiev.bankcards.dto.JwtAuthenticationResponse;
 import ru.lidzhiev.bankcards.dto.SignInRequest;
 import ru.lidzhiev.bankcards.dto.SignUpRequest;
-import ru.lidzhiev.bankcards.entity.User;
 import ru.lidzhiev.bankcards.entity.enums.UserRole;
 import ru.lidzhiev.bankcards.security.JwtService;
+import ru.lidzhiev.bankcards.security.TokenRevocationService;
+import ru.lidzhiev.bankcards.security.UserSnapshot;
 import ru.lidzhiev.bankcards.service.AuthenticationService;
 import ru.lidzhiev.bankcards.service.UserService;
 
@@ -22,11 +23,14 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private final UserService userService;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
+    private final TokenRevocationService tokenRevocationService;
 
-    public AuthenticationServiceImpl(UserService userService, JwtService jwtService, AuthenticationManager authenticationManager) {
+    public AuthenticationServiceImpl(UserService userService, JwtService jwtService, AuthenticationManager authenticationManager,
+                                     TokenRevocationService tokenRevocationService) {
         this.userService = userService;
         this.jwtService = jwtService;
         this.authenticationManager = authenticationManager;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     /**
@@ -42,10 +46,10 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         );
         userService.create(createUserDto);
 
-        // get entity User for JWT
-        User user = userService.findEntityByUsername(request.getUsername());
+        // get User for JWT
+        UserSnapshot user = userService.findSnapshotByUsername(request.getUsername());
 
-        String jwt = jwtService.generateToken(user);
+        String jwt = jwtService.generateToken(user, tokenRevocationService.getTokenVersion(user.getId()));
         return new JwtAuthenticationResponse(jwt);
     }
 
@@ -60,9 +64,9 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                 request.getPassword()
         ));
 
-        User user = userService.findEntityByUsername(request.getUsername());
+        UserSnapshot user = userService.findSnapshotByUsername(request.getUsername());
 
-        String jwt = jwtService.generateToken(user);
+        String jwt = jwtService.generateToken(user, tokenRevocationService.getTokenVersion(user.getId()));
         return new JwtAuthenticationResponse(jwt);
     }
 }
@@ -0,0 +1,323 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.dto.TransferResultDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.repository.projection.CardNumberId;
+import ru.lidzhiev.bankcards.service.BatchTransferService;
+import ru.lidzhiev.bankcards.service.CardBalanceBucketService;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyKey;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Реализация сервиса пакетных переводов.
+ * Номера карт всего пакета разрешаются в id одним запросом. Далее пакет делится на части по
+ * {@code app.transfer.batch.chunk-size} переводов; для каждой части в отдельной транзакции карты блокируются
+ * одним запросом в порядке возрастания id, переводы применяются к балансам в памяти,
+ * а новые балансы и записи транзакций пишутся в БД пакетными JDBC-запросами.
+ * Карты с корзинами баланса и так заблокированы монопольно, поэтому их корзины консолидируются
+ * при первом переводе части, а зачисления пишутся в строку карты.
+ * Списывать средства можно только с карт пользователя, выполняющего пакет; получателем может быть любая карта.
+ * Исключение в транзакции части откатывает только эту часть, ее переводы получают код BATCH_CHUNK_FAILED.
+ */
+@Slf4j
+@Service
+public class BatchTransferServiceImpl implements BatchTransferService {
+    private static final String UPDATE_BALANCE_SQL =
+            "UPDATE cards SET balance = ?, version = version + 1 WHERE id = ?";
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (from_card_id, to_card_id, amount, created_at, status) VALUES (?, ?, ?, ?, ?)";
+
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+    private final CardBalanceBucketService balanceBuckets;
+    private final TransferIdempotencyService transferIdempotency;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final int chunkSize;
+
+    public BatchTransferServiceImpl(CardRepository cardRepository,
+                                    UserRepository userRepository,
+                                    CardBalanceBucketService balanceBuckets,
+                                    TransferIdempotencyService transferIdempotency,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.transfer.batch.max-size:10000}") int maxBatchSize,
+                                    @Value("${app.transfer.batch.chunk-size:500}") int chunkSize) {
+        this.cardRepository = cardRepository;
+        this.userRepository = userRepository;
+        this.balanceBuckets = balanceBuckets;
+        this.transferIdempotency = transferIdempotency;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = maxBatchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<TransferResultDto> transferBatch(List<TransferRequestDto> requests, String username) {
+        return transferBatch(requests, username, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<TransferResultDto> transferBatch(List<TransferRequestDto> requests, String username,
+                                                 TransferIdempotencyKey idempotencyKey) {
+        if (requests.size() > maxBatchSize) {
+            throw new CardOperationException(ErrorCode.BATCH_TOO_LARGE);
+        }
+
+        TransferResultDto[] results = new TransferResultDto[requests.size()];
+        List<String> recorded = new ArrayList<>();
+        if (idempotencyKey != null) {
+            recorded.addAll(transferIdempotency.findBatchResults(idempotencyKey));
+            for (int i = 0; i < recorded.size(); i++) {
+                results[i] = toResult(i, recorded.get(i));
+            }
+            if (recorded.size() == requests.size()) {
+                return Arrays.asList(results);
+            }
+        }
+
+        Long ownerId = userRepository.findByUsername(username)
+                .map(User::getId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.USER_NOT_FOUND));
+        Map<String, Long> cardIds = resolveCardIds(requests);
+        for (int start = recorded.size(); start < requests.size(); start += chunkSize) {
+            int chunkStart = start;
+            int chunkEnd = Math.min(start + chunkSize, requests.size());
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    applyChunk(requests, chunkStart, chunkEnd, ownerId, cardIds, results);
+                    if (idempotencyKey != null) {
+                        List<String> chunkResults = new ArrayList<>(recorded);
+                        for (int i = chunkStart; i < chunkEnd; i++) {
+                            chunkResults.add(toCode(results[i]));
+                        }
+                        transferIdempotency.registerBatchResults(idempotencyKey, recorded.size(), chunkResults);
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.warn("Transfer chunk [{}, {}) rolled back", chunkStart, chunkEnd, e);
+                // with a key the stored results must stay a prefix of the batch, so a retry resumes from this chunk
+                int failedEnd = idempotencyKey != null ? requests.size() : chunkEnd;
+                for (int i = chunkStart; i < failedEnd; i++) {
+                    results[i] = TransferResultDto.failed(i, ErrorCode.BATCH_CHUNK_FAILED.name());
+                }
+                if (idempotencyKey != null) {
+                    break;
+                }
+                continue;
+            }
+            if (idempotencyKey != null) {
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    recorded.add(toCode(results[i]));
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Находит id всех карт пакета одним запросом.
+     *
+     * @param requests запросы на перевод.
+     * @return id карт, сгруппированные по номеру; номерам, принадлежащим нескольким картам, соответствует null.
+     */
+    private Map<String, Long> resolveCardIds(List<TransferRequestDto> requests) {
+        Set<String> numbers = new HashSet<>();
+        for (TransferRequestDto request : requests) {
+            if (isWellFormed(request)) {
+                numbers.add(request.getFromCardNumber());
+                numbers.add(request.getToCardNumber());
+            }
+        }
+        if (numbers.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Long> cardIds = new HashMap<>();
+        for (CardNumberId card : cardRepository.findIdsByNumberIn(numbers)) {
+            if (cardIds.containsKey(card.getNumber())) {
+                // only the transfers with this number fail, not the whole batch
+                cardIds.put(card.getNumber(), null);
+            } else {
+                cardIds.put(card.getNumber(), card.getId());
+            }
+        }
+        return cardIds;
+    }
+
+    /**
+     * Применяет часть пакета в текущей транзакции.
+     *
+     * @param requests   запросы на перевод.
+     * @param start      индекс первого запроса части (включительно).
+     * @param end        индекс последнего запроса части (исключительно).
+     * @param ownerId    id пользователя, выполняющего пакет.
+     * @param cardIds    id карт, сгруппированные по номеру.
+     * @param results    массив результатов, заполняемый для индексов части.
+     */
+    private void applyChunk(List<TransferRequestDto> requests, int start, int end, Long ownerId,
+                            Map<String, Long> cardIds, TransferResultDto[] results) {
+        Set<Long> ids = new HashSet<>();
+        for (int i = start; i < end; i++) {
+            TransferRequestDto request = requests.get(i);
+            if (isWellFormed(request)) {
+                Optional.ofNullable(cardIds.get(request.getFromCardNumber())).ifPresent(ids::add);
+                Optional.ofNullable(cardIds.get(request.getToCardNumber())).ifPresent(ids::add);
+            }
+        }
+        Map<Long, Card> cards = ids.isEmpty() ? Map.of() : cardRepository.findAllByIdInForUpdate(ids)
+                .stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+        Map<Long, Money> balances = new TreeMap<>();
+        List<Object[]> transactions = new ArrayList<>();
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        for (int i = start; i < end; i++) {
+            TransferRequestDto request = requests.get(i);
+            try {
+                Card from = findCard(cards, cardIds, request, request.getFromCardNumber());
+                Card to = findCard(cards, cardIds, request, request.getToCardNumber());
+                Money fromBalance = balances.computeIfAbsent(from.getId(), id -> initialBalance(from));
+                validateTransfer(request, from, to, fromBalance, ownerId);
+
+                balances.put(from.getId(), fromBalance.minus(request.getAmount()));
+                balances.put(to.getId(), balances.computeIfAbsent(to.getId(), id -> initialBalance(to)).plus(request.getAmount()));
+                transactions.add(new Object[]{from.getId(), to.getId(), request.getAmount().toBigDecimal(), createdAt, TransferResultDto.COMPLETED});
+                results[i] = TransferResultDto.completed(i);
+            } catch (CardOperationException e) {
+                results[i] = TransferResultDto.failed(i, e.getErrorCode().name());
+            }
+        }
+
+        if (!balances.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, balances.entrySet()
+                    .stream()
+                    .map(balance -> new Object[]{balance.getValue().toBigDecimal(), balance.getKey()})
+                    .toList());
+        }
+        if (!transactions.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, transactions);
+        }
+        log.debug("Applied transfer chunk [{}, {}): {} completed", start, end, transactions.size());
+    }
+
+    /**
+     * Баланс карты до первого перевода части, в котором она участвует. Корзины карты обнуляются, а их сумма
+     * попадает в баланс, который будет записан в строку карты вместе с остальными балансами части.
+     * Сущность карты не изменяется, иначе Hibernate записал бы ее поверх пакетного UPDATE.
+     *
+     * @param card заблокированная карта.
+     * @return баланс карты вместе с зачислениями из корзин.
+     */
+    private Money initialBalance(Card card) {
+        if (card.getBalanceBuckets() == 0) {
+            return card.getBalance();
+        }
+        return card.getBalance().plus(balanceBuckets.drain(card.getId()));
+    }
+
+    /**
+     * Находит заблокированную карту запроса по номеру.
+     *
+     * @param cards      заблокированные карты, сгруппированные по id.
+     * @param cardIds    id карт, сгруппированные по номеру.
+     * @param request    запрос на перевод.
+     * @param cardNumber номер карты.
+     * @return объект карты.
+     * @throws CardOperationException если запрос некорректен, карта не найдена или номер принадлежит нескольким картам.
+     */
+    private Card findCard(Map<Long, Card> cards, Map<String, Long> cardIds, TransferRequestDto request, String cardNumber) {
+        if (!isWellFormed(request)) {
+            throw new CardOperationException(ErrorCode.INVALID_TRANSFER_REQUEST);
+        }
+        Long id = cardIds.get(cardNumber);
+        if (id == null && cardIds.containsKey(cardNumber)) {
+            throw new CardOperationException(ErrorCode.AMBIGUOUS_CARD_NUMBER);
+        }
+        Card card = id != null ? cards.get(id) : null;
+        if (card == null) {
+            throw new CardOperationException(ErrorCode.CARD_NOT_FOUND);
+        }
+        return card;
+    }
+
+    /**
+     * Валидирует перевод с учетом баланса, уже измененного предыдущими переводами пакета.
+     *
+     * @param request     запрос на перевод.
+     * @param from        отправляемая карта.
+     * @param to          принимающая карта.
+     * @param fromBalance текущий баланс карты-отправителя.
+     * @param ownerId     id пользователя, выполняющего пакет.
+     * @throws CardOperationException если проверка выявила ошибку.
+     */
+    private void validateTransfer(TransferRequestDto request, Card from, Card to, Money fromBalance, Long ownerId) {
+        if (!from.getOwner().getId().equals(ownerId)) {
+            throw new CardOperationException(ErrorCode.NOT_OWNER);
+        }
+        if (from.getId().equals(to.getId())) {
+            throw new CardOperationException(ErrorCode.SAME_CARD_TRANSFER);
+        }
+        if (!from.getStatus().equals(CardStatus.ACTIVE.name()) || !to.getStatus().equals(CardStatus.ACTIVE.name())) {
+            throw new CardOperationException(ErrorCode.CARD_BLOCKED);
+        }
+        if (fromBalance.isLessThan(request.getAmount())) {
+            throw new CardOperationException(ErrorCode.CARD_INSUFFICIENT_FUNDS);
+        }
+    }
+
+    /**
+     * Код результата перевода, под которым он записывается с ключом идемпотентности пакета.
+     *
+     * @param result результат перевода.
+     * @return COMPLETED или код ошибки.
+     */
+    private static String toCode(TransferResultDto result) {
+        return result.getErrorCode() != null ? result.getErrorCode() : result.getStatus();
+    }
+
+    /**
+     * Восстанавливает результат перевода по записанному коду.
+     *
+     * @param index индекс запроса в пакете.
+     * @param code  COMPLETED или код ошибки.
+     * @return результат перевода.
+     */
+    private static TransferResultDto toResult(int index, String code) {
+        return TransferResultDto.COMPLETED.equals(code) ? TransferResultDto.completed(index) : TransferResultDto.failed(index, code);
+    }
+
+    private boolean isWellFormed(TransferRequestDto request) {
+        return request != null
+                && request.getFromCardNumber() != null
+                && request.getToCardNumber() != null
+                && request.getAmount() != null
+                && request.getAmount().isPositive();
+    }
+}
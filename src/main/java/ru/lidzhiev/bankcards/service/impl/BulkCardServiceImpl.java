@@ -0,0 +1,261 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.lidzhiev.bankcards.dto.CardIssueResultDto;
+import ru.lidzhiev.bankcards.dto.CreateCardDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.repository.projection.UsernameId;
+import ru.lidzhiev.bankcards.service.BulkCardService;
+import ru.lidzhiev.bankcards.service.CardNumberAllocator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Реализация сервиса массового выпуска карт.
+ * Все записи пакета проверяются до записи в БД: владельцы находятся одним запросом, каждая дата
+ * разбирается один раз. Проверенные карты сохраняются частями по {@code app.cards.bulk.chunk-size}:
+ * номера выдает {@link CardNumberAllocator} без обращения к БД на каждый номер,
+ * а карты каждой части вставляются одним JDBC batch с id из пула последовательности.
+ */
+@Slf4j
+@Service
+public class BulkCardServiceImpl implements BulkCardService {
+    private static final String CSV_HEADER_PREFIX = "expireAt";
+
+    private final UserRepository userRepository;
+    private final CardRepository cardRepository;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final int chunkSize;
+
+    public BulkCardServiceImpl(UserRepository userRepository,
+                               CardRepository cardRepository,
+                               CardNumberAllocator cardNumberAllocator,
+                               EntityManager entityManager,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.cards.bulk.max-size:100000}") int maxBatchSize,
+                               @Value("${app.cards.bulk.chunk-size:1000}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.cardRepository = cardRepository;
+        this.cardNumberAllocator = cardNumberAllocator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = maxBatchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<CardIssueResultDto> issueCards(List<CreateCardDto> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new CardOperationException(ErrorCode.BATCH_TOO_LARGE);
+        }
+
+        Map<String, Long> ownerIds = resolveOwnerIds(requests);
+        Map<String, LocalDate> expiryDates = new HashMap<>();
+        LocalDate today = LocalDate.now();
+        CardIssueResultDto[] results = new CardIssueResultDto[requests.size()];
+        List<PendingCard> pending = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                pending.add(validate(i, requests.get(i), ownerIds, expiryDates, today));
+            } catch (CardOperationException e) {
+                results[i] = CardIssueResultDto.failed(i, e.getErrorCode().name());
+            }
+        }
+
+        int issued = 0;
+        for (int start = 0; start < pending.size(); start += chunkSize) {
+            List<PendingCard> chunk = pending.subList(start, Math.min(start + chunkSize, pending.size()));
+            try {
+                List<Card> cards = transactionTemplate.execute(status -> persistChunk(chunk));
+                for (int k = 0; k < chunk.size(); k++) {
+                    results[chunk.get(k).index()] = CardIssueResultDto.issued(chunk.get(k).index(), cards.get(k).getId());
+                }
+                issued += chunk.size();
+            } catch (DataIntegrityViolationException e) {
+                // a number collided with a card issued before numbers came from the allocator
+                log.warn("Card issue chunk of {} cards rolled back: {}", chunk.size(), e.getMessage());
+                for (PendingCard card : chunk) {
+                    results[card.index()] = CardIssueResultDto.failed(card.index(), ErrorCode.CARD_NUMBER_COLLISION.name());
+                }
+            }
+        }
+        log.debug("Issued {} of {} cards", issued, requests.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<CardIssueResultDto> issueCards(InputStream csv) throws IOException {
+        List<CreateCardDto> requests = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            if (first && line.regionMatches(true, 0, CSV_HEADER_PREFIX, 0, CSV_HEADER_PREFIX.length())) {
+                first = false;
+                continue;
+            }
+            first = false;
+            if (!line.isBlank()) {
+                requests.add(parseCsvLine(line));
+                if (requests.size() > maxBatchSize) {
+                    throw new CardOperationException(ErrorCode.BATCH_TOO_LARGE);
+                }
+            }
+        }
+        return issueCards(requests);
+    }
+
+    /**
+     * Разбирает строку CSV {@code expireAt,balance,username}.
+     *
+     * @param line строка CSV.
+     * @return запрос на выпуск карты или null, если строку не удалось разобрать.
+     */
+    private CreateCardDto parseCsvLine(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 3) {
+            return null;
+        }
+        try {
+            return new CreateCardDto(fields[0].trim(), Money.of(fields[1].trim()), fields[2].trim());
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Находит id всех владельцев пакета одним запросом.
+     *
+     * @param requests запросы на выпуск карт.
+     * @return id пользователей, сгруппированные по имени.
+     */
+    private Map<String, Long> resolveOwnerIds(List<CreateCardDto> requests) {
+        Set<String> usernames = new HashSet<>();
+        for (CreateCardDto request : requests) {
+            if (request != null && request.getUsername() != null) {
+                usernames.add(request.getUsername());
+            }
+        }
+        if (usernames.isEmpty()) {
+            return Map.of();
+        }
+        return userRepository.findByUsernameIn(usernames)
+                .stream()
+                .collect(Collectors.toMap(UsernameId::getUsername, UsernameId::getId));
+    }
+
+    /**
+     * Проверяет запрос на выпуск карты по тем же правилам, что и выпуск одной карты.
+     *
+     * @param index       индекс запроса в пакете.
+     * @param request     запрос на выпуск карты.
+     * @param ownerIds    id владельцев, сгруппированные по имени.
+     * @param expiryDates уже разобранные даты окончания срока действия.
+     * @param today       текущая дата.
+     * @return карта, готовая к сохранению.
+     * @throws CardOperationException если запрос некорректен.
+     */
+    private PendingCard validate(int index, CreateCardDto request, Map<String, Long> ownerIds,
+                                 Map<String, LocalDate> expiryDates, LocalDate today) {
+        if (request == null || request.getExpireAt() == null || request.getUsername() == null) {
+            throw new CardOperationException(ErrorCode.INVALID_CARD_REQUEST);
+        }
+        Money balance = request.getBalance() != null ? request.getBalance() : Money.ZERO;
+        if (balance.isNegative()) {
+            throw new CardOperationException(ErrorCode.INVALID_CARD_REQUEST);
+        }
+        LocalDate expireAt = expiryDates.computeIfAbsent(request.getExpireAt(), BulkCardServiceImpl::parseDate);
+        if (expireAt == null) {
+            throw new CardOperationException(ErrorCode.INVALID_CARD_REQUEST);
+        }
+        if (expireAt.isBefore(today)) {
+            throw new CardOperationException(ErrorCode.CARD_EXPIRED);
+        }
+        Long ownerId = ownerIds.get(request.getUsername());
+        if (ownerId == null) {
+            throw new CardOperationException(ErrorCode.USER_NOT_FOUND);
+        }
+        return new PendingCard(index, ownerId, expireAt, balance);
+    }
+
+    /**
+     * Сохраняет часть пакета в текущей транзакции одним JDBC batch.
+     *
+     * @param chunk проверенные карты части.
+     * @return сохраненные карты в порядке части.
+     */
+    private List<Card> persistChunk(List<PendingCard> chunk) {
+        entityManager.unwrap(Session.class).setJdbcBatchSize(chunk.size());
+        List<Card> cards = new ArrayList<>(chunk.size());
+        for (PendingCard pendingCard : chunk) {
+            Card card = new Card();
+            card.setNumber(cardNumberAllocator.nextNumber());
+            card.setExpireAt(pendingCard.expireAt());
+            card.setBalance(pendingCard.balance());
+            card.setStatus(CardStatus.ACTIVE.name());
+            card.setOwner(entityManager.getReference(User.class, pendingCard.ownerId()));
+            entityManager.persist(card);
+            cards.add(card);
+        }
+        cardRepository.flush();
+        entityManager.clear();
+        return cards;
+    }
+
+    /**
+     * Разбирает дату окончания срока действия.
+     *
+     * @param value дата в формате YYYY-MM-DD.
+     * @return дата или null, если строка некорректна.
+     */
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Проверенный запрос на выпуск карты.
+     *
+     * @param index    индекс запроса в пакете.
+     * @param ownerId  id владельца.
+     * @param expireAt дата окончания срока действия.
+     * @param balance  начальный баланс.
+     */
+    private record PendingCard(int index, Long ownerId, LocalDate expireAt, Money balance) {
+    }
+}
@@ -0,0 +1,140 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
+import ru.lidzhiev.bankcards.service.CardBalanceBucketService;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Реализация корзин баланса горячих карт на JDBC-запросах.
+ * Зачисление - один UPDATE строки случайной корзины, поэтому одновременные зачисления на карту с N корзинами
+ * конкурируют за блокировку строки в среднем в N раз реже. Консолидация читает сумму корзин уже под монопольной
+ * блокировкой строки карты: новых зачислений в этот момент нет, а зачисления, ожидавшие блокировки, уже зафиксированы.
+ * Максимальное количество корзин задается свойством {@code app.cards.balance-buckets.max-count}.
+ */
+@Slf4j
+@Service
+public class CardBalanceBucketServiceImpl implements CardBalanceBucketService {
+    private static final String CREDIT_SQL =
+            "UPDATE card_balance_buckets SET amount = amount + ? WHERE card_id = ? AND bucket = ?";
+    private static final String LOCK_CARD_SQL = "SELECT balance_buckets FROM cards WHERE id = ? FOR UPDATE";
+    private static final String SUM_SQL = "SELECT coalesce(sum(amount), 0) FROM card_balance_buckets WHERE card_id = ?";
+    private static final String RESET_SQL = "UPDATE card_balance_buckets SET amount = 0 WHERE card_id = ? AND amount <> 0";
+    private static final String CONSOLIDATE_SQL =
+            "UPDATE cards SET balance = balance + ?, version = version + 1 WHERE id = ?";
+    private static final String RESIZE_SQL =
+            "UPDATE cards SET balance = balance + ?, balance_buckets = ?, version = version + 1 WHERE id = ?";
+    private static final String DELETE_BUCKETS_SQL = "DELETE FROM card_balance_buckets WHERE card_id = ?";
+    private static final String INSERT_BUCKET_SQL =
+            "INSERT INTO card_balance_buckets (card_id, bucket, amount) VALUES (?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxBuckets;
+
+    public CardBalanceBucketServiceImpl(JdbcTemplate jdbcTemplate,
+                                        @Value("${app.cards.balance-buckets.max-count:64}") int maxBuckets) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public void credit(Long cardId, int buckets, Money amount) {
+        int bucket = ThreadLocalRandom.current().nextInt(buckets);
+        jdbcTemplate.update(CREDIT_SQL, amount.toBigDecimal(), cardId, bucket);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public Money drain(Long cardId) {
+        BigDecimal drained = jdbcTemplate.queryForObject(SUM_SQL, BigDecimal.class, cardId);
+        if (drained == null || drained.signum() == 0) {
+            return Money.ZERO;
+        }
+        jdbcTemplate.update(RESET_SQL, cardId);
+        return Money.of(drained);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Зачисления в корзинах, прочитанные вместе с сущностью, не учитываются: они могли устареть до блокировки.
+     */
+    @Transactional
+    public void consolidateIfShort(Card card, Money amount) {
+        if (!card.getBalance().isLessThan(amount)) {
+            return;
+        }
+        lockCard(card.getId());
+        card.consolidate(drain(card.getId()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public boolean consolidate(Long cardId) {
+        lockCard(cardId);
+        Money drained = drain(cardId);
+        if (!drained.isPositive()) {
+            return false;
+        }
+        jdbcTemplate.update(CONSOLIDATE_SQL, drained.toBigDecimal(), cardId);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transactional
+    public void resize(Long cardId, int buckets) {
+        if (buckets < 0 || buckets > maxBuckets) {
+            throw new CardOperationException(ErrorCode.INVALID_BALANCE_BUCKETS);
+        }
+        int current = lockCard(cardId);
+        if (current == buckets) {
+            return;
+        }
+
+        Money drained = drain(cardId);
+        jdbcTemplate.update(RESIZE_SQL, drained.toBigDecimal(), buckets, cardId);
+        jdbcTemplate.update(DELETE_BUCKETS_SQL, cardId);
+        if (buckets > 0) {
+            jdbcTemplate.batchUpdate(INSERT_BUCKET_SQL, IntStream.range(0, buckets)
+                    .mapToObj(bucket -> new Object[]{cardId, bucket})
+                    .toList());
+        }
+        log.info("Card {} balance buckets changed from {} to {}", cardId, current, buckets);
+    }
+
+    /**
+     * Блокирует строку карты монопольно (SELECT ... FOR UPDATE).
+     * Повторная блокировка строки, уже заблокированной текущей транзакцией, не ждет.
+     *
+     * @param cardId ID карты.
+     * @return количество корзин карты.
+     * @throws ResourceNotFoundException если карта не найдена.
+     */
+    private int lockCard(Long cardId) {
+        List<Integer> buckets = jdbcTemplate.queryForList(LOCK_CARD_SQL, Integer.class, cardId);
+        if (buckets.isEmpty()) {
+            throw new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND);
+        }
+        return buckets.get(0);
+    }
+}
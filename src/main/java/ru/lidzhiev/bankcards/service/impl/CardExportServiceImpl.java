@@ -0,0 +1,143 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.lidzhiev.bankcards.dto.CardDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.service.CardExportFormat;
+import ru.lidzhiev.bankcards.service.CardExportService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static ru.lidzhiev.bankcards.util.CardMaskUtil.maskCardNumber;
+
+/**
+ * Реализация сервиса выгрузки карт.
+ * Карты читаются однонаправленным курсором JDBC с ограниченным fetch size в read-only транзакции,
+ * каждая записанная карта (и ее владелец) отсоединяется от контекста персистентности,
+ * поэтому потребление памяти не зависит от количества карт.
+ */
+@Slf4j
+@Service
+public class CardExportServiceImpl implements CardExportService {
+    private static final String CSV_HEADER = "id,maskedNumber,status,expireAt,balance,ownerUsername";
+
+    private final CardRepository cardRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter cardWriter;
+
+    public CardExportServiceImpl(CardRepository cardRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.cardRepository = cardRepository;
+        this.entityManager = entityManager;
+        this.cardWriter = objectMapper.writerFor(CardDto.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
+    public void exportCards(CardExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == CardExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        long count = 0;
+        try (Stream<Card> cards = cardRepository.streamAll()) {
+            Iterator<Card> iterator = cards.iterator();
+            while (iterator.hasNext()) {
+                Card card = iterator.next();
+                if (format == CardExportFormat.CSV) {
+                    writeCsv(writer, card);
+                } else {
+                    writeJson(writer, card);
+                }
+                detach(card);
+                count++;
+            }
+        }
+        writer.flush();
+        log.debug("Exported {} cards as {}", count, format);
+    }
+
+    /**
+     * Пишет карту одной строкой JSON.
+     *
+     * @param writer поток записи.
+     * @param card   карта.
+     * @throws IOException при ошибке записи.
+     */
+    private void writeJson(Writer writer, Card card) throws IOException {
+        CardDto dto = new CardDto(
+                card.getId(),
+                maskCardNumber(card.getNumber()),
+                card.getStatus(),
+                card.getExpireAt().toString(),
+                card.getTotalBalance(),
+                card.getOwner() != null ? card.getOwner().getUsername() : null
+        );
+        writer.write(cardWriter.writeValueAsString(dto));
+        writer.write('\n');
+    }
+
+    /**
+     * Пишет карту строкой CSV.
+     *
+     * @param writer поток записи.
+     * @param card   карта.
+     * @throws IOException при ошибке записи.
+     */
+    private void writeCsv(Writer writer, Card card) throws IOException {
+        writer.write(String.valueOf(card.getId()));
+        writer.write(',');
+        writer.write(maskCardNumber(card.getNumber()));
+        writer.write(',');
+        writer.write(csv(card.getStatus()));
+        writer.write(',');
+        writer.write(card.getExpireAt().toString());
+        writer.write(',');
+        writer.write(card.getTotalBalance().toString());
+        writer.write(',');
+        writer.write(card.getOwner() != null ? csv(card.getOwner().getUsername()) : "");
+        writer.write('\n');
+    }
+
+    /**
+     * Экранирует значение CSV по RFC 4180.
+     *
+     * @param value значение.
+     * @return значение, при необходимости заключенное в кавычки.
+     */
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Отсоединяет карту и ее владельца от контекста персистентности, чтобы они не накапливались в нем.
+     *
+     * @param card карта.
+     */
+    private void detach(Card card) {
+        entityManager.detach(card);
+        if (card.getOwner() != null) {
+            entityManager.detach(card.getOwner());
+        }
+    }
+}
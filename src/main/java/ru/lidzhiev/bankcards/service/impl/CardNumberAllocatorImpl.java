@@ -0,0 +1,156 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.lidzhiev.bankcards.service.CardNumberAllocator;
+import ru.lidzhiev.bankcards.util.FeistelPermutation;
+import ru.lidzhiev.bankcards.util.LuhnUtil;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Реализация выдачи номеров карт.
+ * Номер строится из BIN ({@code app.cards.number.bin}), номера счета и контрольной цифры.
+ * Номер счета - значение счетчика, перемешанное {@link FeistelPermutation}: номера не идут подряд,
+ * но перестановка взаимно однозначна, поэтому уникальность следует из уникальности значений счетчика
+ * и не требует обращения к БД для каждого номера.
+ * Значения счетчика резервируются блоками: одно обращение к последовательности card_number_seq
+ * дает блок, который раздается потокам без блокировок. Размер блока - шаг последовательности,
+ * прочитанный из БД при запуске: блок больше шага пересекался бы со следующим и повторял номера.
+ * Ключ перестановки ({@code app.cards.number.key}) нельзя менять после выпуска первых карт:
+ * другая перестановка может повторить уже выданные номера.
+ */
+@Service
+public class CardNumberAllocatorImpl implements CardNumberAllocator {
+    private static final int CARD_NUMBER_LENGTH = 16;
+    private static final String SEQUENCE_NAME = "card_number_seq";
+
+    private final char[] bin;
+    private final long accountDomain;
+    private final int accountDigits;
+    private final FeistelPermutation permutation;
+    private final LongSupplier blockReserver;
+    private final int blockSize;
+    private volatile Block block = new Block(0, 0);
+
+    @Autowired
+    public CardNumberAllocatorImpl(JdbcTemplate jdbcTemplate,
+                                   EntityManagerFactory entityManagerFactory,
+                                   @Value("${app.cards.number.bin:220070}") String bin,
+                                   @Value("${app.cards.number.key}") String key) {
+        this(sequenceReserver(jdbcTemplate, entityManagerFactory), bin, key, sequenceIncrement(jdbcTemplate));
+    }
+
+    /**
+     * @param blockReserver возвращает начало очередного свободного блока значений счетчика.
+     * @param bin           BIN, от 6 до 8 цифр.
+     * @param key           ключ перестановки номеров счетов.
+     * @param blockSize     размер блока, не больше шага между началами блоков.
+     */
+    public CardNumberAllocatorImpl(LongSupplier blockReserver, String bin, String key, int blockSize) {
+        if (!bin.matches("\\d{6,8}")) {
+            throw new IllegalArgumentException("BIN must have 6 to 8 digits: " + bin);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.bin = bin.toCharArray();
+        this.accountDigits = CARD_NUMBER_LENGTH - 1 - bin.length();
+        this.accountDomain = pow10(accountDigits);
+        this.permutation = new FeistelPermutation(accountDomain, key);
+        this.blockReserver = blockReserver;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalStateException если все номера счетов для BIN уже выданы.
+     */
+    public String nextNumber() {
+        long account = permutation.permute(nextCounter());
+        char[] number = new char[CARD_NUMBER_LENGTH];
+        System.arraycopy(bin, 0, number, 0, bin.length);
+        for (int i = CARD_NUMBER_LENGTH - 2; i >= bin.length; i--) {
+            number[i] = (char) ('0' + account % 10);
+            account /= 10;
+        }
+        number[CARD_NUMBER_LENGTH - 1] = (char) ('0' + LuhnUtil.checkDigit(number, CARD_NUMBER_LENGTH - 1));
+        return new String(number);
+    }
+
+    /**
+     * Выдает следующее значение счетчика из текущего блока, при исчерпании блока резервирует новый.
+     *
+     * @return значение счетчика, не выданное ранее.
+     */
+    private long nextCounter() {
+        while (true) {
+            Block current = block;
+            long value = current.next.getAndIncrement();
+            if (value < current.end) {
+                if (value >= accountDomain) {
+                    throw new IllegalStateException("Card numbers for BIN " + new String(bin) + " are exhausted");
+                }
+                return value;
+            }
+            synchronized (this) {
+                if (block == current) {
+                    long start = blockReserver.getAsLong();
+                    block = new Block(start, start + blockSize);
+                }
+            }
+        }
+    }
+
+    private static LongSupplier sequenceReserver(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        String sql = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices()
+                .getDialect()
+                .getSequenceSupport()
+                .getSequenceNextValString(SEQUENCE_NAME);
+        return () -> jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    /**
+     * Читает шаг последовательности card_number_seq.
+     *
+     * @param jdbcTemplate JdbcTemplate.
+     * @return шаг последовательности.
+     * @throws IllegalStateException если шаг не помещается в int.
+     */
+    private static int sequenceIncrement(JdbcTemplate jdbcTemplate) {
+        Long increment = jdbcTemplate.queryForObject(
+                "select cast(increment as bigint) from information_schema.sequences where sequence_name = ?",
+                Long.class, SEQUENCE_NAME);
+        if (increment == null || increment > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Unsupported increment of " + SEQUENCE_NAME + ": " + increment);
+        }
+        return increment.intValue();
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    /**
+     * Зарезервированный блок значений счетчика [next, end).
+     */
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
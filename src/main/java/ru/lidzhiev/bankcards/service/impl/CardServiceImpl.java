@@ -1,14 +1,19 @@
 package ru.lidzhiev.bankcards.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.lidzhiev.bankcards.dto.CardDto;
+import ru.lidzhiev.bankcards.dto.CardSliceDto;
 import ru.lidzhiev.bankcards.dto.CreateCardDto;
 import ru.lidzhiev.bankcards.dto.TransferRequestDto;
 import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
 import ru.lidzhiev.bankcards.entity.User;
 import ru.lidzhiev.bankcards.entity.enums.CardStatus;
 import ru.lidzhiev.bankcards.exception.CardOperationException;
@@ -16,13 +21,22 @@ import ru.lidzhiev.bankcards.exception.ErrorCode;
 import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
 import ru.lidzhiev.bankcards.repository.CardRepository;
 import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.repository.projection.CardNumberId;
+import ru.lidzhiev.bankcards.repository.projection.CardView;
+import ru.lidzhiev.bankcards.service.CardBalanceBucketService;
+import ru.lidzhiev.bankcards.service.CardNumberAllocator;
 import ru.lidzhiev.bankcards.service.CardService;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyKey;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
+import ru.lidzhiev.bankcards.util.CursorUtil;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static ru.lidzhiev.bankcards.util.CardMaskUtil.maskCardNumber;
-import static ru.lidzhiev.bankcards.util.RandomCardNumber.generateCardNumber;
 /**
  * Реализация интерфейса {@link CardService} для операций с банковскими картами.
  * Данный класс обеспечивает управление карточными операциями: создание новых карт, обновление статуса карты, получение списка карт,
@@ -31,12 +45,27 @@ import static ru.lidzhiev.bankcards.util.RandomCardNumber.generateCardNumber;
  */
 @Service
 public class CardServiceImpl implements CardService {
+    private static final int MAX_SLICE_SIZE = 100;
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final CardBalanceBucketService balanceBuckets;
+    private final TransferIdempotencyService transferIdempotency;
+    private final TransferMetrics transferMetrics;
+    private final TransactionTemplate transactionTemplate;
 
-    public CardServiceImpl(CardRepository cardRepository, UserRepository userRepository) {
+    public CardServiceImpl(CardRepository cardRepository, UserRepository userRepository,
+                           CardNumberAllocator cardNumberAllocator, CardBalanceBucketService balanceBuckets,
+                           TransferIdempotencyService transferIdempotency, PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry) {
         this.cardRepository = cardRepository;
         this.userRepository = userRepository;
+        this.cardNumberAllocator = cardNumberAllocator;
+        this.balanceBuckets = balanceBuckets;
+        this.transferIdempotency = transferIdempotency;
+        this.transferMetrics = new TransferMetrics(meterRegistry, "card_transfer");
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -44,7 +73,7 @@ public class CardServiceImpl implements CardService {
      */
     @PreAuthorize("hasRole('ADMIN')")
     public CardDto create(CreateCardDto dto, String username) {
-        if (dto.getBalance() != null && dto.getBalance() < 0) {
+        if (dto.getBalance() != null && dto.getBalance().isNegative()) {
             throw new CardOperationException(ErrorCode.CARD_INSUFFICIENT_FUNDS);
         }
 
@@ -56,9 +85,9 @@ public class CardServiceImpl implements CardService {
         User owner = findUserEntityByUsername(username);
 
         Card card = new Card();
-        card.setNumber(generateCardNumber());
+        card.setNumber(cardNumberAllocator.nextNumber());
         card.setExpireAt(expireAt);
-        card.setBalance(dto.getBalance() != null ? dto.getBalance() : 0.0);
+        card.setBalance(dto.getBalance() != null ? dto.getBalance() : Money.ZERO);
         card.setStatus(CardStatus.ACTIVE.name());
         card.setOwner(owner);
 
@@ -99,15 +128,26 @@ public class CardServiceImpl implements CardService {
      * {@inheritDoc}
      */
     public Page<CardDto> getByUsername(String username, Pageable pageable) {
-        Page<Card> cards = cardRepository.findByOwnerUsername(username, pageable);
+        Page<CardView> cards = cardRepository.findViewsByOwnerUsername(username, pageable);
         return cards.map(this::toDto);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public CardSliceDto getByUsername(String username, String cursor, int size) {
+        int limit = sliceSize(size);
+        long afterId = CursorUtil.decode(cursor);
+        User owner = findUserEntityByUsername(username);
+        List<CardView> cards = cardRepository.findViewsByOwnerIdAfter(owner.getId(), afterId, Limit.of(limit + 1));
+        return toSlice(cards, limit);
+    }
+
     /**
      * {@inheritDoc}
      */
     public CardDto getById(Long id) {
-        Card card = cardRepository.findById(id)
+        CardView card = cardRepository.findViewById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
         return toDto(card);
     }
@@ -130,6 +170,15 @@ public class CardServiceImpl implements CardService {
         return toDto(updated);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public CardDto setBalanceBuckets(Long id, int buckets) {
+        balanceBuckets.resize(id, buckets);
+        return getById(id);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -145,12 +194,47 @@ public class CardServiceImpl implements CardService {
      */
     @PreAuthorize("hasRole('ADMIN')")
     public List<CardDto> getAllCards() {
-        return cardRepository.findAll()
+        return cardRepository.findAllViews()
                 .stream()
                 .map(this::toDto)
                 .toList();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public CardSliceDto getAllCards(String cursor, int size) {
+        int limit = sliceSize(size);
+        List<CardView> cards = cardRepository.findAllViewsAfter(CursorUtil.decode(cursor), Limit.of(limit + 1));
+        return toSlice(cards, limit);
+    }
+
+    /**
+     * Приводит запрошенный размер части к допустимому диапазону.
+     *
+     * @param size запрошенный размер.
+     * @return размер от 1 до {@value #MAX_SLICE_SIZE}.
+     */
+    private int sliceSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+    }
+
+    /**
+     * Формирует часть списка из карт, загруженных с запасом в один элемент.
+     * Лишний элемент только показывает наличие следующей части и в ответ не попадает.
+     *
+     * @param cards карты, загруженные с лимитом {@code limit + 1}.
+     * @param limit размер части.
+     * @return часть списка карт.
+     */
+    private CardSliceDto toSlice(List<CardView> cards, int limit) {
+        boolean hasNext = cards.size() > limit;
+        List<CardView> content = hasNext ? cards.subList(0, limit) : cards;
+        String nextCursor = hasNext ? CursorUtil.encode(content.get(content.size() - 1).getId()) : null;
+        return new CardSliceDto(content.stream().map(this::toDto).toList(), nextCursor, hasNext);
+    }
+
     /**
      * Приватный метод поиска пользователя по имени.
      * Используется для нахождения владельца карты.
@@ -177,29 +261,112 @@ public class CardServiceImpl implements CardService {
                 maskCardNumber(card.getNumber()),
                 card.getStatus(),
                 card.getExpireAt().toString(),
-                card.getBalance(),
+                card.getTotalBalance(),
                 card.getOwner() != null ? card.getOwner().getUsername() : null
         );
     }
 
+    /**
+     * Приватный метод преобразования проекции карты в объект DTO.
+     *
+     * @param card проекция карты.
+     * @return объект DTO карты.
+     */
+    private CardDto toDto(CardView card) {
+        return new CardDto(
+                card.getId(),
+                maskCardNumber(card.getNumber()),
+                card.getStatus(),
+                card.getExpireAt().toString(),
+                card.getTotalBalance(),
+                card.getOwnerUsername()
+        );
+    }
+
     /**
      * {@inheritDoc}
+     * Исход учитывается после фиксации транзакции, поэтому ошибки при flush и commit не считаются успехом.
      */
-    @Transactional
     public void transfer(TransferRequestDto dto, String username) {
-        Card from = cardRepository.findByNumber(dto.getFromCardNumber())
-                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
-        Card to = cardRepository.findByNumber(dto.getToCardNumber())
-                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
+        transferMetrics.record(() -> transactionTemplate.execute(status -> {
+            executeTransfer(dto, username);
+            return null;
+        }));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Ключ записывается до блокировки карт.
+     */
+    public void transfer(TransferRequestDto dto, String username, TransferIdempotencyKey idempotencyKey) {
+        transferMetrics.record(() -> transactionTemplate.execute(status -> {
+            transferIdempotency.register(idempotencyKey);
+            executeTransfer(dto, username);
+            return null;
+        }));
+    }
+
+    /**
+     * Приватный метод перевода между картами пользователя с блокировкой строк обеих карт.
+     *
+     * @param dto      объект данных запроса на перевод.
+     * @param username имя пользователя, владельца карт.
+     */
+    private void executeTransfer(TransferRequestDto dto, String username) {
+        Map<String, CardNumberId> ids = CardNumberId.byNumber(
+                cardRepository.findIdsByNumberIn(List.of(dto.getFromCardNumber(), dto.getToCardNumber())));
+        Long fromId = findCardId(ids, dto.getFromCardNumber());
+        Long toId = findCardId(ids, dto.getToCardNumber());
+        // lock both rows in id order to avoid lost updates and deadlocks
+        Map<Long, Card> cards = transferMetrics.lock(() -> cardRepository.findAllByIdInForUpdate(List.of(fromId, toId)))
+                .stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+        Card from = findLockedCard(cards, fromId);
+        Card to = findLockedCard(cards, toId);
         validateUserCards(username, from, to);
+        if (from.getBalanceBuckets() > 0) {
+            balanceBuckets.consolidateIfShort(from, dto.getAmount());
+        }
         validateTransfer(dto, username, from, to);
-        from.setBalance(from.getBalance() - dto.getAmount());
-        to.setBalance(to.getBalance() + dto.getAmount());
+        from.setBalance(from.getBalance().minus(dto.getAmount()));
+        to.setBalance(to.getBalance().plus(dto.getAmount()));
 
         cardRepository.save(from);
         cardRepository.save(to);
     }
 
+    /**
+     * Приватный метод поиска ID карты по номеру.
+     *
+     * @param ids        id карт, сгруппированные по номеру.
+     * @param cardNumber номер карты.
+     * @return ID карты.
+     * @throws ResourceNotFoundException если карта не найдена.
+     */
+    private Long findCardId(Map<String, CardNumberId> ids, String cardNumber) {
+        CardNumberId id = ids.get(cardNumber);
+        if (id == null) {
+            throw new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND);
+        }
+        return id.getId();
+    }
+
+    /**
+     * Приватный метод поиска карты среди заблокированных по ID.
+     *
+     * @param cards заблокированные карты, сгруппированные по ID.
+     * @param id    ID карты.
+     * @return объект карты.
+     * @throws ResourceNotFoundException если карта не найдена.
+     */
+    private Card findLockedCard(Map<Long, Card> cards, Long id) {
+        Card card = cards.get(id);
+        if (card == null) {
+            throw new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND);
+        }
+        return card;
+    }
+
     /**
      * Приватный метод проверки принадлежности двух карт одному пользователю.
      * Проверяет, принадлежат ли обе карты указанному пользователю.
@@ -232,7 +399,7 @@ public class CardServiceImpl implements CardService {
         if (!from.getStatus().equals("ACTIVE") || !to.getStatus().equals("ACTIVE")) {
             throw new CardOperationException(ErrorCode.CARD_BLOCKED);
         }
-        if (from.getBalance() < dto.getAmount()) {
+        if (from.getBalance().isLessThan(dto.getAmount())) {
             throw new CardOperationException(ErrorCode.CARD_INSUFFICIENT_FUNDS);
         }
     }
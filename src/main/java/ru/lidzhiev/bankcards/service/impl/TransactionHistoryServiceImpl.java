@@ -0,0 +1,184 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.lidzhiev.bankcards.dto.TransactionDto;
+import ru.lidzhiev.bankcards.dto.TransactionSliceDto;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.TransactionRepository;
+import ru.lidzhiev.bankcards.repository.projection.TransactionView;
+import ru.lidzhiev.bankcards.service.TransactionHistoryService;
+import ru.lidzhiev.bankcards.util.CursorUtil;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Реализация сервиса истории транзакций.
+ * Каждая часть истории собирается из keyset-запросов по картам: отдельно по исходящим и входящим транзакциям,
+ * каждый читает не больше {@code size + 1} строк из индекса (card_id, created_at, id) в обратном порядке.
+ * Результаты сливаются в памяти, поэтому стоимость запроса не зависит от длины истории и от глубины обхода.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+public class TransactionHistoryServiceImpl implements TransactionHistoryService {
+    private static final int MAX_SLICE_SIZE = 100;
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final Comparator<TransactionView> NEWEST_FIRST = Comparator
+            .comparing(TransactionView::getCreatedAt)
+            .thenComparing(TransactionView::getId)
+            .reversed();
+
+    private final TransactionRepository transactionRepository;
+    private final CardRepository cardRepository;
+    private final ObjectWriter transactionWriter;
+
+    public TransactionHistoryServiceImpl(TransactionRepository transactionRepository, CardRepository cardRepository,
+                                         ObjectMapper objectMapper) {
+        this.transactionRepository = transactionRepository;
+        this.cardRepository = cardRepository;
+        this.transactionWriter = objectMapper.writerFor(TransactionDto.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public TransactionSliceDto getCardHistory(Long cardId, String username, LocalDateTime from, LocalDateTime to,
+                                              String cursor, int size) {
+        checkCardOwner(cardId, username);
+        return getHistory(List.of(cardId), from, to, cursor, size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public TransactionSliceDto getUserHistory(String username, LocalDateTime from, LocalDateTime to,
+                                              String cursor, int size) {
+        return getHistory(cardRepository.findIdsByOwnerUsername(username), from, to, cursor, size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void checkCardOwner(Long cardId, String username) {
+        String owner = cardRepository.findOwnerUsernameById(cardId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
+        if (!owner.equals(username)) {
+            throw new CardOperationException(ErrorCode.NOT_OWNER);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void exportCardHistory(Long cardId, String username, LocalDateTime from, LocalDateTime to,
+                                  OutputStream out) throws IOException {
+        checkCardOwner(cardId, username);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long count = 0;
+        try (Stream<TransactionView> transactions = transactionRepository.streamByCard(
+                cardId, from != null ? from : MIN_TIME, to != null ? to : MAX_TIME)) {
+            Iterator<TransactionView> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                writer.write(transactionWriter.writeValueAsString(toDto(iterator.next())));
+                writer.write('\n');
+                count++;
+            }
+        }
+        writer.flush();
+        log.debug("Exported {} transactions of card {}", count, cardId);
+    }
+
+    /**
+     * Собирает часть истории по набору карт.
+     * Для каждой карты загружается до {@code limit + 1} исходящих и входящих транзакций после курсора,
+     * затем общий список сортируется, очищается от повторов (перевод между картами из набора
+     * найден дважды) и обрезается до {@code limit + 1}.
+     *
+     * @param cardIds id карт.
+     * @param from    начало периода (включительно) или null.
+     * @param to      конец периода (исключительно) или null.
+     * @param cursor  курсор или null.
+     * @param size    запрошенный размер части.
+     * @return часть истории транзакций.
+     */
+    private TransactionSliceDto getHistory(List<Long> cardIds, LocalDateTime from, LocalDateTime to,
+                                           String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+        LocalDateTime lower = from != null ? from : MIN_TIME;
+        CursorUtil.TimeKey after = CursorUtil.decodeTimeKey(cursor);
+        LocalDateTime beforeTime;
+        long beforeId;
+        if (after != null) {
+            beforeTime = after.createdAt();
+            beforeId = after.id();
+        } else {
+            // id всегда положительны, поэтому транзакции ровно на верхней границе периода не попадают в выборку
+            beforeTime = to != null ? to : MAX_TIME;
+            beforeId = 0;
+        }
+
+        List<TransactionView> found = new ArrayList<>();
+        Limit fetch = Limit.of(limit + 1);
+        for (Long cardId : cardIds) {
+            found.addAll(transactionRepository.findOutgoingBefore(cardId, lower, beforeTime, beforeId, fetch));
+            found.addAll(transactionRepository.findIncomingBefore(cardId, lower, beforeTime, beforeId, fetch));
+        }
+        found.sort(NEWEST_FIRST);
+        Map<Long, TransactionView> unique = new LinkedHashMap<>();
+        for (TransactionView view : found) {
+            if (unique.size() > limit) {
+                break;
+            }
+            unique.putIfAbsent(view.getId(), view);
+        }
+        List<TransactionView> transactions = new ArrayList<>(unique.values());
+
+        boolean hasNext = transactions.size() > limit;
+        List<TransactionView> content = hasNext ? transactions.subList(0, limit) : transactions;
+        String nextCursor = null;
+        if (hasNext) {
+            TransactionView last = content.get(content.size() - 1);
+            nextCursor = CursorUtil.encode(last.getCreatedAt(), last.getId());
+        }
+        return new TransactionSliceDto(content.stream().map(this::toDto).toList(), nextCursor, hasNext);
+    }
+
+    /**
+     * Преобразует проекцию транзакции в DTO.
+     *
+     * @param view проекция транзакции.
+     * @return объект TransactionDto.
+     */
+    private TransactionDto toDto(TransactionView view) {
+        return new TransactionDto(
+                view.getId(),
+                view.getFromCardId(),
+                view.getToCardId(),
+                view.getAmount(),
+                view.getCreatedAt(),
+                view.getStatus()
+        );
+    }
+}
@@ -0,0 +1,135 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.lidzhiev.bankcards.entity.Transaction;
+import ru.lidzhiev.bankcards.service.TransactionOutboxService;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Реализация журнала транзакций с отложенной записью.
+ * Записи добавляются в узкую таблицу transaction_outbox одним JDBC-запросом без возврата
+ * сгенерированного ключа и без участия контекста персистентности. Фоновая задача забирает
+ * порцию записей с блокировкой строк, вставляет их в transactions многострочными INSERT-запросами
+ * по {@code app.transfer.journal.insert-rows} строк и удаляет из журнала в той же транзакции.
+ * Задача работает независимо от {@code app.transfer.journal.mode}, чтобы после переключения
+ * режима в DIRECT журнал был дочищен.
+ */
+@Slf4j
+@Service
+public class TransactionOutboxServiceImpl implements TransactionOutboxService {
+    private static final String INSERT_OUTBOX_SQL =
+            "INSERT INTO transaction_outbox (from_card_id, to_card_id, amount, created_at, status) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_OUTBOX_SQL =
+            "SELECT id, from_card_id, to_card_id, amount, created_at, status FROM transaction_outbox " +
+                    "ORDER BY id FETCH FIRST %d ROWS ONLY FOR UPDATE";
+    private static final String INSERT_TRANSACTIONS_SQL =
+            "INSERT INTO transactions (from_card_id, to_card_id, amount, created_at, status) VALUES ";
+    private static final String DELETE_OUTBOX_SQL = "DELETE FROM transaction_outbox WHERE id IN ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int insertRows;
+    private final Counter flushed;
+
+    public TransactionOutboxServiceImpl(JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${app.transfer.journal.batch-size:5000}") int batchSize,
+                                        @Value("${app.transfer.journal.insert-rows:500}") int insertRows) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.insertRows = insertRows;
+        this.flushed = Counter.builder("bank.transfer.journal.flushed")
+                .description("Transactions moved from the outbox to the transactions table")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void append(Transaction transaction) {
+        jdbcTemplate.update(INSERT_OUTBOX_SQL,
+                transaction.getFromCard().getId(),
+                transaction.getToCard().getId(),
+                transaction.getAmount().toBigDecimal(),
+                Timestamp.valueOf(transaction.getCreatedAt()),
+                transaction.getStatus());
+    }
+
+    /**
+     * Переносит записи журнала порциями, пока журнал не опустеет.
+     * Первый запуск после старта приложения переносит записи, оставшиеся после сбоя.
+     */
+    @Scheduled(initialDelayString = "${app.transfer.journal.flush-interval-millis:200}",
+            fixedDelayString = "${app.transfer.journal.flush-interval-millis:200}")
+    public void flushAll() {
+        int moved;
+        do {
+            moved = flush();
+        } while (moved == batchSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int flush() {
+        Integer moved = transactionTemplate.execute(status -> {
+            List<Object[]> rows = jdbcTemplate.query(String.format(SELECT_OUTBOX_SQL, batchSize), (rs, rowNum) -> new Object[]{
+                    rs.getLong("id"),
+                    rs.getLong("from_card_id"),
+                    rs.getLong("to_card_id"),
+                    rs.getBigDecimal("amount"),
+                    rs.getTimestamp("created_at"),
+                    rs.getString("status")});
+            for (int start = 0; start < rows.size(); start += insertRows) {
+                List<Object[]> chunk = rows.subList(start, Math.min(start + insertRows, rows.size()));
+                insertTransactions(chunk);
+                deleteFromOutbox(chunk);
+            }
+            return rows.size();
+        });
+        if (moved != null && moved > 0) {
+            flushed.increment(moved);
+            log.debug("Flushed {} transactions from the outbox", moved);
+        }
+        return moved != null ? moved : 0;
+    }
+
+    /**
+     * Вставляет записи журнала в transactions одним многострочным INSERT-запросом.
+     *
+     * @param rows записи журнала (id, from_card_id, to_card_id, amount, created_at, status).
+     */
+    private void insertTransactions(List<Object[]> rows) {
+        List<Object> args = new ArrayList<>(rows.size() * 5);
+        for (Object[] row : rows) {
+            Collections.addAll(args, row[1], row[2], row[3], row[4], row[5]);
+        }
+        jdbcTemplate.update(INSERT_TRANSACTIONS_SQL + String.join(", ", Collections.nCopies(rows.size(), "(?, ?, ?, ?, ?)")),
+                args.toArray());
+    }
+
+    /**
+     * Удаляет перенесенные записи из журнала.
+     *
+     * @param rows записи журнала.
+     */
+    private void deleteFromOutbox(List<Object[]> rows) {
+        jdbcTemplate.update(DELETE_OUTBOX_SQL + "(" + String.join(", ", Collections.nCopies(rows.size(), "?")) + ")",
+                rows.stream().map(row -> row[0]).toArray());
+    }
+}
@@ -0,0 +1,172 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.lidzhiev.bankcards.service.ExpiredPartitionAction;
+import ru.lidzhiev.bankcards.service.TransactionPartitionService;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Реализация обслуживания партиций транзакций.
+ * Будущие партиции создаются заранее, при запуске приложения и по расписанию. Если строки месяца
+ * уже попали в партицию по умолчанию (например, обслуживание было выключено), партиция создается
+ * отдельной таблицей, строки переносятся в нее и она присоединяется к таблице транзакций.
+ * Каждая операция выполняется отдельным запросом в режиме autocommit,
+ * ошибка по одной партиции записывается в лог и не мешает обработке остальных.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.transactions.partitioning.maintenance-enabled", havingValue = "true")
+public class TransactionPartitionServiceImpl implements TransactionPartitionService {
+    private static final Pattern PARTITION_NAME = Pattern.compile("transactions_p(\\d{4})_(\\d{2})");
+    private static final String PARTITIONS_QUERY = "select c.relname from pg_inherits i " +
+            "join pg_class c on c.oid = i.inhrelid " +
+            "join pg_class p on p.oid = i.inhparent " +
+            "where p.relname = 'transactions' order by c.relname";
+    private static final String DEFAULT_ROWS_QUERY = "select exists (select 1 from transactions_default " +
+            "where created_at >= ? and created_at < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final ExpiredPartitionAction expiredAction;
+
+    public TransactionPartitionServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.transactions.partitioning.months-ahead:3}") int monthsAhead,
+            @Value("${app.transactions.partitioning.retention-months:0}") int retentionMonths,
+            @Value("${app.transactions.partitioning.expired-action:DETACH}") ExpiredPartitionAction expiredAction) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.expiredAction = expiredAction;
+    }
+
+    /**
+     * Запускает обслуживание партиций при запуске приложения и по расписанию.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.transactions.partitioning.cron:0 0 3 * * *}")
+    public void scheduledMaintenance() {
+        maintainPartitions(YearMonth.now());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void maintainPartitions(YearMonth current) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+        if (retentionMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            for (String partition : jdbcTemplate.queryForList(PARTITIONS_QUERY, String.class)) {
+                Matcher matcher = PARTITION_NAME.matcher(partition);
+                if (matcher.matches()
+                        && YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)))
+                        .isBefore(oldestKept)) {
+                    removePartition(partition);
+                }
+            }
+        }
+    }
+
+    /**
+     * Создает партицию на месяц, если ее еще нет.
+     * Строки месяца из партиции по умолчанию переносятся в новую партицию: иначе PostgreSQL
+     * не позволит создать партицию, пересекающуюся со строками партиции по умолчанию.
+     *
+     * @param month месяц.
+     */
+    private void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        if (hasDefaultRows(from, to)) {
+            // one statement, so the move is atomic; the lock keeps new rows of the month out of the default partition
+            boolean moved = execute(String.format("do $$ begin "
+                    + "lock table transactions_default in exclusive mode; "
+                    + "create table %1$s (like transactions including defaults including constraints); "
+                    + "with moved as (delete from transactions_default "
+                    + "where created_at >= '%2$s' and created_at < '%3$s' returning *) "
+                    + "insert into %1$s select * from moved; "
+                    + "alter table transactions attach partition %1$s for values from ('%2$s') to ('%3$s'); "
+                    + "end $$", partition, from, to));
+            if (moved) {
+                log.info("Moved transactions of {} from the default partition to {}", month, partition);
+            }
+            return;
+        }
+        execute(String.format("create table if not exists %s partition of transactions "
+                + "for values from ('%s') to ('%s')", partition, from, to));
+    }
+
+    /**
+     * Проверяет, есть ли в партиции по умолчанию строки за период.
+     *
+     * @param from начало периода включительно.
+     * @param to   конец периода, не включая.
+     * @return true, если строки есть.
+     */
+    private boolean hasDefaultRows(LocalDate from, LocalDate to) {
+        try {
+            return Boolean.TRUE.equals(jdbcTemplate.queryForObject(DEFAULT_ROWS_QUERY, Boolean.class,
+                    from.atStartOfDay(), to.atStartOfDay()));
+        } catch (DataAccessException e) {
+            log.error("Transactions partition maintenance failed: {}", DEFAULT_ROWS_QUERY, e);
+            return false;
+        }
+    }
+
+    /**
+     * Отсоединяет партицию и, если настроено, удаляет ее.
+     *
+     * @param partition имя партиции.
+     */
+    private void removePartition(String partition) {
+        if (!execute("alter table transactions detach partition " + partition)) {
+            return;
+        }
+        if (expiredAction == ExpiredPartitionAction.DROP) {
+            execute("drop table " + partition);
+        }
+        log.info("Expired transactions partition {}: {}", partition, expiredAction);
+    }
+
+    /**
+     * Выполняет DDL-запрос.
+     *
+     * @param sql запрос.
+     * @return true, если запрос выполнен успешно.
+     */
+    private boolean execute(String sql) {
+        try {
+            jdbcTemplate.execute(sql);
+            return true;
+        } catch (DataAccessException e) {
+            log.error("Transactions partition maintenance failed: {}", sql, e);
+            return false;
+        }
+    }
+
+    /**
+     * Возвращает имя партиции транзакций за месяц.
+     *
+     * @param month месяц.
+     * @return имя партиции, например transactions_p2026_10.
+     */
+    private static String partitionName(YearMonth month) {
+        return String.format("transactions_p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+}
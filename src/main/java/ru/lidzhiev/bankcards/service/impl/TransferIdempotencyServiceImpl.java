@@ -0,0 +1,194 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyKey;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Реализация защиты переводов от повторного выполнения.
+ * Ключи хранятся в таблице transfer_idempotency_keys с первичным ключом (username, idempotency_key)
+ * и пишутся одним JDBC-запросом без участия контекста персистентности, как и журнал транзакций.
+ * Перед таблицей стоит кэш выполненных переводов с вытеснением по времени жизни
+ * ({@code app.transfer.idempotency.cache.*}); время жизни кэша не должно превышать срок хранения ключей в таблице.
+ * Отсутствие ключа не кэшируется: первый запрос с новым ключом стоит одного поиска по первичному ключу.
+ */
+@Slf4j
+@Service
+public class TransferIdempotencyServiceImpl implements TransferIdempotencyService {
+    private static final String SELECT_SQL =
+            "SELECT request_hash FROM transfer_idempotency_keys WHERE username = ? AND idempotency_key = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO transfer_idempotency_keys (username, idempotency_key, request_hash, created_at) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_BATCH_SQL =
+            "SELECT request_hash, batch_results FROM transfer_idempotency_keys WHERE username = ? AND idempotency_key = ?";
+    private static final String INSERT_BATCH_SQL =
+            "INSERT INTO transfer_idempotency_keys (username, idempotency_key, request_hash, created_at, batch_results, batch_results_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_BATCH_SQL =
+            "UPDATE transfer_idempotency_keys SET batch_results = ?, batch_results_count = ? " +
+            "WHERE username = ? AND idempotency_key = ? AND batch_results_count = ?";
+    private static final String BATCH_RESULTS_SEPARATOR = ",";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM transfer_idempotency_keys WHERE created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final Cache<Scope, String> completed;
+    private final Counter replays;
+
+    public TransferIdempotencyServiceImpl(JdbcTemplate jdbcTemplate,
+                                          MeterRegistry meterRegistry,
+                                          @Value("${app.transfer.idempotency.retention-hours:24}") long retentionHours,
+                                          @Value("${app.transfer.idempotency.cache.max-size:100000}") long cacheMaxSize,
+                                          @Value("${app.transfer.idempotency.cache.ttl-minutes:10}") long cacheTtlMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = Duration.ofHours(retentionHours);
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "transfer_idempotency");
+        this.replays = Counter.builder("bank.transfer.idempotency.replays")
+                .description("Transfer requests answered from the idempotency store without executing them again")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean execute(TransferIdempotencyKey key, Runnable transfer) {
+        if (isCompleted(key)) {
+            replays.increment();
+            return true;
+        }
+        try {
+            transfer.run();
+            return false;
+        } catch (DuplicateKeyException e) {
+            // a request with the same key committed first, this one has been rolled back
+            if (isCompleted(key)) {
+                replays.increment();
+                return true;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Кэш заполняется только после фиксации транзакции, чтобы откаченный перевод не считался выполненным.
+     */
+    public void register(TransferIdempotencyKey key) {
+        jdbcTemplate.update(INSERT_SQL, key.username(), key.key(), key.fingerprint(), Timestamp.valueOf(LocalDateTime.now()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    completed.put(new Scope(key.username(), key.key()), key.fingerprint());
+                }
+            });
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Результаты пакетов не кэшируются: повтор пакета стоит одного поиска по первичному ключу.
+     */
+    public List<String> findBatchResults(TransferIdempotencyKey key) {
+        List<String[]> rows = jdbcTemplate.query(SELECT_BATCH_SQL,
+                (rs, rowNum) -> new String[]{rs.getString("request_hash"), rs.getString("batch_results")},
+                key.username(), key.key());
+        String[] row = DataAccessUtils.singleResult(rows);
+        if (row == null) {
+            return List.of();
+        }
+        if (!row[0].equals(key.fingerprint())) {
+            throw new CardOperationException(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+        }
+        if (row[1] == null || row[1].isEmpty()) {
+            return List.of();
+        }
+        replays.increment();
+        return List.of(row[1].split(BATCH_RESULTS_SEPARATOR));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Запись последующих частей проверяет количество уже записанных результатов: повтор, выполнивший ту же часть
+     * одновременно, ждет на блокировке строки ключа, не находит ее прежней и откатывается.
+     */
+    public void registerBatchResults(TransferIdempotencyKey key, int recorded, List<String> results) {
+        String value = String.join(BATCH_RESULTS_SEPARATOR, results);
+        if (recorded == 0) {
+            jdbcTemplate.update(INSERT_BATCH_SQL, key.username(), key.key(), key.fingerprint(),
+                    Timestamp.valueOf(LocalDateTime.now()), value, results.size());
+            return;
+        }
+        int updated = jdbcTemplate.update(UPDATE_BATCH_SQL, value, results.size(), key.username(), key.key(), recorded);
+        if (updated == 0) {
+            throw new OptimisticLockingFailureException("Batch " + key.key() + " was continued by a concurrent request");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Scheduled(cron = "${app.transfer.idempotency.purge-cron:0 15 * * * *}")
+    public int purgeExpired() {
+        int deleted = jdbcTemplate.update(DELETE_EXPIRED_SQL, Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        if (deleted > 0) {
+            log.debug("Purged {} expired idempotency keys", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Проверяет, выполнен ли перевод с этим ключом: сначала по кэшу, затем одним поиском по первичному ключу.
+     *
+     * @param key ключ идемпотентности.
+     * @return true, если перевод с этим ключом выполнен.
+     * @throws CardOperationException если ключ записан для запроса с другим отпечатком.
+     */
+    private boolean isCompleted(TransferIdempotencyKey key) {
+        Scope scope = new Scope(key.username(), key.key());
+        String fingerprint = completed.getIfPresent(scope);
+        if (fingerprint == null) {
+            fingerprint = DataAccessUtils.singleResult(jdbcTemplate.queryForList(SELECT_SQL, String.class, key.username(), key.key()));
+            if (fingerprint == null) {
+                return false;
+            }
+            completed.put(scope, fingerprint);
+        }
+        if (!fingerprint.equals(key.fingerprint())) {
+            throw new CardOperationException(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+        }
+        return true;
+    }
+
+    /**
+     * Ключ кэша: пространство ключей пользователя и значение заголовка.
+     */
+    private record Scope(String username, String key) {
+    }
+}
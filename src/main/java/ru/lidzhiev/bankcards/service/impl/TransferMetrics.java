@@ -0,0 +1,101 @@
+package ru.lidzhiev.bankcards.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
+import ru.lidzhiev.bankcards.exception.UserOperationException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики переводов: исходы по {@link ErrorCode} и время ожидания блокировок строк карт.
+ * Счетчики создаются заранее, поэтому учет исхода не ищет метр в реестре на каждом переводе.
+ */
+public final class TransferMetrics {
+    static final String SUCCESS = "SUCCESS";
+    static final String UNEXPECTED_ERROR = "ERROR";
+
+    private final Counter success;
+    private final Counter unexpectedError;
+    private final Map<ErrorCode, Counter> errors = new EnumMap<>(ErrorCode.class);
+    private final Timer lockWait;
+
+    /**
+     * @param meterRegistry реестр метрик.
+     * @param operation     значение тега operation: путь, которым выполняется перевод.
+     */
+    public TransferMetrics(MeterRegistry meterRegistry, String operation) {
+        this.success = outcomeCounter(meterRegistry, operation, SUCCESS);
+        this.unexpectedError = outcomeCounter(meterRegistry, operation, UNEXPECTED_ERROR);
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            errors.put(errorCode, outcomeCounter(meterRegistry, operation, errorCode.name()));
+        }
+        this.lockWait = Timer.builder("bank.transfer.lock.wait")
+                .description("Time spent acquiring row locks on the cards of a transfer")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет перевод и учитывает его исход.
+     *
+     * @param transfer перевод.
+     * @return результат перевода.
+     */
+    public <T> T record(Supplier<T> transfer) {
+        try {
+            T result = transfer.get();
+            success.increment();
+            return result;
+        } catch (RuntimeException e) {
+            errors.getOrDefault(errorCode(e), unexpectedError).increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Выполняет захват блокировок и учитывает время ожидания.
+     *
+     * @param lock запрос, блокирующий строки карт.
+     * @return результат запроса.
+     */
+    public <T> T lock(Supplier<T> lock) {
+        long start = System.nanoTime();
+        try {
+            return lock.get();
+        } finally {
+            lockWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static ErrorCode errorCode(RuntimeException e) {
+        if (e instanceof CardOperationException cardOperationException) {
+            return cardOperationException.getErrorCode();
+        }
+        if (e instanceof ResourceNotFoundException resourceNotFoundException) {
+            return resourceNotFoundException.getErrorCode();
+        }
+        if (e instanceof UserOperationException userOperationException) {
+            return userOperationException.getErrorCode();
+        }
+        return null;
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String operation, String outcome) {
+        return Counter.builder("bank.transfer.outcome")
+                .description("Completed transfers by outcome: SUCCESS, an ErrorCode or ERROR")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
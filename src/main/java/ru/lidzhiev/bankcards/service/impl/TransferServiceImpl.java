@@ -1,33 +1,105 @@
 package ru.lidzhiev.bankcards.service.impl;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.lidzhiev.bankcards.dto.TransferRequestDto;
 import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
 import ru.lidzhiev.bankcards.entity.Transaction;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
 import ru.lidzhiev.bankcards.exception.CardOperationException;
 import ru.lidzhiev.bankcards.exception.ErrorCode;
 import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
 import ru.lidzhiev.bankcards.repository.CardRepository;
 import ru.lidzhiev.bankcards.repository.TransactionRepository;
+import ru.lidzhiev.bankcards.repository.projection.CardCreditTarget;
+import ru.lidzhiev.bankcards.repository.projection.CardNumberId;
+import ru.lidzhiev.bankcards.service.CardBalanceBucketService;
+import ru.lidzhiev.bankcards.service.TransactionJournalMode;
+import ru.lidzhiev.bankcards.service.TransactionOutboxService;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyKey;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
+import ru.lidzhiev.bankcards.service.TransferLockStrategy;
 import ru.lidzhiev.bankcards.service.TransferService;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static ru.lidzhiev.bankcards.util.CardMaskUtil.maskCardNumber;
 
 /**
  * Класс реализации сервиса для выполнения переводов между банковскими картами.
  * Предоставляет возможность перевести средства с одной карты на другую, включая проверку валидности операции,
  * сохранение транзакций и обработку ошибок.
+ * Способ защиты балансов от конкурентных изменений задается свойством {@code app.transfer.lock-strategy}
+ * (см. {@link TransferLockStrategy}), способ записи транзакций - свойством {@code app.transfer.journal.mode}
+ * (см. {@link TransactionJournalMode}).
+ * Ключ идемпотентности, если он передан, записывается первым действием транзакции перевода.
+ * Зачисления на горячие карты с корзинами баланса (см. {@link CardBalanceBucketService}) пишутся в корзину
+ * под разделяемой блокировкой строки карты-получателя, поэтому переводы на одну горячую карту не ждут друг друга.
  */
+@Slf4j
 @Service
 public class TransferServiceImpl implements TransferService {
     private final TransactionRepository transactionRepository;
+    private final TransactionOutboxService transactionOutbox;
     private final CardRepository cardRepository;
+    private final TransferIdempotencyService transferIdempotency;
+    private final CardBalanceBucketService balanceBuckets;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferLockStrategy lockStrategy;
+    private final int maxRetries;
+    private final long backoffMillis;
+    private final TransactionJournalMode journalMode;
+
+    private final Counter optimisticTransfers;
+    private final Counter optimisticRetries;
+    private final Counter optimisticAborts;
+    private final TransferMetrics transferMetrics;
 
-    public TransferServiceImpl(TransactionRepository transactionRepository, CardRepository cardRepository) {
+    public TransferServiceImpl(TransactionRepository transactionRepository,
+                               TransactionOutboxService transactionOutbox,
+                               CardRepository cardRepository,
+                               TransferIdempotencyService transferIdempotency,
+                               CardBalanceBucketService balanceBuckets,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.transfer.lock-strategy:PESSIMISTIC}") TransferLockStrategy lockStrategy,
+                               @Value("${app.transfer.optimistic.max-retries:5}") int maxRetries,
+                               @Value("${app.transfer.optimistic.backoff-millis:10}") long backoffMillis,
+                               @Value("${app.transfer.journal.mode:DIRECT}") TransactionJournalMode journalMode) {
         this.transactionRepository = transactionRepository;
+        this.transactionOutbox = transactionOutbox;
         this.cardRepository = cardRepository;
+        this.transferIdempotency = transferIdempotency;
+        this.balanceBuckets = balanceBuckets;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lockStrategy = lockStrategy;
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoffMillis;
+        this.journalMode = journalMode;
+
+        this.optimisticTransfers = Counter.builder("bank.transfer.optimistic.transfers")
+                .description("Transfers executed with optimistic locking")
+                .register(meterRegistry);
+        this.optimisticRetries = Counter.builder("bank.transfer.optimistic.retries")
+                .description("Transfer attempts retried after a version conflict")
+                .register(meterRegistry);
+        this.optimisticAborts = Counter.builder("bank.transfer.optimistic.aborts")
+                .description("Transfers aborted after exhausting optimistic retries")
+                .register(meterRegistry);
+        this.transferMetrics = new TransferMetrics(meterRegistry, "transfer");
     }
 
     /**
@@ -36,11 +108,240 @@ public class TransferServiceImpl implements TransferService {
      * @throws CardOperationException в случае некорректных данных или недостаточного баланса.
      * @throws ResourceNotFoundException если хотя бы одна из указанных карт не существует.
      */
-    @Transactional
     public Transaction transfer(TransferRequestDto dto) {
-        Card fromCard = findUserCard(dto.getFromCardNumber());
-        Card toCard = findUserCard(dto.getToCardNumber());
+        return transfer(dto, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Transaction transfer(TransferRequestDto dto, TransferIdempotencyKey idempotencyKey) {
+        return transferMetrics.record(() -> executeWithStrategy(dto, idempotencyKey));
+    }
+
+    /**
+     * Выполняет перевод выбранной стратегией блокировок ({@code app.transfer.lock-strategy}).
+     *
+     * @param dto объект данных запроса на перевод.
+     * @param idempotencyKey ключ идемпотентности или null.
+     * @return объект сохранённой транзакции.
+     */
+    private Transaction executeWithStrategy(TransferRequestDto dto, TransferIdempotencyKey idempotencyKey) {
+        return switch (lockStrategy) {
+            case OPTIMISTIC -> transferWithRetry(dto, idempotencyKey);
+            case ATOMIC -> transactionTemplate.execute(status -> {
+                registerIdempotencyKey(idempotencyKey);
+                return atomicTransfer(dto);
+            });
+            case PESSIMISTIC -> transactionTemplate.execute(status -> {
+                registerIdempotencyKey(idempotencyKey);
+                return pessimisticTransfer(dto);
+            });
+        };
+    }
+
+    /**
+     * Записывает ключ идемпотентности в текущей транзакции, если он передан.
+     * Каждая попытка оптимистического перевода выполняется в новой транзакции и записывает ключ заново.
+     *
+     * @param idempotencyKey ключ идемпотентности или null.
+     */
+    private void registerIdempotencyKey(TransferIdempotencyKey idempotencyKey) {
+        if (idempotencyKey != null) {
+            transferIdempotency.register(idempotencyKey);
+        }
+    }
+
+    /**
+     * Выполняет перевод условными UPDATE-запросами без чтения балансов в приложение.
+     * Списание проходит только для активной карты с достаточным балансом, зачисление - только на активную карту.
+     * Запросы выполняются в порядке возрастания id карт, как и остальные стратегии, поэтому взаимоблокировок нет.
+     * Если один из запросов не изменил строку, транзакция откатывается, а причина определяется
+     * повторным чтением карт и прежними проверками {@link #validateTransfer}.
+     *
+     * @param dto объект данных запроса на перевод.
+     * @return объект сохранённой транзакции.
+     */
+    private Transaction atomicTransfer(TransferRequestDto dto) {
+        Map<String, CardNumberId> ids = findCardIds(dto);
+        CardNumberId from = findCardId(ids, dto.getFromCardNumber());
+        CardNumberId to = findCardId(ids, dto.getToCardNumber());
+        Long fromId = from.getId();
+        Long toId = to.getId();
+        if (fromId.equals(toId)) {
+            throw new CardOperationException(ErrorCode.SAME_CARD_TRANSFER);
+        }
+
+        boolean applied = fromId < toId
+                ? atomicDebit(from, dto.getAmount()) && atomicCredit(to, dto.getAmount())
+                : atomicCredit(to, dto.getAmount()) && atomicDebit(from, dto.getAmount());
+        if (!applied) {
+            rejectAtomicTransfer(dto, fromId, toId);
+        }
+
+        return saveTransaction(dto, cardRepository.getReferenceById(fromId), cardRepository.getReferenceById(toId));
+    }
+
+    /**
+     * Списывает сумму условным UPDATE. Если списание не прошло, а у карты есть корзины баланса,
+     * корзины консолидируются и списание повторяется один раз.
+     *
+     * @param from   карта-отправитель.
+     * @param amount сумма списания.
+     * @return true, если сумма списана.
+     */
+    private boolean atomicDebit(CardNumberId from, Money amount) {
+        BigDecimal value = amount.toBigDecimal();
+        if (cardRepository.debit(from.getId(), value) == 1) {
+            return true;
+        }
+        return from.getBalanceBuckets() > 0
+                && balanceBuckets.consolidate(from.getId())
+                && cardRepository.debit(from.getId(), value) == 1;
+    }
+
+    /**
+     * Зачисляет сумму условным UPDATE или, для карты с корзинами баланса, в одну из ее корзин.
+     *
+     * @param to     карта-получатель.
+     * @param amount сумма зачисления.
+     * @return true, если сумма зачислена.
+     */
+    private boolean atomicCredit(CardNumberId to, Money amount) {
+        if (to.getBalanceBuckets() > 0) {
+            return creditHotCard(to.getId(), amount);
+        }
+        return cardRepository.credit(to.getId(), amount.toBigDecimal()) == 1;
+    }
+
+    /**
+     * Зачисляет сумму на горячую карту: читает статус и количество корзин под разделяемой блокировкой строки
+     * и увеличивает одну из корзин. Если корзины карты успели убрать, сумма зачисляется в строку карты.
+     *
+     * @param toId   ID карты-получателя.
+     * @param amount сумма зачисления.
+     * @return true, если сумма зачислена, false если карта не активна.
+     * @throws ResourceNotFoundException если карта не найдена.
+     */
+    private boolean creditHotCard(Long toId, Money amount) {
+        CardCreditTarget target = cardRepository.findCreditTargetForShare(toId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
+        if (!target.getStatus().equals(CardStatus.ACTIVE.name())) {
+            return false;
+        }
+        if (target.getBalanceBuckets() == 0) {
+            return cardRepository.credit(toId, amount.toBigDecimal()) == 1;
+        }
+        balanceBuckets.credit(toId, target.getBalanceBuckets(), amount);
+        return true;
+    }
+
+    /**
+     * Определяет причину, по которой условный UPDATE не изменил строку, и выбрасывает соответствующее исключение.
+     *
+     * @param dto объект данных запроса на перевод.
+     * @param fromId ID карты-отправителя.
+     * @param toId ID карты-получателя.
+     * @throws CardOperationException всегда.
+     */
+    private void rejectAtomicTransfer(TransferRequestDto dto, Long fromId, Long toId) {
+        Card from = cardRepository.findById(fromId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
+        Card to = cardRepository.findById(toId)
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
+        validateTransfer(dto, from, to);
+        // the cards changed between the UPDATE and the re-read
+        throw new CardOperationException(ErrorCode.CARD_CONCURRENT_UPDATE);
+    }
+
+    /**
+     * Разрешает номера карт перевода в id одним запросом без блокировок.
+     *
+     * @param dto объект данных запроса на перевод.
+     * @return id и количество корзин карт, сгруппированные по номеру.
+     * @throws CardOperationException если номер принадлежит нескольким картам.
+     */
+    private Map<String, CardNumberId> findCardIds(TransferRequestDto dto) {
+        return CardNumberId.byNumber(cardRepository.findIdsByNumberIn(List.of(dto.getFromCardNumber(), dto.getToCardNumber())));
+    }
+
+    /**
+     * Найти ID карты по номеру.
+     *
+     * @param ids идентификаторы карт, сгруппированные по номеру.
+     * @param cardNumber номер искомой карты.
+     * @return id и количество корзин карты.
+     * @throws ResourceNotFoundException если карта не найдена.
+     */
+    private CardNumberId findCardId(Map<String, CardNumberId> ids, String cardNumber) {
+        CardNumberId id = ids.get(cardNumber);
+        if (id == null) {
+            throw new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND);
+        }
+        return id;
+    }
+
+    /**
+     * Выполняет перевод с оптимистической блокировкой.
+     * Карты читаются без блокировок, а конфликт обнаруживается по колонке version при фиксации транзакции.
+     * При конфликте попытка повторяется с экспоненциальной задержкой со случайным разбросом,
+     * но не более {@code app.transfer.optimistic.max-retries} раз.
+     *
+     * @param dto объект данных запроса на перевод.
+     * @param idempotencyKey ключ идемпотентности или null.
+     * @return объект сохранённой транзакции.
+     * @throws CardOperationException если лимит повторов исчерпан.
+     */
+    private Transaction transferWithRetry(TransferRequestDto dto, TransferIdempotencyKey idempotencyKey) {
+        optimisticTransfers.increment();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    registerIdempotencyKey(idempotencyKey);
+                    return executeTransfer(dto, findUserCard(dto.getFromCardNumber()), findUserCard(dto.getToCardNumber()));
+                });
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxRetries) {
+                    optimisticAborts.increment();
+                    log.warn("Transfer {} -> {} aborted after {} attempts",
+                            maskCardNumber(dto.getFromCardNumber()), maskCardNumber(dto.getToCardNumber()), attempt + 1);
+                    throw new CardOperationException(ErrorCode.CARD_CONCURRENT_UPDATE);
+                }
+                optimisticRetries.increment();
+                backoff(attempt);
+            }
+        }
+    }
 
+    /**
+     * Пауза перед повторной попыткой: экспоненциальный рост с равномерным разбросом (jitter),
+     * чтобы конкурирующие запросы не повторялись синхронно.
+     *
+     * @param attempt номер неудавшейся попытки, начиная с 0.
+     */
+    private void backoff(int attempt) {
+        long ceiling = backoffMillis << Math.min(attempt, 10);
+        long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CardOperationException(ErrorCode.CARD_CONCURRENT_UPDATE);
+        }
+    }
+
+    /**
+     * Проверяет и проводит перевод в рамках текущей транзакции.
+     *
+     * @param dto объект данных запроса на перевод.
+     * @param fromCard отправляемая карта.
+     * @param toCard принимающая карта.
+     * @return объект сохранённой транзакции.
+     */
+    private Transaction executeTransfer(TransferRequestDto dto, Card fromCard, Card toCard) {
+        if (fromCard.getBalanceBuckets() > 0) {
+            balanceBuckets.consolidateIfShort(fromCard, dto.getAmount());
+        }
         validateTransfer(dto, fromCard, toCard);
         doTransfer(dto.getAmount(), fromCard, toCard);
 
@@ -48,18 +349,114 @@ public class TransferServiceImpl implements TransferService {
     }
 
     /**
-     * Найти банковскую карту по номеру.
+     * Выполняет перевод с блокировкой строк карт.
+     * Строки обеих карт блокируются одним запросом SELECT ... FOR UPDATE в порядке возрастания id карты,
+     * поэтому встречные переводы (A -> B и B -> A) не приводят к взаимоблокировке, а изменения баланса не теряются.
+     * Перевод на карту с корзинами баланса выполняет {@link #hotCardTransfer}.
+     *
+     * @param dto объект данных запроса на перевод.
+     * @return объект сохранённой транзакции.
+     */
+    private Transaction pessimisticTransfer(TransferRequestDto dto) {
+        Map<String, CardNumberId> ids = findCardIds(dto);
+        CardNumberId from = findCardId(ids, dto.getFromCardNumber());
+        CardNumberId to = findCardId(ids, dto.getToCardNumber());
+        if (to.getBalanceBuckets() > 0 && !from.getId().equals(to.getId())) {
+            return hotCardTransfer(dto, from.getId(), to.getId());
+        }
+
+        Map<Long, Card> cards = transferMetrics.lock(() -> cardRepository.findAllByIdInForUpdate(List.of(from.getId(), to.getId())))
+                .stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+        return executeTransfer(dto, findUserCard(cards, from.getId()), findUserCard(cards, to.getId()));
+    }
+
+    /**
+     * Выполняет перевод на горячую карту: строка отправителя блокируется монопольно,
+     * строка получателя - разделяемо, а сумма зачисляется в одну из корзин получателя.
+     * Блокировки берутся в порядке возрастания id карты, как и в {@link #pessimisticTransfer}.
+     *
+     * @param dto объект данных запроса на перевод.
+     * @param fromId ID карты-отправителя.
+     * @param toId ID карты-получателя.
+     * @return объект сохранённой транзакции.
+     * @throws CardOperationException если карта заблокирована или средств недостаточно.
+     */
+    private Transaction hotCardTransfer(TransferRequestDto dto, Long fromId, Long toId) {
+        Money amount = dto.getAmount();
+        Card from;
+        boolean credited;
+        if (fromId < toId) {
+            from = lockSender(dto, fromId);
+            credited = transferMetrics.lock(() -> creditHotCard(toId, amount));
+        } else {
+            credited = transferMetrics.lock(() -> creditHotCard(toId, amount));
+            from = lockSender(dto, fromId);
+        }
+        if (!credited) {
+            throw new CardOperationException(ErrorCode.CARD_BLOCKED);
+        }
+
+        from.setBalance(from.getBalance().minus(amount));
+        cardRepository.save(from);
+        return saveTransaction(dto, from, cardRepository.getReferenceById(toId));
+    }
+
+    /**
+     * Блокирует строку карты-отправителя и проверяет, что с нее можно списать сумму перевода.
+     *
+     * @param dto объект данных запроса на перевод.
+     * @param fromId ID карты-отправителя.
+     * @return заблокированная карта.
+     * @throws CardOperationException если карта заблокирована или средств недостаточно.
+     */
+    private Card lockSender(TransferRequestDto dto, Long fromId) {
+        Card from = transferMetrics.lock(() -> cardRepository.findAllByIdInForUpdate(List.of(fromId)))
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
+        if (!from.getStatus().equals(CardStatus.ACTIVE.name())) {
+            throw new CardOperationException(ErrorCode.CARD_BLOCKED);
+        }
+        if (from.getBalanceBuckets() > 0) {
+            balanceBuckets.consolidateIfShort(from, dto.getAmount());
+        }
+        if (from.getBalance().isLessThan(dto.getAmount())) {
+            throw new CardOperationException(ErrorCode.CARD_INSUFFICIENT_FUNDS);
+        }
+        return from;
+    }
+
+    /**
+     * Найти банковскую карту по номеру без блокировки строки.
      * Если карта не найдена, выбрасывается исключение.
      *
      * @param cardNumber номер искомой карты.
      * @return объект карты.
      * @throws ResourceNotFoundException если карта не найдена.
      */
-    private Card findUserCard (String cardNumber) {
+    private Card findUserCard(String cardNumber) {
         return cardRepository.findByNumber(cardNumber)
                 .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND));
     }
 
+    /**
+     * Найти банковскую карту по id среди заблокированных.
+     * Если карта не найдена, выбрасывается исключение.
+     *
+     * @param cards заблокированные карты.
+     * @param cardId ID искомой карты.
+     * @return объект карты.
+     * @throws ResourceNotFoundException если карта не найдена.
+     */
+    private Card findUserCard(Map<Long, Card> cards, Long cardId) {
+        Card card = cards.get(cardId);
+        if (card == null) {
+            throw new ResourceNotFoundException(ErrorCode.CARD_NOT_FOUND);
+        }
+        return card;
+    }
+
     /**
      * Валидирует операцию перевода перед выполнением.
      * Проверяются такие моменты, как идентичность карт, активность обеих карт и доступность необходимой суммы на счету отправителя.
@@ -69,14 +466,14 @@ public class TransferServiceImpl implements TransferService {
      * @param to принимающая карта.
      * @throws CardOperationException если проверка выявила ошибку.
      */
-    private void validateTransfer(TransferRequestDto dto, Card from, Card to) {
+    static void validateTransfer(TransferRequestDto dto, Card from, Card to) {
         if (from.getId().equals(to.getId())) {
             throw new CardOperationException(ErrorCode.SAME_CARD_TRANSFER);
         }
         if (!from.getStatus().equals("ACTIVE") || !to.getStatus().equals("ACTIVE")) {
             throw new CardOperationException(ErrorCode.CARD_BLOCKED);
         }
-        if (from.getBalance() < dto.getAmount()) {
+        if (from.getBalance().isLessThan(dto.getAmount())) {
             throw new CardOperationException(ErrorCode.CARD_INSUFFICIENT_FUNDS);
         }
     }
@@ -87,14 +484,24 @@ public class TransferServiceImpl implements TransferService {
      * @param from отправляемая карта.
      * @param to принимающая карта.
      */
-    private void doTransfer(Double amount, Card from, Card to) {
-        from.setBalance(from.getBalance() - amount);
-        to.setBalance(to.getBalance() + amount);
+    private void doTransfer(Money amount, Card from, Card to) {
+        from.setBalance(from.getBalance().minus(amount));
+        // a hot card keeps its row unchanged: optimistic transfers, or buckets added after the numbers were resolved
+        if (to.getBalanceBuckets() > 0) {
+            if (!creditHotCard(to.getId(), amount)) {
+                throw new CardOperationException(ErrorCode.CARD_BLOCKED);
+            }
+            cardRepository.save(from);
+            return;
+        }
+        to.setBalance(to.getBalance().plus(amount));
 
         cardRepository.saveAll(List.of(from, to));
     }
     /**
      * Сохраняет информацию о совершенной транзакции в базе данных.
+     * В режиме {@link TransactionJournalMode#OUTBOX} транзакция добавляется в журнал
+     * и возвращается без id: он будет назначен при переносе в таблицу transactions.
      *
      * @param dto объект данных запроса на перевод.
      * @param from отправляемая карта.
@@ -109,6 +516,10 @@ public class TransferServiceImpl implements TransferService {
                 .createdAt(LocalDateTime.now())
                 .status("COMPLETED")
                 .build();
+        if (journalMode == TransactionJournalMode.OUTBOX) {
+            transactionOutbox.append(transaction);
+            return transaction;
+        }
         return transactionRepository.save(transaction);
     }
 }
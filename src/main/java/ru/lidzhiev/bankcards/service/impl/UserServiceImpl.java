@@ -1,5 +1,12 @@
 package ru.lidzhiev.bankcards.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,25 +16,43 @@ import org.springframework.stereotype.Service;
 import ru.lidzhiev.bankcards.dto.CreateUserDto;
 import ru.lidzhiev.bankcards.dto.UserDto;
 import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.event.UserModifiedEvent;
 import ru.lidzhiev.bankcards.exception.ErrorCode;
 import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
 import ru.lidzhiev.bankcards.exception.UserOperationException;
 import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.security.UserSnapshot;
 import ru.lidzhiev.bankcards.service.UserService;
 
+import java.time.Duration;
+
 /**
  * Реализация интерфейса UserService, предназначенного для работы с сущностью пользователя.
  * Поддерживает операции по созданию, загрузке, обновлению и удалению пользователей.
  * Использует шифрование паролей с помощью Spring Security PasswordEncoder.
+ * Пользователи, найденные по имени, кэшируются неизменяемыми снимками {@link UserSnapshot} с ограничением
+ * по размеру и времени жизни; запись сбрасывается при изменении или удалении пользователя по {@link UserModifiedEvent}.
  */
 @Service
 public class UserServiceImpl implements UserService {
     private final UserRepository repository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache<String, UserSnapshot> userCache;
 
-    public UserServiceImpl(UserRepository repository, PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(UserRepository repository, PasswordEncoder passwordEncoder,
+                           ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                           @Value("${app.security.user-cache.max-size:250000}") long cacheMaxSize,
+                           @Value("${app.security.user-cache.ttl-minutes:10}") long cacheTtlMinutes) {
         this.repository = repository;
         this.passwordEncoder = passwordEncoder;
+        this.eventPublisher = eventPublisher;
+        this.userCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, userCache, "users");
     }
 
     /**
@@ -39,8 +64,7 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return repository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.USER_NOT_FOUND));
+        return findSnapshotByUsername(username);
     }
 
     /**
@@ -67,17 +91,19 @@ public class UserServiceImpl implements UserService {
     /**
      * {@inheritDoc}
      */
-    public User findEntityByUsername(String username) {
-        return repository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.USER_NOT_FOUND));
+    public UserSnapshot findSnapshotByUsername(String username) {
+        UserSnapshot user = userCache.get(username, key -> repository.findByUsername(key).map(UserSnapshot::of).orElse(null));
+        if (user == null) {
+            throw new ResourceNotFoundException(ErrorCode.USER_NOT_FOUND);
+        }
+        return user;
     }
 
     /**
      * {@inheritDoc}
      */
     public UserDto getByUsername(String username) {
-        User user = findEntityByUsername(username);
-        return toDto(user);
+        return toDto(findSnapshotByUsername(username));
     }
 
     /**
@@ -96,9 +122,11 @@ public class UserServiceImpl implements UserService {
     public UserDto updateUser(UserDto dto) {
         User user = repository.findById(dto.getId())
                 .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.USER_NOT_FOUND));
+        String previousUsername = user.getUsername();
         user.setUsername(dto.getUsername());
         user.setEmail(dto.getEmail());
         User updated = repository.save(user);
+        eventPublisher.publishEvent(new UserModifiedEvent(updated.getId(), previousUsername));
         return toDto(updated);
     }
 
@@ -110,6 +138,21 @@ public class UserServiceImpl implements UserService {
         User user = repository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.USER_NOT_FOUND));
         repository.delete(user);
+        eventPublisher.publishEvent(new UserModifiedEvent(id, user.getUsername()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Запись пользователя в кэше сбрасывается, чтобы следующий вход проверялся по новому хешу.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User entity = repository.findByUsername(user.getUsername())
+                .orElseThrow(() -> new ResourceNotFoundException(ErrorCode.USER_NOT_FOUND));
+        entity.setPassword(newPassword);
+        User updated = repository.save(entity);
+        userCache.invalidate(updated.getUsername());
+        return UserSnapshot.of(updated);
     }
 
     /**
@@ -117,8 +160,7 @@ public class UserServiceImpl implements UserService {
      */
     public UserDto getCurrentUser() {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = findEntityByUsername(username);
-        return toDto(user);
+        return toDto(findSnapshotByUsername(username));
     }
 
     /**
@@ -127,4 +169,18 @@ public class UserServiceImpl implements UserService {
     public UserDto toDto(User user) {
         return new UserDto(user.getId(), user.getUsername(), user.getEmail());
     }
+
+    private UserDto toDto(UserSnapshot user) {
+        return new UserDto(user.getId(), user.getUsername(), user.getEmail());
+    }
+
+    /**
+     * Сбрасывает кэшированного пользователя после его изменения или удаления.
+     *
+     * @param event событие изменения пользователя.
+     */
+    @EventListener
+    public void onUserModified(UserModifiedEvent event) {
+        userCache.invalidate(event.getUsername());
+    }
 }
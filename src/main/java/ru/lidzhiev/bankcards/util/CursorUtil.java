@@ -0,0 +1,95 @@
+package ru.lidzhiev.bankcards.util;
+
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Утилитарный класс для курсоров постраничного обхода.
+ * Курсор - непрозрачная для клиента строка, содержащая ключ последнего возвращенного элемента:
+ * id или пару (время создания, id).
+ */
+public class CursorUtil {
+    private static final char KEY_SEPARATOR = '_';
+
+    /**
+     * Ключ элемента, упорядоченного по времени создания и id.
+     *
+     * @param createdAt время создания.
+     * @param id        id элемента.
+     */
+    public record TimeKey(LocalDateTime createdAt, long id) {
+    }
+
+    /**
+     * Кодирует id последнего элемента в курсор.
+     *
+     * @param lastId id последнего элемента.
+     * @return курсор.
+     */
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Декодирует курсор в id последнего элемента.
+     *
+     * @param cursor курсор или null для первой части.
+     * @return id последнего элемента, 0 для первой части.
+     * @throws CardOperationException если курсор некорректен.
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            long lastId = Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+            if (lastId < 0) {
+                throw new CardOperationException(ErrorCode.INVALID_CURSOR);
+            }
+            return lastId;
+        } catch (IllegalArgumentException e) {
+            throw new CardOperationException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    /**
+     * Кодирует ключ (время создания, id) последнего элемента в курсор.
+     *
+     * @param createdAt время создания последнего элемента.
+     * @param id        id последнего элемента.
+     * @return курсор.
+     */
+    public static String encode(LocalDateTime createdAt, long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt.toString() + KEY_SEPARATOR + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Декодирует курсор в ключ (время создания, id) последнего элемента.
+     *
+     * @param cursor курсор или null для первой части.
+     * @return ключ последнего элемента или null для первой части.
+     * @throws CardOperationException если курсор некорректен.
+     */
+    public static TimeKey decodeTimeKey(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = key.lastIndexOf(KEY_SEPARATOR);
+            if (separator < 0) {
+                throw new CardOperationException(ErrorCode.INVALID_CURSOR);
+            }
+            return new TimeKey(LocalDateTime.parse(key.substring(0, separator)), Long.parseLong(key.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new CardOperationException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.lidzhiev.bankcards.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Взаимно однозначное перемешивание чисел диапазона [0, domain), зависящее от ключа
+ * (format-preserving permutation).
+ * Сбалансированная сеть Фейстеля над наименьшим четным числом бит, покрывающим диапазон;
+ * значения за пределами диапазона снова пропускаются через сеть (cycle walking), пока результат
+ * не попадет в диапазон. Различные входы всегда дают различные выходы, поэтому последовательные
+ * значения счетчика превращаются в непредсказуемые, но гарантированно неповторяющиеся числа.
+ * Не является криптостойким шифрованием.
+ */
+public class FeistelPermutation {
+    private static final int ROUNDS = 6;
+
+    private final long domain;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * @param domain размер диапазона, не больше 2^62.
+     * @param key    ключ перемешивания; при смене ключа меняется вся перестановка.
+     */
+    public FeistelPermutation(long domain, String key) {
+        if (domain < 2 || domain > 1L << 62) {
+            throw new IllegalArgumentException("Unsupported domain " + domain);
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(domain - 1);
+        this.domain = domain;
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        ByteBuffer digest = ByteBuffer.wrap(sha512(key));
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = digest.getLong();
+        }
+    }
+
+    /**
+     * Возвращает образ значения при перестановке.
+     *
+     * @param value значение из диапазона [0, domain).
+     * @return значение из диапазона [0, domain), различное для различных входов.
+     */
+    public long permute(long value) {
+        if (value < 0 || value >= domain) {
+            throw new IllegalArgumentException("Value out of domain: " + value);
+        }
+        long result = value;
+        do {
+            result = encrypt(result);
+        } while (result >= domain);
+        return result;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            long next = left ^ round(right, roundKey);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long round(long half, long roundKey) {
+        long x = (half ^ roundKey) * 0x9E3779B97F4A7C15L;
+        x ^= x >>> 29;
+        x *= 0xBF58476D1CE4E5B9L;
+        x ^= x >>> 32;
+        return x & halfMask;
+    }
+
+    private static byte[] sha512(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-512").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
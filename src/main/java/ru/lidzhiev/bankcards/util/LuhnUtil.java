@@ -0,0 +1,50 @@
+package ru.lidzhiev.bankcards.util;
+
+/**
+ * Утилитарный класс для контрольной цифры номера карты по алгоритму Луна (ISO/IEC 7812).
+ */
+public class LuhnUtil {
+
+    /**
+     * Вычисляет контрольную цифру для номера без нее.
+     *
+     * @param digits цифры номера без контрольной цифры.
+     * @param length количество цифр, начиная с начала массива.
+     * @return контрольная цифра от 0 до 9.
+     */
+    public static int checkDigit(char[] digits, int length) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = digits[i] - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Проверяет номер карты вместе с контрольной цифрой.
+     *
+     * @param number номер карты.
+     * @return true, если номер состоит из цифр и контрольная цифра верна.
+     */
+    public static boolean isValid(String number) {
+        if (number == null || number.length() < 2) {
+            return false;
+        }
+        char[] digits = number.toCharArray();
+        for (char c : digits) {
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return checkDigit(digits, digits.length - 1) == digits[digits.length - 1] - '0';
+    }
+}
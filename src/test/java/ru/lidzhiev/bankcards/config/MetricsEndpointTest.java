@@ -0,0 +1,99 @@
+package ru.lidzhiev.bankcards.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.service.CardService;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The Prometheus scrape endpoint exposes service, repository, transfer and connection pool meters.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles("test")
+class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void prometheusEndpoint_ExposesHotPathMeters() throws Exception {
+        User owner = saveUser();
+        Card from = saveCard(owner, "100.00");
+        Card to = saveCard(owner, "0.00");
+        cardService.transfer(new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("10.00")), owner.getUsername());
+        assertThrows(CardOperationException.class, () -> cardService.transfer(
+                new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("1000.00")), owner.getUsername()));
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("bank_service_method_seconds_bucket{class=\"CardServiceImpl\",exception=\"none\",method=\"transfer\""));
+        assertTrue(scrape.contains("bank_service_method_seconds_count{class=\"CardServiceImpl\",exception=\"CardOperationException\",method=\"transfer\""));
+        assertTrue(scrape.contains("bank_transfer_outcome_total{operation=\"card_transfer\",outcome=\"SUCCESS\"}"));
+        assertTrue(scrape.contains("bank_transfer_outcome_total{operation=\"card_transfer\",outcome=\"CARD_INSUFFICIENT_FUNDS\"}"));
+        assertTrue(scrape.contains("bank_transfer_lock_wait_seconds_bucket{operation=\"card_transfer\""));
+        assertTrue(scrape.contains("spring_data_repository_invocations_seconds_bucket"));
+        assertTrue(scrape.contains("hikaricp_connections_pending"));
+        assertTrue(scrape.contains("bank_errors_total{code=\"CARD_INSUFFICIENT_FUNDS\""));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void prometheusEndpoint_RequiresAdmin() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isForbidden());
+    }
+
+    private User saveUser() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setUsername("metrics_" + suffix);
+        user.setEmail("metrics_" + suffix + "@mail.com");
+        user.setPassword("password");
+        user.setUserRole(UserRole.ROLE_USER);
+        return userRepository.save(user);
+    }
+
+    private Card saveCard(User owner, String balance) {
+        Card card = new Card();
+        card.setNumber(String.valueOf(Math.abs(UUID.randomUUID().getMostSignificantBits()) % 9_000_000_000_000_000L + 1_000_000_000_000_000L));
+        card.setExpireAt(LocalDate.now().plusYears(1));
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setBalance(Money.of(balance));
+        card.setOwner(owner);
+        return cardRepository.save(card);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.lidzhiev.bankcards.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestConcurrencyLimitFilterTest {
+
+    @Test
+    void rejectsWithServiceUnavailable_WhenAllPermitsAreTaken() throws Exception {
+        RequestConcurrencyLimitFilter filter = new RequestConcurrencyLimitFilter(1, 20);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MockHttpServletResponse> first = executor.submit(() -> {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/cards/me/cursor"), response, (req, res) -> {
+                    entered.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                return response;
+            });
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            MockHttpServletResponse rejected = new MockHttpServletResponse();
+            MockFilterChain rejectedChain = new MockFilterChain();
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/cards/me/cursor"), rejected, rejectedChain);
+            assertEquals(503, rejected.getStatus());
+            assertNull(rejectedChain.getRequest());
+
+            MockHttpServletResponse health = new MockHttpServletResponse();
+            MockFilterChain healthChain = new MockFilterChain();
+            filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), health, healthChain);
+            assertNotNull(healthChain.getRequest());
+
+            release.countDown();
+            assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals(1, filter.availablePermits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void releasesPermit_WhenChainThrows() {
+        RequestConcurrencyLimitFilter filter = new RequestConcurrencyLimitFilter(1, 20);
+
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(
+                new MockHttpServletRequest("GET", "/api/cards"), new MockHttpServletResponse(), (req, res) -> {
+                    throw new IllegalStateException("boom");
+                }));
+        assertEquals(1, filter.availablePermits());
+    }
+}
@@ -0,0 +1,37 @@
+package ru.lidzhiev.bankcards.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.threads.virtual.enabled=true",
+        "spring.datasource.hikari.maximum-pool-size=7",
+        "app.threads.virtual.requests-per-connection=3"
+})
+@ActiveProfiles("test")
+class VirtualThreadsConfigTest {
+
+    @Autowired
+    private FilterRegistrationBean<RequestConcurrencyLimitFilter> requestConcurrencyLimitFilter;
+
+    @Autowired
+    private AsyncTaskExecutor applicationTaskExecutor;
+
+    @Test
+    void requestLimit_IsDerivedFromConnectionPoolSize() {
+        assertEquals(21, requestConcurrencyLimitFilter.getFilter().availablePermits());
+    }
+
+    @Test
+    void taskExecutor_RunsTasksOnVirtualThreads() throws Exception {
+        assertTrue(applicationTaskExecutor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS));
+    }
+}
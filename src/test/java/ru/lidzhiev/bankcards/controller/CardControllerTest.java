@@ -1,10 +1,12 @@
 package ru.lidzhiev.bankcards.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,21 +15,37 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.lidzhiev.bankcards.dto.CardDto;
+import ru.lidzhiev.bankcards.dto.CardIssueResultDto;
+import ru.lidzhiev.bankcards.dto.CardSliceDto;
 import ru.lidzhiev.bankcards.dto.CreateCardDto;
 import ru.lidzhiev.bankcards.dto.TransferRequestDto;
 import ru.lidzhiev.bankcards.security.JwtService;
+import ru.lidzhiev.bankcards.service.BulkCardService;
+import ru.lidzhiev.bankcards.service.CardExportFormat;
+import ru.lidzhiev.bankcards.service.CardExportService;
 import ru.lidzhiev.bankcards.service.CardService;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyKey;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
 import ru.lidzhiev.bankcards.service.UserService;
+import ru.lidzhiev.bankcards.entity.Money;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(CardController.class)
+@Import(SimpleMeterRegistry.class)
 @AutoConfigureMockMvc(addFilters = false)
 class CardControllerTest {
 
@@ -37,6 +55,15 @@ class CardControllerTest {
     @MockitoBean
     private CardService cardService;
 
+    @MockitoBean
+    private CardExportService cardExportService;
+
+    @MockitoBean
+    private BulkCardService bulkCardService;
+
+    @MockitoBean
+    private TransferIdempotencyService transferIdempotency;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -49,8 +76,8 @@ class CardControllerTest {
     @Test
     @WithMockUser(username="User12", roles={"ADMIN"})
     void createCard_ReturnsCardDto_WhenRequestIsValid() throws Exception {
-        CreateCardDto createCardDto = new CreateCardDto("2026-01-01", 1000.0, "User");
-        CardDto cardDto = new CardDto(1L, "**** **** **** 1234", "ACTIVE", "2026-01-01", 1000.0, "User");
+        CreateCardDto createCardDto = new CreateCardDto("2026-01-01", Money.of("1000.00"), "User");
+        CardDto cardDto = new CardDto(1L, "**** **** **** 1234", "ACTIVE", "2026-01-01", Money.of("1000.00"), "User");
 
         when(cardService.create(any(CreateCardDto.class), eq("User"))).thenReturn(cardDto);
 
@@ -58,13 +85,25 @@ class CardControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(createCardDto)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.maskedNumber").value("**** **** **** 1234"));
+                .andExpect(jsonPath("$.maskedNumber").value("**** **** **** 1234"))
+                .andExpect(jsonPath("$.balance").value(1000.00));
+    }
+
+    @Test
+    @WithMockUser(username="User12", roles={"USER"})
+    void transfer_ReturnsBadRequest_WhenAmountHasFractionOfKopeck() throws Exception {
+        mockMvc.perform(post("/api/cards/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fromCardNumber\":\"1234\",\"toCardNumber\":\"1233\",\"amount\":10.005}"))
+                .andExpect(status().isBadRequest());
+
+        verify(cardService, never()).transfer(any(TransferRequestDto.class), any());
     }
 
     @Test
     @WithMockUser(username="User12", roles={"USER"})
     void transfer_ReturnsNoContent_WhenTransferSuccessful() throws Exception {
-        TransferRequestDto transferRequestDto = new TransferRequestDto("1234", "1233", 100.0);
+        TransferRequestDto transferRequestDto = new TransferRequestDto("1234", "1233", Money.of("100.00"));
 
         doNothing().when(cardService).transfer(any(TransferRequestDto.class), eq("User12"));
 
@@ -76,11 +115,46 @@ class CardControllerTest {
         verify(cardService, times(1)).transfer(any(TransferRequestDto.class), eq("User12"));
     }
 
+    @Test
+    @WithMockUser(username="User12", roles={"USER"})
+    void transfer_WithIdempotencyKey_ExecutesTransferOnce() throws Exception {
+        TransferRequestDto transferRequestDto = new TransferRequestDto("1234", "1233", Money.of("100.00"));
+        when(transferIdempotency.execute(any(TransferIdempotencyKey.class), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return false;
+        });
+
+        mockMvc.perform(post("/api/cards/transfer")
+                        .header(TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequestDto)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(TransferIdempotencyService.REPLAYED_HEADER, "false"));
+
+        verify(cardService, times(1)).transfer(any(TransferRequestDto.class), eq("User12"), any(TransferIdempotencyKey.class));
+    }
+
+    @Test
+    @WithMockUser(username="User12", roles={"USER"})
+    void transfer_WithUsedIdempotencyKey_IsReplayed() throws Exception {
+        TransferRequestDto transferRequestDto = new TransferRequestDto("1234", "1233", Money.of("100.00"));
+        when(transferIdempotency.execute(any(TransferIdempotencyKey.class), any(Runnable.class))).thenReturn(true);
+
+        mockMvc.perform(post("/api/cards/transfer")
+                        .header(TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequestDto)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(TransferIdempotencyService.REPLAYED_HEADER, "true"));
+
+        verify(cardService, never()).transfer(any(TransferRequestDto.class), any(), any(TransferIdempotencyKey.class));
+    }
+
     @Test
     @WithMockUser(username="User12", roles={"USER"})
     void getMyCardsPaged_ReturnsPageOfCards() throws Exception {
-        CardDto cardDto1 = new CardDto(1L, "**** **** **** 1234", "ACTIVE", "2026-01-01", 1000.0, "User");
-        CardDto cardDto2 = new CardDto(2L, "**** **** **** 5678", "ACTIVE", "2026-01-01", 2000.0, "User");
+        CardDto cardDto1 = new CardDto(1L, "**** **** **** 1234", "ACTIVE", "2026-01-01", Money.of("1000.00"), "User");
+        CardDto cardDto2 = new CardDto(2L, "**** **** **** 5678", "ACTIVE", "2026-01-01", Money.of("2000.00"), "User");
         List<CardDto> cards = List.of(cardDto1, cardDto2);
 
         Pageable pageable = PageRequest.of(0, 5);
@@ -98,5 +172,54 @@ class CardControllerTest {
                 .andExpect(jsonPath("$.totalPages").value(1));
     }
 
+    @Test
+    @WithMockUser(username="User12", roles={"USER"})
+    void getMyCardsByCursor_ReturnsSliceWithNextCursor() throws Exception {
+        CardDto cardDto = new CardDto(7L, "**** **** **** 1234", "ACTIVE", "2026-01-01", Money.of("1000.00"), "User12");
+
+        when(cardService.getByUsername("User12", "Ng", 1)).thenReturn(new CardSliceDto(List.of(cardDto), "Nw", true));
+
+        mockMvc.perform(get("/api/cards/me/cursor")
+                        .param("cursor", "Ng")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(7))
+                .andExpect(jsonPath("$.nextCursor").value("Nw"))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(username="admin", roles={"ADMIN"})
+    void exportCards_StreamsCsv() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write("id\n1\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(cardExportService).exportCards(eq(CardExportFormat.CSV), any(OutputStream.class));
+
+        var result = mockMvc.perform(get("/api/cards/admin/export").param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("id\n1\n"));
+    }
 
+    @Test
+    @WithMockUser(username="admin", roles={"ADMIN"})
+    void issueCards_AcceptsCsvUpload() throws Exception {
+        when(bulkCardService.issueCards(any(InputStream.class))).thenReturn(List.of(
+                CardIssueResultDto.issued(0, 10L),
+                CardIssueResultDto.failed(1, "USER_NOT_FOUND")));
+
+        mockMvc.perform(post("/api/cards/bulk")
+                        .contentType("text/csv")
+                        .content("expireAt,balance,username\n2030-01-01,0.00,User\n2030-01-01,0.00,Nobody\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ISSUED"))
+                .andExpect(jsonPath("$[0].cardId").value(10))
+                .andExpect(jsonPath("$[1].errorCode").value("USER_NOT_FOUND"));
+    }
 }
@@ -0,0 +1,86 @@
+package ru.lidzhiev.bankcards.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.lidzhiev.bankcards.dto.TransactionDto;
+import ru.lidzhiev.bankcards.dto.TransactionSliceDto;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.security.JwtService;
+import ru.lidzhiev.bankcards.service.TransactionHistoryService;
+import ru.lidzhiev.bankcards.service.UserService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TransactionController.class)
+@Import(SimpleMeterRegistry.class)
+@AutoConfigureMockMvc(addFilters = false)
+class TransactionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private TransactionHistoryService transactionHistoryService;
+
+    @MockitoBean
+    private JwtService jwtService;
+
+    @MockitoBean
+    private UserService userService;
+
+    @Test
+    @WithMockUser(username = "User12", roles = {"USER"})
+    void getCardHistory_PassesTimeRangeAndCursor() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2026, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2026, 2, 1, 0, 0);
+        TransactionDto dto = new TransactionDto(7L, 1L, 2L, Money.of("10.00"), from.plusDays(1), "COMPLETED");
+        when(transactionHistoryService.getCardHistory(1L, "User12", from, to, "abc", 10))
+                .thenReturn(new TransactionSliceDto(List.of(dto), "next", true));
+
+        mockMvc.perform(get("/api/transactions/cards/1")
+                        .param("from", "2026-01-01T00:00:00")
+                        .param("to", "2026-02-01T00:00:00")
+                        .param("cursor", "abc")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(7))
+                .andExpect(jsonPath("$.content[0].amount").value(10.00))
+                .andExpect(jsonPath("$.content[0].createdAt").value("2026-01-02T00:00:00"))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.hasNext").value(true));
+    }
+
+    @Test
+    @WithMockUser(username = "User12", roles = {"USER"})
+    void exportCardHistory_OfForeignCard_IsRejectedBeforeStreaming() throws Exception {
+        doThrow(new CardOperationException(ErrorCode.NOT_OWNER))
+                .when(transactionHistoryService).checkCardOwner(3L, "User12");
+
+        mockMvc.perform(get("/api/transactions/cards/3/export"))
+                .andExpect(status().isForbidden());
+
+        verify(transactionHistoryService, never())
+                .exportCardHistory(eq(3L), eq("User12"), isNull(), isNull(), any());
+    }
+}
@@ -0,0 +1,145 @@
+package ru.lidzhiev.bankcards.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.dto.TransferResultDto;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.security.JwtService;
+import ru.lidzhiev.bankcards.service.BatchTransferService;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyKey;
+import ru.lidzhiev.bankcards.service.TransferIdempotencyService;
+import ru.lidzhiev.bankcards.service.TransferService;
+import ru.lidzhiev.bankcards.service.UserService;
+import ru.lidzhiev.bankcards.entity.Money;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TransferController.class)
+@Import(SimpleMeterRegistry.class)
+@AutoConfigureMockMvc(addFilters = false)
+class TransferControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private TransferService transferService;
+
+    @MockitoBean
+    private BatchTransferService batchTransferService;
+
+    @MockitoBean
+    private TransferIdempotencyService transferIdempotency;
+
+    @MockitoBean
+    private JwtService jwtService;
+
+    @MockitoBean
+    private UserService userService;
+
+    @Test
+    @WithMockUser(username = "User12", roles = {"USER"})
+    void transfer_WithoutIdempotencyKey_ExecutesTransfer() throws Exception {
+        TransferRequestDto request = new TransferRequestDto("1234", "1233", Money.of("100.00"));
+
+        mockMvc.perform(post("/api/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(TransferIdempotencyService.REPLAYED_HEADER));
+
+        verify(transferService).transfer(any(TransferRequestDto.class));
+        verifyNoInteractions(transferIdempotency);
+    }
+
+    @Test
+    @WithMockUser(username = "User12", roles = {"USER"})
+    void transfer_WithUsedIdempotencyKey_IsReplayed() throws Exception {
+        TransferRequestDto request = new TransferRequestDto("1234", "1233", Money.of("100.00"));
+        when(transferIdempotency.execute(any(TransferIdempotencyKey.class), any(Runnable.class))).thenReturn(true);
+
+        mockMvc.perform(post("/api/transfer")
+                        .header(TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TransferIdempotencyService.REPLAYED_HEADER, "true"));
+
+        verify(transferService, never()).transfer(any(TransferRequestDto.class), any(TransferIdempotencyKey.class));
+    }
+
+    @Test
+    @WithMockUser(username = "User12", roles = {"USER"})
+    void transfer_WithOverlongIdempotencyKey_ReturnsBadRequest() throws Exception {
+        TransferRequestDto request = new TransferRequestDto("1234", "1233", Money.of("100.00"));
+
+        mockMvc.perform(post("/api/transfer")
+                        .header(TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, "k".repeat(TransferIdempotencyKey.MAX_KEY_LENGTH + 1))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(transferService, transferIdempotency);
+    }
+
+    @Test
+    @WithMockUser(username = "User12", roles = {"USER"})
+    void transferBatch_ReturnsPerItemResults() throws Exception {
+        List<TransferRequestDto> requests = List.of(
+                new TransferRequestDto("1234", "1233", Money.of("100.00")),
+                new TransferRequestDto("1234", "1234", Money.of("100.00")));
+        when(batchTransferService.transferBatch(anyList(), eq("User12"))).thenReturn(List.of(
+                TransferResultDto.completed(0),
+                TransferResultDto.failed(1, ErrorCode.SAME_CARD_TRANSFER.name())));
+
+        mockMvc.perform(post("/api/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("COMPLETED"))
+                .andExpect(jsonPath("$[1].status").value("FAILED"))
+                .andExpect(jsonPath("$[1].errorCode").value("SAME_CARD_TRANSFER"));
+    }
+
+    @Test
+    @WithMockUser(username = "User12", roles = {"USER"})
+    void transferBatch_WithIdempotencyKey_PassesBatchKey() throws Exception {
+        List<TransferRequestDto> requests = List.of(new TransferRequestDto("1234", "1233", Money.of("100.00")));
+        when(batchTransferService.transferBatch(anyList(), eq("User12"), any(TransferIdempotencyKey.class)))
+                .thenReturn(List.of(TransferResultDto.completed(0)));
+
+        mockMvc.perform(post("/api/transfers/batch")
+                        .header(TransferIdempotencyService.IDEMPOTENCY_KEY_HEADER, "batch-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("COMPLETED"));
+
+        verify(batchTransferService).transferBatch(anyList(), eq("User12"),
+                eq(TransferIdempotencyKey.ofBatch("User12", "batch-1", "transfers/batch", requests)));
+        verify(batchTransferService, never()).transferBatch(anyList(), anyString());
+    }
+}
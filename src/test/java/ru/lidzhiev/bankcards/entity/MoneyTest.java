@@ -0,0 +1,35 @@
+package ru.lidzhiev.bankcards.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void arithmetic_isExact() {
+        Money sum = Money.ZERO;
+        for (int i = 0; i < 10; i++) {
+            sum = sum.plus(Money.of("0.10"));
+        }
+        assertEquals(Money.of("1.00"), sum);
+        assertEquals(Money.of("0.01"), Money.of("1.00").minus(Money.of("0.99")));
+    }
+
+    @Test
+    void of_rejectsFractionsOfMinorUnit() {
+        assertThrows(ArithmeticException.class, () -> Money.of("10.005"));
+        assertEquals(1050L, Money.of(new BigDecimal("10.5")).getMinorUnits());
+    }
+
+    @Test
+    void comparisons_useMinorUnits() {
+        assertTrue(Money.of("9.99").isLessThan(Money.of("10.00")));
+        assertFalse(Money.of("10.00").isLessThan(Money.of("10.00")));
+        assertTrue(Money.ofMinor(-1).isNegative());
+        assertEquals("10.50", Money.ofMinor(1050).toString());
+        assertEquals(new BigDecimal("10.50"), Money.ofMinor(1050).toBigDecimal());
+    }
+}
@@ -0,0 +1,91 @@
+package ru.lidzhiev.bankcards.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Guards the indexes of the hot lookup paths: every query below must be answered from an index.
+ * Runs EXPLAIN on an embedded PostgreSQL migrated by Liquibase, the same database and partitioned schema
+ * as in production, and fails on a sequential scan. Sequential scans are disabled on every connection,
+ * so the planner avoids them wherever an index can be used even though the tables are nearly empty;
+ * a remaining Seq Scan means that no index covers the query.
+ * The SQL mirrors the statements Hibernate generates for the corresponding repository methods.
+ */
+@SpringBootTest
+class QueryPlanTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.datasource.hikari.connection-init-sql", () -> "SET enable_seqscan = off");
+        registry.add("spring.jpa.show-sql", () -> "false");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // CardRepository.findByNumber
+            "select c.id from cards c where c.number = '1111222233334444'",
+            // CardRepository.findIdsByNumberIn
+            "select c.id from cards c where c.number in ('1111222233334444', '5555666677778888') order by c.id",
+            // CardRepository.findViewsByOwnerUsername
+            "select c.id, u.username from cards c join users u on u.id = c.user_id where u.username = 'admin'",
+            // CardRepository.findViewsByOwnerIdAfter
+            "select c.id from cards c where c.user_id = 1 and c.id > 0 order by c.user_id, c.id fetch first 21 rows only",
+            // CardRepository.findIdsByOwnerUsername
+            "select c.id from cards c join users u on u.id = c.user_id where u.username = 'admin' order by c.id",
+            // Card.bucketedBalance, CardBalanceBucketService.drain
+            "select coalesce(sum(b.amount), 0) from card_balance_buckets b where b.card_id = 1",
+            // CardBalanceBucketService.credit
+            "select b.amount from card_balance_buckets b where b.card_id = 1 and b.bucket = 3",
+            // TransactionRepository.findOutgoingBefore
+            "select t.id from transactions t where t.from_card_id = 1 and t.created_at >= timestamp '1970-01-01 00:00:00' "
+                    + "and (t.created_at < timestamp '2026-02-01 00:00:00' "
+                    + "or (t.created_at = timestamp '2026-02-01 00:00:00' and t.id < 0)) "
+                    + "order by t.created_at desc, t.id desc fetch first 21 rows only",
+            // TransactionRepository.findIncomingBefore
+            "select t.id from transactions t where t.to_card_id = 1 and t.created_at >= timestamp '1970-01-01 00:00:00' "
+                    + "and (t.created_at < timestamp '2026-02-01 00:00:00' "
+                    + "or (t.created_at = timestamp '2026-02-01 00:00:00' and t.id < 0)) "
+                    + "order by t.created_at desc, t.id desc fetch first 21 rows only",
+            // TransactionRepository.streamByCard
+            "select t.id from transactions t where (t.from_card_id = 1 or t.to_card_id = 1) "
+                    + "and t.created_at >= timestamp '1970-01-01 00:00:00' and t.created_at < timestamp '9999-12-31 00:00:00' "
+                    + "order by t.created_at, t.id",
+            // TransactionRepository.findByFromCard
+            "select t.id from transactions t where t.from_card_id = 1",
+            // TransactionRepository.findByToCard
+            "select t.id from transactions t where t.to_card_id = 1",
+            // transactions in a time range
+            "select t.id from transactions t where t.created_at >= timestamp '2026-01-01 00:00:00' "
+                    + "and t.created_at < timestamp '2026-02-01 00:00:00'"
+    })
+    void query_usesIndex(String sql) {
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+
+        assertFalse(plan.contains("Seq Scan"), () -> "sequential scan in plan:\n" + plan);
+    }
+}
@@ -0,0 +1,123 @@
+package ru.lidzhiev.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.event.UserModifiedEvent;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.service.UserService;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+
+    private JwtService jwtService;
+    private UserService userService;
+    private UserRepository userRepository;
+    private TokenRevocationService tokenRevocationService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "jwtSigningKey", "976158266ca2e3a13918e4d3fc067e8f9113a300ba1f6f7539ff6f3085e1a79a");
+        ReflectionTestUtils.setField(jwtService, "tokenExpirationHours", 1);
+        ReflectionTestUtils.setField(jwtService, "claimsCacheMaxSize", 100L);
+        jwtService.init();
+        userService = mock(UserService.class);
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findTokenVersionById(7L)).thenReturn(Optional.of(0L));
+        tokenRevocationService = new TokenRevocationService(userRepository, 100, 30);
+
+        user = new User();
+        user.setId(7L);
+        user.setUsername("User12");
+        user.setUserRole(UserRole.ROLE_USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void stateless_BuildsPrincipalFromClaims_WithoutUserLookup() throws Exception {
+        String token = jwtService.generateToken(user);
+
+        Authentication authentication = filter(AuthMode.STATELESS, token);
+
+        assertNotNull(authentication);
+        JwtUserPrincipal principal = assertInstanceOf(JwtUserPrincipal.class, authentication.getPrincipal());
+        assertEquals(7L, principal.getId());
+        assertEquals("User12", principal.getUsername());
+        assertTrue(authentication.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_USER")));
+        verify(userService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void stateless_RejectsToken_WhenUserModifiedAfterIssue() throws Exception {
+        // the version is incremented by the revocation
+        when(userRepository.findTokenVersionById(7L)).thenReturn(Optional.of(0L), Optional.of(1L));
+        String token = jwtService.generateToken(user, tokenRevocationService.getTokenVersion(7L));
+
+        tokenRevocationService.onUserModified(new UserModifiedEvent(7L, "User12"));
+
+        assertNull(filter(AuthMode.STATELESS, token));
+        verify(userRepository).incrementTokenVersion(7L);
+        assertNotNull(filter(AuthMode.STATELESS, jwtService.generateToken(user, tokenRevocationService.getTokenVersion(7L))));
+    }
+
+    @Test
+    void stateless_RejectsRevokedToken_AfterRestart() throws Exception {
+        String token = jwtService.generateToken(user, 0);
+        // revoked by another instance or before a restart: only the database knows
+        when(userRepository.findTokenVersionById(7L)).thenReturn(Optional.of(1L));
+        tokenRevocationService = new TokenRevocationService(userRepository, 100, 30);
+
+        assertNull(filter(AuthMode.STATELESS, token));
+    }
+
+    @Test
+    void stateless_RejectsToken_WhenUserDeleted() throws Exception {
+        String token = jwtService.generateToken(user);
+        when(userRepository.findTokenVersionById(7L)).thenReturn(Optional.empty());
+
+        assertNull(filter(AuthMode.STATELESS, token));
+    }
+
+    @Test
+    void stateful_LoadsUserFromDatabase() throws Exception {
+        String token = jwtService.generateToken(user);
+        when(userService.loadUserByUsername("User12")).thenReturn(user);
+
+        Authentication authentication = filter(AuthMode.STATEFUL, token);
+
+        assertNotNull(authentication);
+        assertSame(user, authentication.getPrincipal());
+        verify(userService).loadUserByUsername("User12");
+    }
+
+    private Authentication filter(AuthMode authMode, String token) throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService, userService, tokenRevocationService, authMode,
+                new SimpleMeterRegistry());
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards/me/paged");
+        request.setServletPath("/api/cards/me/paged");
+        request.addHeader(JwtAuthenticationFilter.HEADER_NAME, JwtAuthenticationFilter.BEARER_PREFIX + token);
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
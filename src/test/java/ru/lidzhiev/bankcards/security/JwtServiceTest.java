@@ -0,0 +1,53 @@
+package ru.lidzhiev.bankcards.security;
+
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private JwtService jwtService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "jwtSigningKey", "976158266ca2e3a13918e4d3fc067e8f9113a300ba1f6f7539ff6f3085e1a79a");
+        ReflectionTestUtils.setField(jwtService, "tokenExpirationHours", 1);
+        ReflectionTestUtils.setField(jwtService, "claimsCacheMaxSize", 100L);
+        jwtService.init();
+
+        user = new User();
+        user.setId(1L);
+        user.setUsername("User12");
+        user.setUserRole(UserRole.ROLE_USER);
+    }
+
+    @Test
+    void isTokenValid_ReturnsTrue_ForOwnToken() {
+        String token = jwtService.generateToken(user);
+
+        assertEquals("User12", jwtService.extractUserName(token));
+        assertTrue(jwtService.isTokenValid(token, user));
+    }
+
+    @Test
+    void getClaims_VerifiesTokenOnce() {
+        String token = jwtService.generateToken(user);
+
+        assertSame(jwtService.getClaims(token), jwtService.getClaims(token));
+    }
+
+    @Test
+    void getClaims_ThrowsException_WhenSignatureIsTampered() {
+        String token = jwtService.generateToken(user);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThrows(SignatureException.class, () -> jwtService.getClaims(tampered));
+    }
+}
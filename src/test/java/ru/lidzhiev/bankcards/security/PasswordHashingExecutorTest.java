@@ -0,0 +1,99 @@
+package ru.lidzhiev.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.exception.UserOperationException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordHashingExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new PasswordHashingExecutor(meterRegistry, 1, 1, 5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void encode_RecordsHashingLatency() {
+        assertEquals("hash", executor.encode(() -> "hash"));
+        assertTrue(executor.matches(() -> true));
+
+        assertEquals(1, meterRegistry.get("bank.auth.password.hashing").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("bank.auth.password.hashing").tag("operation", "matches").timer().count());
+        assertEquals(2, meterRegistry.get("bank.auth.password.hashing.queue.wait").timer().count());
+    }
+
+    @Test
+    void encode_RejectsWithServiceUnavailable_WhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<String> running = callers.submit(() -> executor.encode(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> queued = callers.submit(() -> executor.encode(() -> "second"));
+        while (meterRegistry.get("bank.auth.password.hashing.queue.depth").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        UserOperationException ex = assertThrows(UserOperationException.class, () -> executor.encode(() -> "third"));
+        assertEquals(ErrorCode.PASSWORD_HASHING_OVERLOADED, ex.getErrorCode());
+        assertEquals(503, ex.getErrorCode().getHttpStatus().value());
+        assertEquals(1.0, meterRegistry.get("bank.auth.password.hashing.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+        callers.shutdown();
+    }
+
+    @Test
+    void encode_RejectsWithServiceUnavailable_WhenHashingTimesOut() {
+        PasswordHashingExecutor slowExecutor = new PasswordHashingExecutor(new SimpleMeterRegistry(), 1, 1, 50);
+        try {
+            UserOperationException ex = assertThrows(UserOperationException.class, () -> slowExecutor.encode(() -> {
+                await(new CountDownLatch(1));
+                return "never";
+            }));
+            assertEquals(ErrorCode.PASSWORD_HASHING_OVERLOADED, ex.getErrorCode());
+        } finally {
+            slowExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void encode_PropagatesHashingFailure() {
+        assertThrows(IllegalArgumentException.class, () -> executor.encode(() -> {
+            throw new IllegalArgumentException("bad password");
+        }));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.lidzhiev.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sign-in with a hash produced by an outdated encoder must succeed and replace the stored hash
+ * with one produced by the configured encoder.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PasswordRehashTest {
+
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void signIn_RehashesLegacyBcryptHashWithoutPrefix() {
+        String legacyHash = new BCryptPasswordEncoder(4).encode(PASSWORD);
+        User user = saveUser(legacyHash);
+
+        authenticate(user);
+
+        String stored = userRepository.findByUsername(user.getUsername()).orElseThrow().getPassword();
+        assertNotEquals(legacyHash, stored);
+        assertTrue(stored.startsWith("{bcrypt}$2a$10$"), stored);
+        assertTrue(passwordEncoder.matches(PASSWORD, stored));
+        assertFalse(passwordEncoder.upgradeEncoding(stored));
+    }
+
+    @Test
+    void signIn_RehashesBcryptHashWithLowerStrength() {
+        String weakHash = "{bcrypt}" + new BCryptPasswordEncoder(4).encode(PASSWORD);
+        User user = saveUser(weakHash);
+
+        authenticate(user);
+
+        String stored = userRepository.findByUsername(user.getUsername()).orElseThrow().getPassword();
+        assertTrue(stored.startsWith("{bcrypt}$2a$10$"), stored);
+    }
+
+    @Test
+    void signIn_KeepsCurrentHash() {
+        String currentHash = passwordEncoder.encode(PASSWORD);
+        User user = saveUser(currentHash);
+
+        authenticate(user);
+
+        assertEquals(currentHash, userRepository.findByUsername(user.getUsername()).orElseThrow().getPassword());
+    }
+
+    private void authenticate(User user) {
+        assertTrue(authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(user.getUsername(), PASSWORD)).isAuthenticated());
+    }
+
+    private User saveUser(String passwordHash) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setUsername("rehash_" + suffix);
+        user.setEmail("rehash_" + suffix + "@mail.com");
+        user.setPassword(passwordHash);
+        user.setUserRole(UserRole.ROLE_USER);
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Runs the transfer stress test with {@link TransferLockStrategy#ATOMIC} in {@link TransferService}.
+ */
+@SpringBootTest(properties = "app.transfer.lock-strategy=ATOMIC")
+@ActiveProfiles("test")
+class AtomicTransferConcurrencyTest extends TransferConcurrencyTest {
+}
@@ -8,8 +8,10 @@ import ru.lidzhiev.bankcards.dto.CreateUserDto;
 import ru.lidzhiev.bankcards.dto.JwtAuthenticationResponse;
 import ru.lidzhiev.bankcards.dto.SignInRequest;
 import ru.lidzhiev.bankcards.dto.SignUpRequest;
-import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
 import ru.lidzhiev.bankcards.security.JwtService;
+import ru.lidzhiev.bankcards.security.TokenRevocationService;
+import ru.lidzhiev.bankcards.security.UserSnapshot;
 import ru.lidzhiev.bankcards.service.impl.AuthenticationServiceImpl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -22,6 +24,7 @@ class AuthenticationServiceTest {
     private UserService userService;
     private JwtService jwtService;
     private AuthenticationManager authenticationManager;
+    private TokenRevocationService tokenRevocationService;
     private AuthenticationService authenticationService;
 
     @BeforeEach
@@ -29,9 +32,10 @@ class AuthenticationServiceTest {
         userService = mock(UserService.class);
         jwtService = mock(JwtService.class);
         authenticationManager = mock(AuthenticationManager.class);
+        tokenRevocationService = mock(TokenRevocationService.class);
 
         authenticationService = new AuthenticationServiceImpl(
-                userService, jwtService, authenticationManager
+                userService, jwtService, authenticationManager, tokenRevocationService
         );
     }
 
@@ -39,11 +43,10 @@ class AuthenticationServiceTest {
     void signUp_ShouldReturnJwtResponse() {
         // Arrange
         SignUpRequest request = new SignUpRequest("User12", "User@mail.com", "pass123");
-        User user = new User();
-        user.setUsername("User12");
+        UserSnapshot user = new UserSnapshot(null, "User12", "hash", "User@mail.com", UserRole.ROLE_USER);
         when(userService.create(any(CreateUserDto.class))).thenReturn(any());
-        when(userService.findEntityByUsername("User12")).thenReturn(user);
-        when(jwtService.generateToken(user)).thenReturn("mocked-jwt-token");
+        when(userService.findSnapshotByUsername("User12")).thenReturn(user);
+        when(jwtService.generateToken(user, 0L)).thenReturn("mocked-jwt-token");
 
         // Act
         JwtAuthenticationResponse response = authenticationService.signUp(request);
@@ -52,17 +55,18 @@ class AuthenticationServiceTest {
         assertNotNull(response);
         assertEquals("mocked-jwt-token", response.getToken());
         verify(userService).create(any(CreateUserDto.class));
-        verify(jwtService).generateToken(user);
+        verify(jwtService).generateToken(user, 0L);
     }
 
     @Test
     void signIn_ShouldReturnJwtResponse() {
         // Arrange
         SignInRequest request = new SignInRequest("User12", "pass123");
-        User user = new User();
-        user.setUsername("User12");
-        when(userService.findEntityByUsername("User12")).thenReturn(user);
-        when(jwtService.generateToken(user)).thenReturn("mocked-jwt-token");
+        UserSnapshot user = new UserSnapshot(7L, "User12", "hash", "User@mail.com", UserRole.ROLE_USER);
+        when(userService.findSnapshotByUsername("User12")).thenReturn(user);
+        // the tokens of the user have been revoked twice
+        when(tokenRevocationService.getTokenVersion(7L)).thenReturn(2L);
+        when(jwtService.generateToken(user, 2L)).thenReturn("mocked-jwt-token");
 
         // Act
         JwtAuthenticationResponse response = authenticationService.signIn(request);
@@ -71,6 +75,6 @@ class AuthenticationServiceTest {
         assertNotNull(response);
         assertEquals("mocked-jwt-token", response.getToken());
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
-        verify(jwtService).generateToken(user);
+        verify(jwtService).generateToken(user, 2L);
     }
 }
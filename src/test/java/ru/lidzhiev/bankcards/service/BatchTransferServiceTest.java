@@ -0,0 +1,242 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.dto.TransferResultDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.service.impl.BatchTransferServiceImpl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.spy;
+
+@SpringBootTest(properties = "app.transfer.batch.chunk-size=100")
+@ActiveProfiles("test")
+class BatchTransferServiceTest {
+
+    private static final int CARDS = 20;
+    private static final int TRANSFERS = 1_000;
+    private static final Money INITIAL_BALANCE = Money.of("10000.00");
+    private static final Money AMOUNT = Money.of("100.00");
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardBalanceBucketService balanceBuckets;
+
+    @Autowired
+    private TransferIdempotencyService transferIdempotency;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User owner;
+    private List<Card> cards;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        owner = new User();
+        owner.setUsername("batch_" + suffix);
+        owner.setEmail("batch_" + suffix + "@mail.com");
+        owner.setPassword("password");
+        owner.setUserRole(UserRole.ROLE_USER);
+        owner = userRepository.save(owner);
+
+        cards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = new Card();
+            card.setNumber(String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_999_999_999_999_999L)));
+            card.setExpireAt(LocalDate.now().plusYears(1));
+            card.setStatus(CardStatus.ACTIVE.name());
+            card.setBalance(INITIAL_BALANCE);
+            card.setOwner(owner);
+            cards.add(cardRepository.save(card));
+        }
+    }
+
+    @Test
+    void transferBatch_returnsPerItemResults() {
+        Card from = cards.get(0);
+        Card to = cards.get(1);
+        List<TransferRequestDto> requests = List.of(
+                new TransferRequestDto(from.getNumber(), to.getNumber(), AMOUNT),
+                new TransferRequestDto(from.getNumber(), "0000000000000000", AMOUNT),
+                new TransferRequestDto(from.getNumber(), from.getNumber(), AMOUNT),
+                new TransferRequestDto(from.getNumber(), to.getNumber(), INITIAL_BALANCE),
+                new TransferRequestDto(from.getNumber(), to.getNumber(), null)
+        );
+
+        List<TransferResultDto> results = batchTransferService.transferBatch(requests, owner.getUsername());
+
+        assertEquals(TransferResultDto.COMPLETED, results.get(0).getStatus());
+        assertEquals(ErrorCode.CARD_NOT_FOUND.name(), results.get(1).getErrorCode());
+        assertEquals(ErrorCode.SAME_CARD_TRANSFER.name(), results.get(2).getErrorCode());
+        // the first transfer already spent part of the balance
+        assertEquals(ErrorCode.CARD_INSUFFICIENT_FUNDS.name(), results.get(3).getErrorCode());
+        assertEquals(ErrorCode.INVALID_TRANSFER_REQUEST.name(), results.get(4).getErrorCode());
+        assertEquals(INITIAL_BALANCE.minus(AMOUNT), cardRepository.findById(from.getId()).orElseThrow().getBalance());
+        assertEquals(INITIAL_BALANCE.plus(AMOUNT), cardRepository.findById(to.getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void transferBatch_rejectsSenderCardsOfOtherUsers() {
+        User stranger = new User();
+        stranger.setUsername(owner.getUsername() + "_x");
+        stranger.setEmail(owner.getUsername() + "_x@mail.com");
+        stranger.setPassword("password");
+        stranger.setUserRole(UserRole.ROLE_USER);
+        stranger = userRepository.save(stranger);
+        Card strangerCard = new Card();
+        strangerCard.setNumber(String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_999_999_999_999_999L)));
+        strangerCard.setExpireAt(LocalDate.now().plusYears(1));
+        strangerCard.setStatus(CardStatus.ACTIVE.name());
+        strangerCard.setBalance(INITIAL_BALANCE);
+        strangerCard.setOwner(stranger);
+        strangerCard = cardRepository.save(strangerCard);
+
+        List<TransferResultDto> results = batchTransferService.transferBatch(List.of(
+                new TransferRequestDto(strangerCard.getNumber(), cards.get(0).getNumber(), AMOUNT),
+                new TransferRequestDto(cards.get(0).getNumber(), strangerCard.getNumber(), AMOUNT)), owner.getUsername());
+
+        assertEquals(ErrorCode.NOT_OWNER.name(), results.get(0).getErrorCode());
+        assertEquals(TransferResultDto.COMPLETED, results.get(1).getStatus());
+        assertEquals(INITIAL_BALANCE.plus(AMOUNT), cardRepository.findById(strangerCard.getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void transferBatch_failedChunkIsReportedAndOtherChunksCommit() {
+        List<TransferRequestDto> requests = chainTransfers(6);
+        BatchTransferService failingSecondChunk = serviceFailingSecondChunk();
+
+        List<TransferResultDto> results = failingSecondChunk.transferBatch(requests, owner.getUsername());
+
+        assertEquals(6, results.size());
+        assertEquals(List.of(TransferResultDto.COMPLETED, TransferResultDto.COMPLETED, TransferResultDto.FAILED,
+                TransferResultDto.FAILED, TransferResultDto.COMPLETED, TransferResultDto.COMPLETED),
+                results.stream().map(TransferResultDto::getStatus).toList());
+        assertEquals(ErrorCode.BATCH_CHUNK_FAILED.name(), results.get(2).getErrorCode());
+        // 2 -> 3 and 3 -> 4 were rolled back
+        assertEquals(INITIAL_BALANCE.minus(AMOUNT), balance(0));
+        assertEquals(INITIAL_BALANCE.plus(AMOUNT), balance(2));
+        assertEquals(INITIAL_BALANCE, balance(3));
+        assertEquals(INITIAL_BALANCE.minus(AMOUNT), balance(4));
+        assertEquals(INITIAL_BALANCE.plus(AMOUNT), balance(6));
+    }
+
+    @Test
+    void transferBatch_retryWithSameKeyResumesFromFailedChunk() {
+        List<TransferRequestDto> requests = chainTransfers(6);
+        TransferIdempotencyKey key = TransferIdempotencyKey.ofBatch(owner.getUsername(), "batch-1", "transfers/batch", requests);
+
+        List<TransferResultDto> failed = serviceFailingSecondChunk().transferBatch(requests, owner.getUsername(), key);
+
+        assertEquals(List.of(TransferResultDto.COMPLETED, TransferResultDto.COMPLETED, TransferResultDto.FAILED,
+                TransferResultDto.FAILED, TransferResultDto.FAILED, TransferResultDto.FAILED),
+                failed.stream().map(TransferResultDto::getStatus).toList());
+        assertEquals(INITIAL_BALANCE.plus(AMOUNT), balance(2));
+        assertEquals(INITIAL_BALANCE, balance(6));
+
+        List<TransferResultDto> retried = batchTransferService.transferBatch(requests, owner.getUsername(), key);
+        List<TransferResultDto> replayed = batchTransferService.transferBatch(requests, owner.getUsername(), key);
+
+        assertTrue(retried.stream().allMatch(result -> TransferResultDto.COMPLETED.equals(result.getStatus())));
+        assertTrue(replayed.stream().allMatch(result -> TransferResultDto.COMPLETED.equals(result.getStatus())));
+        // every transfer ran exactly once
+        assertEquals(INITIAL_BALANCE.minus(AMOUNT), balance(0));
+        for (int i = 1; i < 6; i++) {
+            assertEquals(INITIAL_BALANCE, balance(i));
+        }
+        assertEquals(INITIAL_BALANCE.plus(AMOUNT), balance(6));
+
+        List<TransferRequestDto> other = chainTransfers(5);
+        CardOperationException e = assertThrows(CardOperationException.class, () -> batchTransferService.transferBatch(other,
+                owner.getUsername(), TransferIdempotencyKey.ofBatch(owner.getUsername(), "batch-1", "transfers/batch", other)));
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_REUSED, e.getErrorCode());
+    }
+
+    @Test
+    void transferBatch_conservesTotalBalance() {
+        List<TransferRequestDto> requests = randomTransfers(new Random(42));
+
+        List<TransferResultDto> results = batchTransferService.transferBatch(requests, owner.getUsername());
+
+        assertEquals(TRANSFERS, results.size());
+        assertTrue(results.stream().allMatch(result -> TransferResultDto.COMPLETED.equals(result.getStatus())));
+        assertEquals(CARDS * INITIAL_BALANCE.getMinorUnits(), cards.stream()
+                .mapToLong(card -> cardRepository.findById(card.getId()).orElseThrow().getBalance().getMinorUnits())
+                .sum());
+    }
+
+    /**
+     * Transfers cards[i] -> cards[i + 1], so every transfer touches its own pair of balances.
+     */
+    private List<TransferRequestDto> chainTransfers(int count) {
+        List<TransferRequestDto> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new TransferRequestDto(cards.get(i).getNumber(), cards.get(i + 1).getNumber(), AMOUNT));
+        }
+        return requests;
+    }
+
+    /**
+     * A batch service with chunks of two transfers whose second chunk fails on writing the transaction journal.
+     */
+    private BatchTransferService serviceFailingSecondChunk() {
+        JdbcTemplate failingJdbcTemplate = spy(jdbcTemplate);
+        doCallRealMethod()
+                .doThrow(new DataAccessResourceFailureException("connection lost"))
+                .doCallRealMethod()
+                .when(failingJdbcTemplate).batchUpdate(startsWith("INSERT INTO transactions"), anyList());
+        return new BatchTransferServiceImpl(cardRepository, userRepository, balanceBuckets, transferIdempotency,
+                failingJdbcTemplate, transactionManager, 10_000, 2);
+    }
+
+    private Money balance(int card) {
+        return cardRepository.findById(cards.get(card).getId()).orElseThrow().getBalance();
+    }
+
+    private List<TransferRequestDto> randomTransfers(Random random) {
+        List<TransferRequestDto> requests = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            int from = random.nextInt(CARDS);
+            int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+            requests.add(new TransferRequestDto(cards.get(from).getNumber(), cards.get(to).getNumber(), Money.ofMinor(1 + random.nextInt(1_000))));
+        }
+        return requests;
+    }
+}
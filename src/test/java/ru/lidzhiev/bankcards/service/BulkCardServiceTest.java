@@ -0,0 +1,148 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import ru.lidzhiev.bankcards.dto.CardIssueResultDto;
+import ru.lidzhiev.bankcards.dto.CreateCardDto;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+
+@SpringBootTest(properties = {"app.cards.bulk.chunk-size=700", "app.cards.bulk.max-size=20000"})
+@ActiveProfiles("test")
+@WithMockUser(roles = "ADMIN")
+class BulkCardServiceTest {
+
+    private static final int CARDS = 10_000;
+
+    @Autowired
+    private BulkCardService bulkCardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoSpyBean
+    private CardNumberAllocator cardNumberAllocator;
+
+    private List<String> owners;
+
+    @BeforeEach
+    void setUp() {
+        owners = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            owners.add(createUser().getUsername());
+        }
+    }
+
+    @Test
+    void issueCards_issuesAllValidCardsWithUniqueNumbers() {
+        String expireAt = LocalDate.now().plusYears(4).toString();
+        List<CreateCardDto> requests = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            requests.add(new CreateCardDto(expireAt, Money.of("10.00"), owners.get(i % owners.size())));
+        }
+        requests.set(1, new CreateCardDto(expireAt, Money.ZERO, "no_such_user"));
+        requests.set(2, new CreateCardDto(LocalDate.now().minusDays(1).toString(), Money.ZERO, owners.get(0)));
+        requests.set(3, new CreateCardDto("2030-13-01", Money.ZERO, owners.get(0)));
+        requests.set(4, new CreateCardDto(expireAt, Money.of("-1.00"), owners.get(0)));
+
+        List<CardIssueResultDto> results = bulkCardService.issueCards(requests);
+
+        assertEquals(CARDS, results.size());
+        assertEquals(ErrorCode.USER_NOT_FOUND.name(), results.get(1).getErrorCode());
+        assertEquals(ErrorCode.CARD_EXPIRED.name(), results.get(2).getErrorCode());
+        assertEquals(ErrorCode.INVALID_CARD_REQUEST.name(), results.get(3).getErrorCode());
+        assertEquals(ErrorCode.INVALID_CARD_REQUEST.name(), results.get(4).getErrorCode());
+        for (int i = 0; i < CARDS; i++) {
+            assertEquals(i, results.get(i).getIndex());
+        }
+        List<Long> ids = results.stream().map(CardIssueResultDto::getCardId).filter(id -> id != null).toList();
+        assertEquals(CARDS - 4, ids.size());
+        assertEquals(CARDS - 4, ids.stream().distinct().count());
+        assertEquals(CARDS - 4, jdbcTemplate.queryForObject(
+                "select count(distinct c.number) from cards c join users u on u.id = c.user_id where u.username in (?, ?, ?, ?, ?)",
+                Integer.class, owners.toArray()));
+    }
+
+    @Test
+    void issueCards_fromCsv_skipsHeaderAndReportsUnparsableLines() throws Exception {
+        String csv = "expireAt,balance,username\n"
+                + "2030-01-01,100.50," + owners.get(0) + "\n"
+                + "not,a,card,line\n"
+                + "2030-01-01,0.001," + owners.get(1) + "\n"
+                + "2030-01-01,0," + owners.get(1) + "\n";
+
+        List<CardIssueResultDto> results = bulkCardService.issueCards(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of(CardIssueResultDto.ISSUED, CardIssueResultDto.FAILED, CardIssueResultDto.FAILED, CardIssueResultDto.ISSUED),
+                results.stream().map(CardIssueResultDto::getStatus).toList());
+        assertEquals(ErrorCode.INVALID_CARD_REQUEST.name(), results.get(1).getErrorCode());
+        assertEquals(0, new BigDecimal("100.50").compareTo(jdbcTemplate.queryForObject(
+                "select balance from cards where id = ?", BigDecimal.class, results.get(0).getCardId())));
+    }
+
+    @Test
+    void issueCards_numberCollision_failsOnlyItsChunk() {
+        String expireAt = LocalDate.now().plusYears(4).toString();
+        Long existing = bulkCardService.issueCards(List.of(new CreateCardDto(expireAt, Money.ZERO, owners.get(0)))).get(0).getCardId();
+        String number = jdbcTemplate.queryForObject("select number from cards where id = ?", String.class, existing);
+        // the first number of the first chunk repeats the card issued above
+        doReturn(number).doCallRealMethod().when(cardNumberAllocator).nextNumber();
+        List<CreateCardDto> requests = new ArrayList<>();
+        for (int i = 0; i < 701; i++) {
+            requests.add(new CreateCardDto(expireAt, Money.ZERO, owners.get(1)));
+        }
+
+        List<CardIssueResultDto> results = bulkCardService.issueCards(requests);
+
+        for (int i = 0; i < 700; i++) {
+            assertEquals(ErrorCode.CARD_NUMBER_COLLISION.name(), results.get(i).getErrorCode());
+        }
+        assertEquals(CardIssueResultDto.ISSUED, results.get(700).getStatus());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from cards c join users u on u.id = c.user_id where u.username = ?", Integer.class, owners.get(1)));
+    }
+
+    @Test
+    void issueCards_overMaxSize_isRejected() {
+        List<CreateCardDto> requests = new ArrayList<>();
+        for (int i = 0; i < 20_001; i++) {
+            requests.add(null);
+        }
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> bulkCardService.issueCards(requests));
+        assertEquals(ErrorCode.BATCH_TOO_LARGE, ex.getErrorCode());
+    }
+
+    private User createUser() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setUsername("bulk_" + suffix);
+        user.setEmail("bulk_" + suffix + "@mail.com");
+        user.setPassword("password");
+        user.setUserRole(UserRole.ROLE_USER);
+        return userRepository.save(user);
+    }
+}
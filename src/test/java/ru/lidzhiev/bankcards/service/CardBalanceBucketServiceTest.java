@@ -0,0 +1,213 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hot cards with balance buckets: credits land in the buckets, debits consolidate them,
+ * and the balance seen through the API is always the row balance plus the buckets.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CardBalanceBucketServiceTest {
+
+    private static final int BUCKETS = 8;
+    private static final int PAYERS = 8;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 25;
+    private static final Money INITIAL_BALANCE = Money.of("1000.00");
+
+    @Autowired
+    private CardBalanceBucketService balanceBuckets;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private Card merchant;
+    private List<Card> payers;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        owner = new User();
+        owner.setUsername("buckets_" + suffix);
+        owner.setEmail("buckets_" + suffix + "@mail.com");
+        owner.setPassword("password");
+        owner.setUserRole(UserRole.ROLE_USER);
+        owner = userRepository.save(owner);
+
+        merchant = cardRepository.save(card(Money.ZERO));
+        payers = new ArrayList<>();
+        for (int i = 0; i < PAYERS; i++) {
+            payers.add(cardRepository.save(card(INITIAL_BALANCE)));
+        }
+        balanceBuckets.resize(merchant.getId(), BUCKETS);
+    }
+
+    @Test
+    void transfer_creditsBucketsAndKeepsCardRow() {
+        transferService.transfer(new TransferRequestDto(payers.get(0).getNumber(), merchant.getNumber(), Money.of("30.00")));
+        transferService.transfer(new TransferRequestDto(payers.get(1).getNumber(), merchant.getNumber(), Money.of("20.00")));
+
+        Card reloaded = cardRepository.findById(merchant.getId()).orElseThrow();
+        assertEquals(Money.ZERO, reloaded.getBalance());
+        assertEquals(Money.of("50.00"), reloaded.getTotalBalance());
+        assertEquals(Money.of("50.00"), cardService.getById(merchant.getId()).getBalance());
+        assertEquals(Money.of("970.00"), cardRepository.findById(payers.get(0).getId()).orElseThrow().getTotalBalance());
+    }
+
+    @Test
+    void transfer_fromHotCard_consolidatesBuckets() {
+        transferService.transfer(new TransferRequestDto(payers.get(0).getNumber(), merchant.getNumber(), Money.of("30.00")));
+        transferService.transfer(new TransferRequestDto(payers.get(1).getNumber(), merchant.getNumber(), Money.of("20.00")));
+
+        transferService.transfer(new TransferRequestDto(merchant.getNumber(), payers.get(2).getNumber(), Money.of("45.00")));
+
+        Card reloaded = cardRepository.findById(merchant.getId()).orElseThrow();
+        assertEquals(Money.of("5.00"), reloaded.getBalance());
+        assertEquals(Money.of("5.00"), reloaded.getTotalBalance());
+        assertEquals(Money.of("1045.00"), cardRepository.findById(payers.get(2).getId()).orElseThrow().getBalance());
+
+        CardOperationException e = assertThrows(CardOperationException.class, () -> transferService.transfer(
+                new TransferRequestDto(merchant.getNumber(), payers.get(2).getNumber(), Money.of("10.00"))));
+        assertEquals(ErrorCode.CARD_INSUFFICIENT_FUNDS, e.getErrorCode());
+    }
+
+    @Test
+    void resize_keepsBalance() {
+        transferService.transfer(new TransferRequestDto(payers.get(0).getNumber(), merchant.getNumber(), Money.of("30.00")));
+
+        balanceBuckets.resize(merchant.getId(), 2);
+        assertEquals(Money.of("30.00"), cardRepository.findById(merchant.getId()).orElseThrow().getTotalBalance());
+        assertEquals(2, bucketRows());
+
+        transferService.transfer(new TransferRequestDto(payers.get(0).getNumber(), merchant.getNumber(), Money.of("10.00")));
+        balanceBuckets.resize(merchant.getId(), 0);
+
+        Card reloaded = cardRepository.findById(merchant.getId()).orElseThrow();
+        assertEquals(0, reloaded.getBalanceBuckets());
+        assertEquals(Money.of("40.00"), reloaded.getBalance());
+        assertEquals(Money.of("40.00"), reloaded.getTotalBalance());
+        assertEquals(0, bucketRows());
+    }
+
+    @Test
+    void resize_rejectsInvalidCount() {
+        CardOperationException e = assertThrows(CardOperationException.class, () -> balanceBuckets.resize(merchant.getId(), -1));
+        assertEquals(ErrorCode.INVALID_BALANCE_BUCKETS, e.getErrorCode());
+        e = assertThrows(CardOperationException.class, () -> balanceBuckets.resize(merchant.getId(), 100_000));
+        assertEquals(ErrorCode.INVALID_BALANCE_BUCKETS, e.getErrorCode());
+    }
+
+    @Test
+    void concurrentCreditsAndDebits_conserveTotalBalance() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    Card payer = payers.get(random.nextInt(PAYERS));
+                    // mostly credits of the hot card, every fourth transfer pays out of it
+                    boolean credit = random.nextInt(4) != 0;
+                    TransferRequestDto dto = credit
+                            ? new TransferRequestDto(payer.getNumber(), merchant.getNumber(), Money.ofMinor(100L + random.nextInt(5_000)))
+                            : new TransferRequestDto(merchant.getNumber(), payer.getNumber(), Money.ofMinor(100L + random.nextInt(10_000)));
+                    try {
+                        if (random.nextBoolean()) {
+                            cardService.transfer(dto, owner.getUsername());
+                        } else {
+                            transferService.transfer(dto);
+                        }
+                        completed.incrementAndGet();
+                    } catch (CardOperationException e) {
+                        assertTrue(e.getErrorCode() == ErrorCode.CARD_INSUFFICIENT_FUNDS
+                                || e.getErrorCode() == ErrorCode.CARD_CONCURRENT_UPDATE, e.getErrorCode().name());
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Money total = Money.ZERO;
+        for (Card card : cards()) {
+            Card reloaded = cardRepository.findById(card.getId()).orElseThrow();
+            assertFalse(reloaded.getBalance().isNegative(), "balance must never go negative");
+            total = total.plus(reloaded.getTotalBalance());
+        }
+        assertEquals(Money.ofMinor(PAYERS * INITIAL_BALANCE.getMinorUnits()), total);
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, completed.get() + rejected.get());
+        assertTrue(completed.get() > 0);
+    }
+
+    private List<Card> cards() {
+        List<Card> cards = new ArrayList<>(payers);
+        cards.add(merchant);
+        return cards;
+    }
+
+    private long bucketRows() {
+        return jdbcTemplate.queryForObject("select count(*) from card_balance_buckets where card_id = ?", Long.class, merchant.getId());
+    }
+
+    private Card card(Money balance) {
+        Card card = new Card();
+        card.setNumber(String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_999_999_999_999_999L)));
+        card.setExpireAt(LocalDate.now().plusYears(1));
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setBalance(balance);
+        card.setOwner(owner);
+        return card;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.lidzhiev.bankcards.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.lidzhiev.bankcards.config.MoneyJsonComponent;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.service.impl.CardExportServiceImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class CardExportServiceTest {
+
+    private CardRepository cardRepository;
+    private EntityManager entityManager;
+    private CardExportService cardExportService;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository = mock(CardRepository.class);
+        entityManager = mock(EntityManager.class);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new SimpleModule()
+                .addSerializer(Money.class, new MoneyJsonComponent.Serializer()));
+        cardExportService = new CardExportServiceImpl(cardRepository, entityManager, objectMapper);
+
+        owner = new User();
+        owner.setId(1L);
+        owner.setUsername("Smith, \"J\"");
+    }
+
+    @Test
+    void exportCards_writesOneJsonObjectPerLine_andDetachesCards() throws Exception {
+        Card first = card(1L, "1111222233334444", "10.50");
+        Card second = card(2L, "5555666677778888", "0.00");
+        when(cardRepository.streamAll()).thenReturn(Stream.of(first, second));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardExportService.exportCards(CardExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"id\":1,\"maskedNumber\":\"**** **** **** 4444\",\"status\":\"ACTIVE\",\"expireAt\":\"2030-01-01\","
+                + "\"balance\":10.50,\"ownerUsername\":\"Smith, \\\"J\\\"\"}", lines[0]);
+        verify(entityManager).detach(first);
+        verify(entityManager).detach(second);
+        verify(entityManager, times(2)).detach(owner);
+    }
+
+    @Test
+    void exportCards_writesCsvWithHeaderAndEscaping() throws Exception {
+        when(cardRepository.streamAll()).thenReturn(Stream.of(card(1L, "1111222233334444", "10.50")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardExportService.exportCards(CardExportFormat.CSV, out);
+
+        assertEquals("id,maskedNumber,status,expireAt,balance,ownerUsername\n"
+                + "1,**** **** **** 4444,ACTIVE,2030-01-01,10.50,\"Smith, \"\"J\"\"\"\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    private Card card(Long id, String number, String balance) {
+        Card card = new Card();
+        card.setId(id);
+        card.setNumber(number);
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setExpireAt(LocalDate.of(2030, 1, 1));
+        card.setBalance(Money.of(balance));
+        card.setOwner(owner);
+        return card;
+    }
+}
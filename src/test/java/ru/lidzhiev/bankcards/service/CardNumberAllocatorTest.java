@@ -0,0 +1,132 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.junit.jupiter.api.Test;
+import ru.lidzhiev.bankcards.service.impl.CardNumberAllocatorImpl;
+import ru.lidzhiev.bankcards.util.FeistelPermutation;
+import ru.lidzhiev.bankcards.util.LuhnUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardNumberAllocatorTest {
+
+    private static final String BIN = "220070";
+    private static final String KEY = "test-key";
+    private static final int BLOCK_SIZE = 1000;
+
+    @Test
+    void nextNumber_tenMillionNumbersAreUniqueLuhnValidAndCarryTheBin() {
+        int count = 10_000_000;
+        CardNumberAllocator allocator = new CardNumberAllocatorImpl(inMemorySequence(), BIN, KEY, BLOCK_SIZE);
+        long[] accounts = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            String number = allocator.nextNumber();
+            assertEquals(16, number.length());
+            assertTrue(number.startsWith(BIN), number);
+            assertTrue(LuhnUtil.isValid(number), number);
+            accounts[i] = Long.parseLong(number, BIN.length(), 15, 10);
+        }
+
+        Arrays.sort(accounts);
+        for (int i = 1; i < count; i++) {
+            assertNotEquals(accounts[i - 1], accounts[i], "duplicate account number");
+        }
+    }
+
+    @Test
+    void nextNumber_isUniqueAcrossThreads() throws Exception {
+        CardNumberAllocator allocator = new CardNumberAllocatorImpl(inMemorySequence(), BIN, KEY, 64);
+        ConcurrentHashMap<String, Boolean> numbers = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        assertNull(numbers.put(allocator.nextNumber(), Boolean.TRUE));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(400_000, numbers.size());
+    }
+
+    @Test
+    void nextNumber_reservesOneBlockPerBlockSizeNumbers() {
+        AtomicInteger reservations = new AtomicInteger();
+        LongSupplier sequence = inMemorySequence();
+        CardNumberAllocator allocator = new CardNumberAllocatorImpl(() -> {
+            reservations.incrementAndGet();
+            return sequence.getAsLong();
+        }, BIN, KEY, BLOCK_SIZE);
+
+        for (int i = 0; i < 2_500; i++) {
+            allocator.nextNumber();
+        }
+
+        assertEquals(3, reservations.get());
+    }
+
+    @Test
+    void nextNumber_failsWhenBinIsExhausted() {
+        // an 8-digit BIN leaves 7 account digits
+        CardNumberAllocator allocator = new CardNumberAllocatorImpl(() -> 10_000_000L, "22007012", KEY, BLOCK_SIZE);
+
+        assertThrows(IllegalStateException.class, allocator::nextNumber);
+    }
+
+    @Test
+    void constructor_rejectsNonPositiveBlockSize() {
+        assertThrows(IllegalArgumentException.class, () -> new CardNumberAllocatorImpl(inMemorySequence(), BIN, KEY, 0));
+    }
+
+    @Test
+    void permutation_isBijectiveAndKeyed() {
+        int domain = 100_000;
+        FeistelPermutation permutation = new FeistelPermutation(domain, KEY);
+        BitSet seen = new BitSet(domain);
+        int fixedPoints = 0;
+        for (int i = 0; i < domain; i++) {
+            long image = permutation.permute(i);
+            assertTrue(image >= 0 && image < domain);
+            assertFalse(seen.get((int) image));
+            seen.set((int) image);
+            if (image == i) {
+                fixedPoints++;
+            }
+        }
+        assertEquals(domain, seen.cardinality());
+        assertTrue(fixedPoints < 10);
+        assertNotEquals(permutation.permute(1), new FeistelPermutation(domain, "other-key").permute(1));
+    }
+
+    @Test
+    void luhn_matchesKnownNumbers() {
+        assertTrue(LuhnUtil.isValid("79927398713"));
+        assertTrue(LuhnUtil.isValid("4561261212345467"));
+        assertFalse(LuhnUtil.isValid("4561261212345464"));
+        assertFalse(LuhnUtil.isValid("45612612123454a7"));
+    }
+
+    private static LongSupplier inMemorySequence() {
+        AtomicLong next = new AtomicLong();
+        return () -> next.getAndAdd(BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,131 @@
+package ru.lidzhiev.bankcards.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Card listings must issue a fixed number of SQL statements, independent of how many cards
+ * and distinct owners are returned (no lazy owner loading per card); bulk inserts must be batched.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class CardQueryCountTest {
+
+    private static final int OWNERS = 10;
+    private static final int CARDS_PER_OWNER = 6;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private String username;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (int i = 0; i < OWNERS; i++) {
+            User owner = createUser();
+            if (username == null) {
+                username = owner.getUsername();
+            }
+            for (int j = 0; j < CARDS_PER_OWNER; j++) {
+                cardRepository.save(newCard(owner));
+            }
+        }
+    }
+
+    @Test
+    void getByUsername_paged_usesSameQueryCountForAnyPageSize() {
+        // page query + count query
+        assertEquals(2, statements(() -> cardService.getByUsername(username, PageRequest.of(0, 2))));
+        assertEquals(2, statements(() -> cardService.getByUsername(username, PageRequest.of(0, 5))));
+    }
+
+    @Test
+    void getByUsername_cursor_usesSameQueryCountForAnySliceSize() {
+        // owner id lookup + slice query
+        assertEquals(2, statements(() -> cardService.getByUsername(username, null, 1)));
+        assertEquals(2, statements(() -> cardService.getByUsername(username, null, 100)));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminListings_useOneQueryForAllOwners() {
+        assertEquals(1, statements(() -> cardService.getAllCards()));
+        assertEquals(1, statements(() -> cardService.getAllCards(null, 3)));
+        assertEquals(1, statements(() -> cardService.getAllCards(null, 100)));
+    }
+
+    @Test
+    void saveAll_sendsBatchedInsertsWithPooledIds() {
+        User owner = createUser();
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            cards.add(newCard(owner));
+        }
+
+        // at most 3 sequence calls (blocks of 50 ids) + 3 insert batches (jdbc.batch_size 50) instead of 120 inserts
+        long statements = statements(() -> cardRepository.saveAll(cards));
+        assertTrue(statements <= 6, () -> statements + " statements");
+        assertEquals(120, cards.stream().map(Card::getId).distinct().count());
+    }
+
+    private long statements(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Card newCard(User owner) {
+        Card card = new Card();
+        card.setNumber(String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_999_999_999_999_999L)));
+        card.setExpireAt(LocalDate.now().plusYears(1));
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setBalance(Money.of("10.00"));
+        card.setOwner(owner);
+        return card;
+    }
+
+    private User createUser() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setUsername("owner_" + suffix);
+        user.setEmail("owner_" + suffix + "@mail.com");
+        user.setPassword("password");
+        user.setUserRole(UserRole.ROLE_USER);
+        return userRepository.save(user);
+    }
+}
@@ -1,25 +1,42 @@
 package ru.lidzhiev.bankcards.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 import ru.lidzhiev.bankcards.dto.CardDto;
+import ru.lidzhiev.bankcards.dto.CardSliceDto;
 import ru.lidzhiev.bankcards.dto.CreateCardDto;
 import ru.lidzhiev.bankcards.dto.TransferRequestDto;
 import ru.lidzhiev.bankcards.entity.Card;
 import ru.lidzhiev.bankcards.entity.User;
 import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.exception.ResourceNotFoundException;
 import ru.lidzhiev.bankcards.repository.CardRepository;
 import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.repository.projection.CardNumberId;
+import ru.lidzhiev.bankcards.repository.projection.CardView;
 import ru.lidzhiev.bankcards.service.impl.CardServiceImpl;
+import ru.lidzhiev.bankcards.util.CursorUtil;
+import ru.lidzhiev.bankcards.entity.Money;
 
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class CardServiceTest {
@@ -30,6 +47,21 @@ class CardServiceTest {
     @Mock
     UserRepository userRepository;
 
+    @Mock
+    CardNumberAllocator cardNumberAllocator;
+
+    @Mock
+    CardBalanceBucketService balanceBuckets;
+
+    @Mock
+    TransferIdempotencyService transferIdempotency;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Spy
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     CardServiceImpl cardService;
 
@@ -46,7 +78,7 @@ class CardServiceTest {
         card = new Card();
         card.setId(1L);
         card.setNumber("1111222233334444");
-        card.setBalance(1000.0);
+        card.setBalance(Money.of("1000.00"));
         card.setExpireAt(LocalDate.now().plusYears(1));
         card.setStatus(CardStatus.ACTIVE.name());
         card.setOwner(user);
@@ -54,7 +86,7 @@ class CardServiceTest {
 
     @Test
     void create_shouldSaveCard() {
-        CreateCardDto dto = new CreateCardDto(LocalDate.now().plusYears(1).toString(), 500.0, "User12");
+        CreateCardDto dto = new CreateCardDto(LocalDate.now().plusYears(1).toString(), Money.of("500.00"), "User12");
         when(userRepository.findByUsername("User12")).thenReturn(Optional.of(user));
         when(cardRepository.save(any(Card.class))).thenAnswer(inv -> {
             Card saved = inv.getArgument(0, Card.class);
@@ -63,32 +95,123 @@ class CardServiceTest {
         });
         CardDto result = cardService.create(dto, "User12");
         assertEquals("User12", result.getOwnerUsername());
-        assertEquals(500.0, result.getBalance());
+        assertEquals(Money.of("500.00"), result.getBalance());
     }
 
     @Test
     void getById_shouldReturnCardDto() {
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+        when(cardRepository.findViewById(1L)).thenReturn(Optional.of(cardView(1L, "1111222233334444")));
         CardDto result = cardService.getById(1L);
         assertEquals("User12", result.getOwnerUsername());
+        assertEquals(Money.of("10.00"), result.getBalance());
+        verify(cardRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void getById_notFound_throwsCardNotFound() {
+        when(cardRepository.findViewById(1L)).thenReturn(Optional.empty());
+        ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class, () -> cardService.getById(1L));
+        assertEquals(ErrorCode.CARD_NOT_FOUND, ex.getErrorCode());
     }
 
     @Test
     void transfer_shouldTransferIfValid() {
         Card cardFrom = new Card(); cardFrom.setId(1L); cardFrom.setNumber("1234"); cardFrom.setOwner(user);
-        cardFrom.setBalance(500.0); cardFrom.setStatus("ACTIVE");
-        Card cardTo = new Card(); cardFrom.setId(2L); cardTo.setNumber("1233"); cardTo.setOwner(user);
-        cardTo.setBalance(0.0); cardTo.setStatus("ACTIVE");
+        cardFrom.setBalance(Money.of("500.00")); cardFrom.setStatus("ACTIVE");
+        Card cardTo = new Card(); cardTo.setId(2L); cardTo.setNumber("1233"); cardTo.setOwner(user);
+        cardTo.setBalance(Money.of("0.00")); cardTo.setStatus("ACTIVE");
 
-        when(cardRepository.findByNumber("1234")).thenReturn(Optional.of(cardFrom));
-        when(cardRepository.findByNumber("1233")).thenReturn(Optional.of(cardTo));
+        when(cardRepository.findIdsByNumberIn(List.of("1234", "1233"))).thenReturn(List.of(cardId(1L, "1234"), cardId(2L, "1233")));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(cardFrom, cardTo));
 
-        TransferRequestDto dto = new TransferRequestDto("1234", "1233", 100.0);
+        TransferRequestDto dto = new TransferRequestDto("1234", "1233", Money.of("100.00"));
 
         cardService.transfer(dto, "User12");
-        assertEquals(400.0, cardFrom.getBalance());
-        assertEquals(100.0, cardTo.getBalance());
+        assertEquals(Money.of("400.00"), cardFrom.getBalance());
+        assertEquals(Money.of("100.00"), cardTo.getBalance());
         verify(cardRepository, times(1)).save(cardFrom);
         verify(cardRepository, times(1)).save(cardTo);
+        verify(transactionManager).commit(any());
+        assertEquals(1.0, outcome("SUCCESS"));
+    }
+
+    @Test
+    void transfer_commitFailure_isNotCountedAsSuccess() {
+        Card cardFrom = new Card(); cardFrom.setId(1L); cardFrom.setNumber("1234"); cardFrom.setOwner(user);
+        cardFrom.setBalance(Money.of("500.00")); cardFrom.setStatus("ACTIVE");
+        Card cardTo = new Card(); cardTo.setId(2L); cardTo.setNumber("1233"); cardTo.setOwner(user);
+        cardTo.setBalance(Money.of("0.00")); cardTo.setStatus("ACTIVE");
+
+        when(cardRepository.findIdsByNumberIn(List.of("1234", "1233"))).thenReturn(List.of(cardId(1L, "1234"), cardId(2L, "1233")));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L, 2L))).thenReturn(List.of(cardFrom, cardTo));
+        // the version check of the flush at commit fails
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L)).when(transactionManager).commit(any());
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> cardService.transfer(new TransferRequestDto("1234", "1233", Money.of("100.00")), "User12"));
+        assertEquals(0.0, outcome("SUCCESS"));
+        assertEquals(1.0, outcome("ERROR"));
+    }
+
+    @Test
+    void transfer_duplicateCardNumber_throwsAmbiguousCardNumber() {
+        when(cardRepository.findIdsByNumberIn(List.of("1234", "1233")))
+                .thenReturn(List.of(cardId(1L, "1234"), cardId(2L, "1233"), cardId(3L, "1233")));
+
+        CardOperationException ex = assertThrows(CardOperationException.class,
+                () -> cardService.transfer(new TransferRequestDto("1234", "1233", Money.of("100.00")), "User12"));
+        assertEquals(ErrorCode.AMBIGUOUS_CARD_NUMBER, ex.getErrorCode());
+        verify(cardRepository, never()).findAllByIdInForUpdate(anyCollection());
+    }
+
+    @Test
+    void getByUsername_withCursor_returnsSliceAndNextCursor() {
+        CardView first = cardView(1L, "1111222233334444");
+        CardView second = cardView(2L, "5555666677778888");
+        when(userRepository.findByUsername("User12")).thenReturn(Optional.of(user));
+        when(cardRepository.findViewsByOwnerIdAfter(1L, 0L, Limit.of(2))).thenReturn(List.of(first, second));
+        when(cardRepository.findViewsByOwnerIdAfter(1L, 1L, Limit.of(2))).thenReturn(List.of(second));
+
+        CardSliceDto firstSlice = cardService.getByUsername("User12", null, 1);
+        assertEquals(1, firstSlice.getContent().size());
+        assertEquals(1L, firstSlice.getContent().get(0).getId());
+        assertEquals("User12", firstSlice.getContent().get(0).getOwnerUsername());
+        assertTrue(firstSlice.isHasNext());
+
+        CardSliceDto last = cardService.getByUsername("User12", firstSlice.getNextCursor(), 1);
+        assertEquals(2L, last.getContent().get(0).getId());
+        assertFalse(last.isHasNext());
+        assertNull(last.getNextCursor());
+        verify(cardRepository, never()).findViewsByOwnerUsername(anyString(), any());
+    }
+
+    @Test
+    void getByUsername_withMalformedCursor_throwsInvalidCursor() {
+        CardOperationException ex = assertThrows(CardOperationException.class,
+                () -> cardService.getByUsername("User12", "not a cursor", 5));
+        assertEquals(ErrorCode.INVALID_CURSOR, ex.getErrorCode());
+        assertEquals(42L, CursorUtil.decode(CursorUtil.encode(42L)));
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("bank.transfer.outcome").tag("operation", "card_transfer").tag("outcome", outcome)
+                .counter().count();
+    }
+
+    private CardNumberId cardId(Long id, String number) {
+        return new SpelAwareProxyProjectionFactory().createProjection(CardNumberId.class, Map.of(
+                "id", id,
+                "number", number,
+                "balanceBuckets", 0));
+    }
+
+    private CardView cardView(Long id, String number) {
+        return new SpelAwareProxyProjectionFactory().createProjection(CardView.class, Map.of(
+                "id", id,
+                "number", number,
+                "status", CardStatus.ACTIVE.name(),
+                "expireAt", LocalDate.now().plusYears(1),
+                "balance", Money.of("10.00"),
+                "ownerUsername", user.getUsername()));
     }
 }
@@ -0,0 +1,17 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Runs the transfer stress test with {@link TransferLockStrategy#OPTIMISTIC} in {@link TransferService}
+ * while {@link CardService} keeps taking row locks, so both strategies contend on the same cards.
+ */
+@SpringBootTest(properties = {
+        "app.transfer.lock-strategy=OPTIMISTIC",
+        "app.transfer.optimistic.max-retries=50",
+        "app.transfer.optimistic.backoff-millis=1"
+})
+@ActiveProfiles("test")
+class OptimisticTransferConcurrencyTest extends TransferConcurrencyTest {
+}
@@ -0,0 +1,168 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.lidzhiev.bankcards.dto.TransactionDto;
+import ru.lidzhiev.bankcards.dto.TransactionSliceDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.Transaction;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.TransactionRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Walks the transaction history with keyset cursors against the migrated schema.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionHistoryServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Autowired
+    private TransactionHistoryService transactionHistoryService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User owner;
+    private Card first;
+    private Card second;
+    private Card foreign;
+
+    @BeforeEach
+    void setUp() {
+        owner = saveUser();
+        User stranger = saveUser();
+        first = saveCard(owner);
+        second = saveCard(owner);
+        foreign = saveCard(stranger);
+
+        // 0..9: first -> foreign one minute apart, 10..11: first -> second at the same instant, 12: foreign -> second
+        for (int i = 0; i < 10; i++) {
+            saveTransaction(first, foreign, START.plusMinutes(i));
+        }
+        saveTransaction(first, second, START.plusMinutes(10));
+        saveTransaction(first, second, START.plusMinutes(10));
+        saveTransaction(foreign, second, START.plusMinutes(11));
+    }
+
+    @Test
+    void getCardHistory_walksAllPagesNewestFirst() {
+        List<TransactionDto> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransactionSliceDto slice = transactionHistoryService.getCardHistory(
+                    first.getId(), owner.getUsername(), null, null, cursor, 5);
+            seen.addAll(slice.getContent());
+            cursor = slice.getNextCursor();
+            assertEquals(slice.isHasNext(), cursor != null);
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(12, seen.size());
+        assertEquals(12, seen.stream().map(TransactionDto::getId).distinct().count());
+        for (int i = 1; i < seen.size(); i++) {
+            TransactionDto previous = seen.get(i - 1);
+            TransactionDto current = seen.get(i);
+            assertTrue(previous.getCreatedAt().isAfter(current.getCreatedAt())
+                    || previous.getCreatedAt().equals(current.getCreatedAt()) && previous.getId() > current.getId());
+        }
+    }
+
+    @Test
+    void getCardHistory_appliesTimeRange() {
+        TransactionSliceDto slice = transactionHistoryService.getCardHistory(first.getId(), owner.getUsername(),
+                START.plusMinutes(2), START.plusMinutes(5), null, 20);
+
+        assertFalse(slice.isHasNext());
+        assertEquals(List.of(START.plusMinutes(4), START.plusMinutes(3), START.plusMinutes(2)),
+                slice.getContent().stream().map(TransactionDto::getCreatedAt).toList());
+    }
+
+    @Test
+    void getUserHistory_countsTransfersBetweenOwnCardsOnce() {
+        TransactionSliceDto slice = transactionHistoryService.getUserHistory(owner.getUsername(), null, null, null, 100);
+
+        assertEquals(13, slice.getContent().size());
+        assertEquals(13, slice.getContent().stream().map(TransactionDto::getId).distinct().count());
+        assertEquals(foreign.getId(), slice.getContent().get(0).getFromCardId());
+    }
+
+    @Test
+    void getCardHistory_ofForeignCard_throwsNotOwner() {
+        CardOperationException ex = assertThrows(CardOperationException.class, () -> transactionHistoryService
+                .getCardHistory(foreign.getId(), owner.getUsername(), null, null, null, 5));
+        assertEquals(ErrorCode.NOT_OWNER, ex.getErrorCode());
+    }
+
+    @Test
+    void exportCardHistory_writesOneLinePerTransactionOldestFirst() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        transactionHistoryService.exportCardHistory(second.getId(), owner.getUsername(), null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("\"fromCardId\":" + first.getId()));
+        assertTrue(lines[2].contains("\"fromCardId\":" + foreign.getId()));
+    }
+
+    private User saveUser() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setUsername("history_" + suffix);
+        user.setEmail("history_" + suffix + "@mail.com");
+        user.setPassword("password");
+        user.setUserRole(UserRole.ROLE_USER);
+        return userRepository.save(user);
+    }
+
+    private Card saveCard(User cardOwner) {
+        Card card = new Card();
+        card.setNumber(String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_999_999_999_999_999L)));
+        card.setExpireAt(LocalDate.now().plusYears(1));
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setBalance(Money.of("1000.00"));
+        card.setOwner(cardOwner);
+        return cardRepository.save(card);
+    }
+
+    private void saveTransaction(Card from, Card to, LocalDateTime createdAt) {
+        transactionRepository.save(Transaction.builder()
+                .fromCard(from)
+                .toCard(to)
+                .amount(Money.of("1.00"))
+                .createdAt(createdAt)
+                .status("COMPLETED")
+                .build());
+    }
+}
@@ -0,0 +1,168 @@
+package ru.lidzhiev.bankcards.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.Transaction;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.service.impl.TransactionOutboxServiceImpl;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Transfers in OUTBOX journal mode with the background flush effectively disabled, so the test decides
+ * when the outbox is drained. A "crash" is modelled by dropping the flusher and starting a fresh one,
+ * or by failing the flush transaction half-way through.
+ */
+@SpringBootTest(properties = {
+        "app.transfer.journal.mode=OUTBOX",
+        "app.transfer.journal.flush-interval-millis=3600000",
+        "app.transfer.journal.batch-size=7",
+        "app.transfer.journal.insert-rows=3"
+})
+@ActiveProfiles("test")
+class TransactionOutboxRecoveryTest {
+
+    private static final int TRANSFERS = 20;
+    private static final Money AMOUNT = Money.of("1.50");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Card from;
+    private Card to;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User owner = new User();
+        owner.setUsername("outbox_" + suffix);
+        owner.setEmail("outbox_" + suffix + "@mail.com");
+        owner.setPassword("password");
+        owner.setUserRole(UserRole.ROLE_USER);
+        owner = userRepository.save(owner);
+        from = saveCard(owner, Money.of("100.00"));
+        to = saveCard(owner, Money.ZERO);
+    }
+
+    @Test
+    void transfersCommittedBeforeCrash_areFlushedByFreshFlusherExactlyOnce() {
+        transferAll();
+        assertEquals(TRANSFERS, countRows("transaction_outbox"));
+        assertEquals(0, countRows("transactions"));
+        assertEquals(Money.of("70.00"), cardRepository.findById(from.getId()).orElseThrow().getBalance());
+
+        newFlusher(jdbcTemplate).flushAll();
+
+        assertEquals(0, countRows("transaction_outbox"));
+        assertEquals(TRANSFERS, countRows("transactions"));
+        assertEquals(new BigDecimal("30.00"), jdbcTemplate.queryForObject(
+                "select sum(amount) from transactions where from_card_id = ?", BigDecimal.class, from.getId()));
+    }
+
+    @Test
+    void flushFailingHalfWay_rollsBackAndIsRetriedWithoutDuplicates() {
+        transferAll();
+        AtomicInteger deletes = new AtomicInteger();
+        JdbcTemplate failingJdbcTemplate = new JdbcTemplate(dataSource) {
+            @Override
+            public int update(String sql, Object... args) {
+                // the first insert and delete of the batch succeed, the second delete fails
+                if (sql.startsWith("DELETE") && deletes.incrementAndGet() == 2) {
+                    throw new DataAccessResourceFailureException("connection lost");
+                }
+                return super.update(sql, args);
+            }
+        };
+
+        assertThrows(DataAccessResourceFailureException.class, () -> newFlusher(failingJdbcTemplate).flushAll());
+        assertEquals(TRANSFERS, countRows("transaction_outbox"));
+        assertEquals(0, countRows("transactions"));
+
+        newFlusher(jdbcTemplate).flushAll();
+
+        assertEquals(0, countRows("transaction_outbox"));
+        assertEquals(TRANSFERS, countRows("transactions"));
+        assertEquals(TRANSFERS, jdbcTemplate.queryForObject(
+                "select count(distinct id) from transactions where from_card_id = ?", Integer.class, from.getId()));
+    }
+
+    @Test
+    void rejectedTransfer_leavesNothingInOutbox() {
+        TransferRequestDto tooMuch = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("1000.00"));
+
+        assertThrows(CardOperationException.class, () -> transferService.transfer(tooMuch));
+
+        assertEquals(0, countRows("transaction_outbox"));
+    }
+
+    @Test
+    void transferInOutboxMode_returnsTransactionWithoutId() {
+        Transaction transaction = transferService.transfer(new TransferRequestDto(from.getNumber(), to.getNumber(), AMOUNT));
+
+        assertNull(transaction.getId());
+        assertEquals(AMOUNT, transaction.getAmount());
+        assertEquals(1, countRows("transaction_outbox"));
+    }
+
+    private void transferAll() {
+        for (int i = 0; i < TRANSFERS; i++) {
+            transferService.transfer(new TransferRequestDto(from.getNumber(), to.getNumber(), AMOUNT));
+        }
+    }
+
+    private TransactionOutboxServiceImpl newFlusher(JdbcTemplate template) {
+        return new TransactionOutboxServiceImpl(template, transactionManager, new SimpleMeterRegistry(), 7, 3);
+    }
+
+    private int countRows(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table + " where from_card_id = ?",
+                Integer.class, from.getId());
+    }
+
+    private Card saveCard(User owner, Money balance) {
+        Card card = new Card();
+        card.setNumber(String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_999_999_999_999_999L)));
+        card.setExpireAt(LocalDate.now().plusYears(1));
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setBalance(balance);
+        card.setOwner(owner);
+        return cardRepository.save(card);
+    }
+}
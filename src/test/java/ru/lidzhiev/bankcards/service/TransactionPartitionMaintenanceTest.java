@@ -0,0 +1,123 @@
+package ru.lidzhiev.bankcards.service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.TransactionStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.service.impl.TransactionPartitionServiceImpl;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs changeset 8 and the partition maintenance on an embedded PostgreSQL.
+ * Maintenance is switched off for the application, so rows of a month after the partitions pre-created
+ * by the changeset land in the default partition, as they do when maintenance was enabled late.
+ */
+@SpringBootTest(properties = "app.transactions.partitioning.maintenance-enabled=false")
+class TransactionPartitionMaintenanceTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CardRepository cardRepository;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.jpa.show-sql", () -> "false");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void maintainPartitions_createsPartitionForRowsInDefaultPartition() {
+        YearMonth current = YearMonth.now();
+        YearMonth late = current.plusMonths(5);
+        List<String> partitions = partitions();
+        for (int i = 0; i <= 3; i++) {
+            assertTrue(partitions.contains(partitionName(current.plusMonths(i))), () -> "changeset 8 partitions: " + partitions);
+        }
+        assertFalse(partitions.contains(partitionName(late)), () -> "changeset 8 partitions: " + partitions);
+
+        List<Card> cards = seedCards();
+        jdbcTemplate.update("insert into transactions (from_card_id, to_card_id, amount, created_at, status) values (?, ?, 1.00, ?, ?)",
+                cards.get(0).getId(), cards.get(1).getId(), late.atDay(15).atStartOfDay(), TransactionStatus.SUCCESS.name());
+        assertEquals(1, count("transactions_default"));
+
+        TransactionPartitionService service = new TransactionPartitionServiceImpl(jdbcTemplate, 6, 0, ExpiredPartitionAction.DETACH);
+        service.maintainPartitions(current);
+        // a second run finds every partition in place
+        service.maintainPartitions(current);
+
+        assertTrue(partitions().contains(partitionName(late)), () -> "partitions: " + partitions());
+        assertEquals(1, count(partitionName(late)));
+        assertEquals(0, count("transactions_default"));
+        assertEquals(1, count("transactions"));
+        assertTrue(partitions().contains(partitionName(current.plusMonths(6))), () -> "partitions: " + partitions());
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+                + "join pg_class p on p.oid = i.inhparent where p.relname = 'transactions'", String.class);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+    }
+
+    private List<Card> seedCards() {
+        User owner = new User();
+        owner.setUsername("partition_owner");
+        owner.setEmail("partition_owner@mail.com");
+        owner.setPassword("password");
+        owner.setUserRole(UserRole.ROLE_USER);
+        owner = userRepository.save(owner);
+
+        Card from = card(owner, "9000000000000001");
+        Card to = card(owner, "9000000000000002");
+        return cardRepository.saveAll(List.of(from, to));
+    }
+
+    private static Card card(User owner, String number) {
+        Card card = new Card();
+        card.setNumber(number);
+        card.setExpireAt(LocalDate.now().plusYears(1));
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setBalance(Money.of("100.00"));
+        card.setOwner(owner);
+        return card;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("transactions_p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+}
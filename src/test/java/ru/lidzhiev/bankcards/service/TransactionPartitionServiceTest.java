@@ -0,0 +1,84 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.lidzhiev.bankcards.service.impl.TransactionPartitionServiceImpl;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class TransactionPartitionServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void maintainPartitions_createsCurrentAndFutureMonths() {
+        new TransactionPartitionServiceImpl(jdbcTemplate, 2, 0, ExpiredPartitionAction.DETACH)
+                .maintainPartitions(YearMonth.of(2026, 11));
+
+        verify(jdbcTemplate).execute("create table if not exists transactions_p2026_11 partition of transactions "
+                + "for values from ('2026-11-01') to ('2026-12-01')");
+        verify(jdbcTemplate).execute("create table if not exists transactions_p2026_12 partition of transactions "
+                + "for values from ('2026-12-01') to ('2027-01-01')");
+        verify(jdbcTemplate).execute("create table if not exists transactions_p2027_01 partition of transactions "
+                + "for values from ('2027-01-01') to ('2027-02-01')");
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(String.class));
+        // the default partition holds no rows of these months
+        verify(jdbcTemplate, times(3)).queryForObject(anyString(), eq(Boolean.class), any(), any());
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void maintainPartitions_movesDefaultPartitionRowsIntoNewPartition() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class),
+                eq(LocalDateTime.of(2026, 11, 1, 0, 0)), eq(LocalDateTime.of(2026, 12, 1, 0, 0)))).thenReturn(true);
+
+        new TransactionPartitionServiceImpl(jdbcTemplate, 0, 0, ExpiredPartitionAction.DETACH)
+                .maintainPartitions(YearMonth.of(2026, 11));
+
+        verify(jdbcTemplate).execute("do $$ begin "
+                + "lock table transactions_default in exclusive mode; "
+                + "create table transactions_p2026_11 (like transactions including defaults including constraints); "
+                + "with moved as (delete from transactions_default "
+                + "where created_at >= '2026-11-01' and created_at < '2026-12-01' returning *) "
+                + "insert into transactions_p2026_11 select * from moved; "
+                + "alter table transactions attach partition transactions_p2026_11 "
+                + "for values from ('2026-11-01') to ('2026-12-01'); "
+                + "end $$");
+        verify(jdbcTemplate, never()).execute(startsWith("create table if not exists"));
+    }
+
+    @Test
+    void maintainPartitions_detachesAndDropsOnlyExpiredMonthlyPartitions() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of(
+                "transactions_default", "transactions_p2025_12", "transactions_p2026_01", "transactions_p2026_02"));
+
+        new TransactionPartitionServiceImpl(jdbcTemplate, 0, 12, ExpiredPartitionAction.DROP)
+                .maintainPartitions(YearMonth.of(2027, 1));
+
+        verify(jdbcTemplate).execute("alter table transactions detach partition transactions_p2025_12");
+        verify(jdbcTemplate).execute("drop table transactions_p2025_12");
+        verify(jdbcTemplate, never()).execute("alter table transactions detach partition transactions_p2026_01");
+        verify(jdbcTemplate, never()).execute("alter table transactions detach partition transactions_default");
+    }
+
+    @Test
+    void maintainPartitions_keepsDetachedPartitionWhenDetachFails() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("transactions_p2025_01"));
+        doThrow(new DataIntegrityViolationException("locked"))
+                .when(jdbcTemplate).execute("alter table transactions detach partition transactions_p2025_01");
+
+        new TransactionPartitionServiceImpl(jdbcTemplate, 0, 1, ExpiredPartitionAction.DROP)
+                .maintainPartitions(YearMonth.of(2026, 10));
+
+        verify(jdbcTemplate, never()).execute("drop table transactions_p2025_01");
+    }
+}
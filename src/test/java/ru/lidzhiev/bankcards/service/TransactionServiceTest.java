@@ -1,45 +1,59 @@
 package ru.lidzhiev.bankcards.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 import ru.lidzhiev.bankcards.dto.TransferRequestDto;
 import ru.lidzhiev.bankcards.entity.Card;
 import ru.lidzhiev.bankcards.entity.Transaction;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
 import ru.lidzhiev.bankcards.repository.CardRepository;
 import ru.lidzhiev.bankcards.repository.TransactionRepository;
+import ru.lidzhiev.bankcards.repository.projection.CardCreditTarget;
+import ru.lidzhiev.bankcards.repository.projection.CardNumberId;
 import ru.lidzhiev.bankcards.service.impl.TransferServiceImpl;
+import ru.lidzhiev.bankcards.entity.Money;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.*;
 
 class TransactionServiceTest {
 
     private final CardRepository cardRepository = mock(CardRepository.class);
     private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
-    private final TransferService transactionService = new TransferServiceImpl(transactionRepository, cardRepository);
+    private final TransactionOutboxService transactionOutbox = mock(TransactionOutboxService.class);
+    private final TransferIdempotencyService transferIdempotency = mock(TransferIdempotencyService.class);
+    private final CardBalanceBucketService balanceBuckets = mock(CardBalanceBucketService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TransferService transactionService = new TransferServiceImpl(transactionRepository, transactionOutbox, cardRepository, transferIdempotency, balanceBuckets,
+            mock(PlatformTransactionManager.class), meterRegistry, TransferLockStrategy.PESSIMISTIC, 5, 1, TransactionJournalMode.DIRECT);
 
     @Test
     void transfer_successful() {
-        Card from = new Card(); from.setId(1L); from.setBalance(100.0); from.setStatus("ACTIVE"); from.setNumber("1234");
-        Card to = new Card(); to.setId(2L); to.setBalance(50.0); to.setStatus("ACTIVE"); to.setNumber("1233");
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("100.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+        Card to = new Card(); to.setId(2L); to.setBalance(Money.of("50.00")); to.setStatus("ACTIVE"); to.setNumber("1233");
 
         TransferRequestDto dto = TransferRequestDto.builder()
                 .fromCardNumber("1234")
                 .toCardNumber("1233")
-                .amount(30.0)
+                .amount(Money.of("30.00"))
                 .build();
 
-        when(cardRepository.findByNumber(dto.getFromCardNumber())).thenReturn(Optional.of(from));
-        when(cardRepository.findByNumber(dto.getToCardNumber())).thenReturn(Optional.of(to));
+        lockCards(from, to);
         when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         Transaction result = transactionService.transfer(dto);
 
-        assertEquals(70.0, from.getBalance());
-        assertEquals(80.0, to.getBalance());
+        assertEquals(Money.of("70.00"), from.getBalance());
+        assertEquals(Money.of("80.00"), to.getBalance());
         assertEquals("COMPLETED", result.getStatus());
         verify(cardRepository, times(1)).saveAll(List.of(from, to));
         verify(transactionRepository, times(1)).save(any(Transaction.class));
@@ -47,16 +61,15 @@ class TransactionServiceTest {
 
     @Test
     void transfer_notEnoughFunds() {
-        Card from = new Card(); from.setId(1L); from.setBalance(10.0); from.setStatus("ACTIVE"); from.setNumber("1234");
-        Card to = new Card(); to.setId(2L); to.setBalance(50.0); to.setStatus("ACTIVE"); to.setNumber("1233");
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("10.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+        Card to = new Card(); to.setId(2L); to.setBalance(Money.of("50.00")); to.setStatus("ACTIVE"); to.setNumber("1233");
 
         TransferRequestDto dto = TransferRequestDto.builder()
                 .fromCardNumber("1234")
                 .toCardNumber("1233")
-                .amount(20.0)
+                .amount(Money.of("20.00"))
                 .build();
-        when(cardRepository.findByNumber(dto.getFromCardNumber())).thenReturn(Optional.of(from));
-        when(cardRepository.findByNumber(dto.getToCardNumber())).thenReturn(Optional.of(to));
+        lockCards(from, to);
 
         RuntimeException e = assertThrows(RuntimeException.class,
                 () -> transactionService.transfer(dto));
@@ -65,20 +78,223 @@ class TransactionServiceTest {
 
     @Test
     void transfer_blockedCard() {
-        Card from = new Card(); from.setId(1L); from.setBalance(30.0); from.setStatus("BLOCKED"); from.setNumber("1234");
-        Card to = new Card(); to.setId(2L); to.setBalance(50.0); to.setStatus("ACTIVE"); to.setNumber("1233");
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("30.00")); from.setStatus("BLOCKED"); from.setNumber("1234");
+        Card to = new Card(); to.setId(2L); to.setBalance(Money.of("50.00")); to.setStatus("ACTIVE"); to.setNumber("1233");
 
         TransferRequestDto dto = TransferRequestDto.builder()
                 .fromCardNumber("1234")
                 .toCardNumber("1233")
-                .amount(20.0)
+                .amount(Money.of("20.00"))
                 .build();
-        when(cardRepository.findByNumber(dto.getFromCardNumber())).thenReturn(Optional.of(from));
-        when(cardRepository.findByNumber(dto.getToCardNumber())).thenReturn(Optional.of(to));
+        lockCards(from, to);
 
         RuntimeException e = assertThrows(RuntimeException.class,
                 () -> transactionService.transfer(dto));
         assertTrue(e.getMessage().contains("Операция невозможна: карта заблокирована"));
     }
-}
 
+    @Test
+    void transfer_duplicateCardNumber() {
+        when(cardRepository.findIdsByNumberIn(anyCollection()))
+                .thenReturn(List.of(cardId(1L, "1234"), cardId(2L, "1233"), cardId(3L, "1233")));
+
+        CardOperationException e = assertThrows(CardOperationException.class,
+                () -> transactionService.transfer(new TransferRequestDto("1234", "1233", Money.of("20.00"))));
+
+        assertEquals(ErrorCode.AMBIGUOUS_CARD_NUMBER, e.getErrorCode());
+        verify(cardRepository, never()).findAllByIdInForUpdate(anyCollection());
+    }
+
+    @Test
+    void transfer_optimistic_retriesOnVersionConflict() {
+        TransferService optimisticService = new TransferServiceImpl(transactionRepository, transactionOutbox, cardRepository, transferIdempotency, balanceBuckets,
+                mock(PlatformTransactionManager.class), meterRegistry, TransferLockStrategy.OPTIMISTIC, 5, 1, TransactionJournalMode.DIRECT);
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("100.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+        Card to = new Card(); to.setId(2L); to.setBalance(Money.of("50.00")); to.setStatus("ACTIVE"); to.setNumber("1233");
+
+        TransferRequestDto dto = new TransferRequestDto("1234", "1233", Money.of("30.00"));
+        when(cardRepository.findByNumber("1234")).thenReturn(Optional.of(from));
+        when(cardRepository.findByNumber("1233")).thenReturn(Optional.of(to));
+        when(cardRepository.saveAll(anyList()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction result = optimisticService.transfer(dto);
+
+        assertEquals("COMPLETED", result.getStatus());
+        assertEquals(1.0, meterRegistry.counter("bank.transfer.optimistic.retries").count());
+        assertEquals(0.0, meterRegistry.counter("bank.transfer.optimistic.aborts").count());
+    }
+
+    @Test
+    void transfer_optimistic_registersIdempotencyKeyInEveryAttempt() {
+        TransferService optimisticService = new TransferServiceImpl(transactionRepository, transactionOutbox, cardRepository, transferIdempotency, balanceBuckets,
+                mock(PlatformTransactionManager.class), meterRegistry, TransferLockStrategy.OPTIMISTIC, 5, 1, TransactionJournalMode.DIRECT);
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("100.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+        Card to = new Card(); to.setId(2L); to.setBalance(Money.of("50.00")); to.setStatus("ACTIVE"); to.setNumber("1233");
+
+        TransferRequestDto dto = new TransferRequestDto("1234", "1233", Money.of("30.00"));
+        TransferIdempotencyKey key = TransferIdempotencyKey.of("user", "key-1", "transfer", dto);
+        when(cardRepository.findByNumber("1234")).thenReturn(Optional.of(from));
+        when(cardRepository.findByNumber("1233")).thenReturn(Optional.of(to));
+        when(cardRepository.saveAll(anyList()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        optimisticService.transfer(dto, key);
+
+        // the first attempt was rolled back together with its key
+        verify(transferIdempotency, times(2)).register(key);
+    }
+
+    @Test
+    void transfer_optimistic_abortsAfterMaxRetries() {
+        TransferService optimisticService = new TransferServiceImpl(transactionRepository, transactionOutbox, cardRepository, transferIdempotency, balanceBuckets,
+                mock(PlatformTransactionManager.class), meterRegistry, TransferLockStrategy.OPTIMISTIC, 2, 1, TransactionJournalMode.DIRECT);
+        when(cardRepository.findByNumber("1234")).thenAnswer(invocation -> {
+            Card from = new Card(); from.setId(1L); from.setBalance(Money.of("100.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+            return Optional.of(from);
+        });
+        when(cardRepository.findByNumber("1233")).thenAnswer(invocation -> {
+            Card to = new Card(); to.setId(2L); to.setBalance(Money.of("50.00")); to.setStatus("ACTIVE"); to.setNumber("1233");
+            return Optional.of(to);
+        });
+        when(cardRepository.saveAll(anyList())).thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L));
+
+        CardOperationException e = assertThrows(CardOperationException.class,
+                () -> optimisticService.transfer(new TransferRequestDto("1234", "1233", Money.of("30.00"))));
+
+        assertEquals(ErrorCode.CARD_CONCURRENT_UPDATE, e.getErrorCode());
+        assertEquals(2.0, meterRegistry.counter("bank.transfer.optimistic.retries").count());
+        assertEquals(1.0, meterRegistry.counter("bank.transfer.optimistic.aborts").count());
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void transfer_atomic_updatesWithoutReadingBalances() {
+        TransferService atomicService = new TransferServiceImpl(transactionRepository, transactionOutbox, cardRepository, transferIdempotency, balanceBuckets,
+                mock(PlatformTransactionManager.class), meterRegistry, TransferLockStrategy.ATOMIC, 5, 1, TransactionJournalMode.DIRECT);
+        when(cardRepository.findIdsByNumberIn(anyCollection())).thenReturn(List.of(cardId(1L, "1234"), cardId(2L, "1233")));
+        when(cardRepository.debit(1L, new BigDecimal("30.00"))).thenReturn(1);
+        when(cardRepository.credit(2L, new BigDecimal("30.00"))).thenReturn(1);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction result = atomicService.transfer(new TransferRequestDto("1234", "1233", Money.of("30.00")));
+
+        assertEquals("COMPLETED", result.getStatus());
+        verify(cardRepository, never()).findById(anyLong());
+        verify(cardRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void transfer_atomic_mapsFailedDebitToInsufficientFunds() {
+        TransferService atomicService = new TransferServiceImpl(transactionRepository, transactionOutbox, cardRepository, transferIdempotency, balanceBuckets,
+                mock(PlatformTransactionManager.class), meterRegistry, TransferLockStrategy.ATOMIC, 5, 1, TransactionJournalMode.DIRECT);
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("10.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+        Card to = new Card(); to.setId(2L); to.setBalance(Money.of("50.00")); to.setStatus("ACTIVE"); to.setNumber("1233");
+        when(cardRepository.findIdsByNumberIn(anyCollection())).thenReturn(List.of(cardId(1L, "1234"), cardId(2L, "1233")));
+        when(cardRepository.debit(1L, new BigDecimal("30.00"))).thenReturn(0);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(from));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(to));
+
+        CardOperationException e = assertThrows(CardOperationException.class,
+                () -> atomicService.transfer(new TransferRequestDto("1234", "1233", Money.of("30.00"))));
+
+        assertEquals(ErrorCode.CARD_INSUFFICIENT_FUNDS, e.getErrorCode());
+        verify(cardRepository, never()).credit(anyLong(), any(BigDecimal.class));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void transfer_hotCard_creditsBucketWithoutLockingReceiver() {
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("100.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+        when(cardRepository.findIdsByNumberIn(anyCollection())).thenReturn(List.of(cardId(1L, "1234"), cardId(2L, "1233", 8)));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L))).thenReturn(List.of(from));
+        when(cardRepository.findCreditTargetForShare(2L)).thenReturn(Optional.of(creditTarget(2L, "ACTIVE", 8)));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction result = transactionService.transfer(new TransferRequestDto("1234", "1233", Money.of("30.00")));
+
+        assertEquals("COMPLETED", result.getStatus());
+        assertEquals(Money.of("70.00"), from.getBalance());
+        verify(balanceBuckets).credit(2L, 8, Money.of("30.00"));
+        verify(cardRepository, never()).findAllByIdInForUpdate(List.of(1L, 2L));
+    }
+
+    @Test
+    void transfer_hotCard_rejectsBlockedReceiver() {
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("100.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+        when(cardRepository.findIdsByNumberIn(anyCollection())).thenReturn(List.of(cardId(1L, "1234"), cardId(2L, "1233", 8)));
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L))).thenReturn(List.of(from));
+        when(cardRepository.findCreditTargetForShare(2L)).thenReturn(Optional.of(creditTarget(2L, "BLOCKED", 8)));
+
+        CardOperationException e = assertThrows(CardOperationException.class,
+                () -> transactionService.transfer(new TransferRequestDto("1234", "1233", Money.of("30.00"))));
+
+        assertEquals(ErrorCode.CARD_BLOCKED, e.getErrorCode());
+        verify(balanceBuckets, never()).credit(anyLong(), anyInt(), any(Money.class));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void transfer_fromHotCard_consolidatesBucketsBeforeCheckingFunds() {
+        Card from = new Card(); from.setId(1L); from.setBalance(Money.of("10.00")); from.setStatus("ACTIVE"); from.setNumber("1234");
+        from.setBalanceBuckets(4);
+        Card to = new Card(); to.setId(2L); to.setBalance(Money.of("50.00")); to.setStatus("ACTIVE"); to.setNumber("1233");
+        lockCards(from, to);
+        doAnswer(invocation -> {
+            from.consolidate(Money.of("40.00"));
+            return null;
+        }).when(balanceBuckets).consolidateIfShort(from, Money.of("30.00"));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transactionService.transfer(new TransferRequestDto("1234", "1233", Money.of("30.00")));
+
+        assertEquals(Money.of("20.00"), from.getBalance());
+        assertEquals(Money.of("80.00"), to.getBalance());
+    }
+
+    @Test
+    void transfer_atomic_consolidatesHotSenderAndRetriesDebit() {
+        TransferService atomicService = new TransferServiceImpl(transactionRepository, transactionOutbox, cardRepository, transferIdempotency, balanceBuckets,
+                mock(PlatformTransactionManager.class), meterRegistry, TransferLockStrategy.ATOMIC, 5, 1, TransactionJournalMode.DIRECT);
+        when(cardRepository.findIdsByNumberIn(anyCollection())).thenReturn(List.of(cardId(1L, "1234", 4), cardId(2L, "1233")));
+        when(cardRepository.debit(1L, new BigDecimal("30.00"))).thenReturn(0, 1);
+        when(balanceBuckets.consolidate(1L)).thenReturn(true);
+        when(cardRepository.credit(2L, new BigDecimal("30.00"))).thenReturn(1);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction result = atomicService.transfer(new TransferRequestDto("1234", "1233", Money.of("30.00")));
+
+        assertEquals("COMPLETED", result.getStatus());
+        verify(cardRepository, times(2)).debit(1L, new BigDecimal("30.00"));
+    }
+
+    private void lockCards(Card from, Card to) {
+        when(cardRepository.findIdsByNumberIn(anyCollection()))
+                .thenReturn(List.of(cardId(from.getId(), from.getNumber()), cardId(to.getId(), to.getNumber())));
+        when(cardRepository.findAllByIdInForUpdate(anyCollection())).thenReturn(List.of(from, to));
+    }
+
+    private static CardNumberId cardId(Long id, String number) {
+        return cardId(id, number, 0);
+    }
+
+    private static CardNumberId cardId(Long id, String number, int buckets) {
+        return new CardNumberId() {
+            public Long getId() { return id; }
+            public String getNumber() { return number; }
+            public int getBalanceBuckets() { return buckets; }
+        };
+    }
+
+    private static CardCreditTarget creditTarget(Long id, String status, int buckets) {
+        return new CardCreditTarget() {
+            public Long getId() { return id; }
+            public String getStatus() { return status; }
+            public int getBalanceBuckets() { return buckets; }
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.entity.Money;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test for the transfer paths: many threads move money between a small set of hot cards,
+ * the total balance must stay the same and no card may go negative.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TransferConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int TRANSFERS_PER_THREAD = 25;
+    private static final int HOT_CARDS = 4;
+    private static final Money INITIAL_BALANCE = Money.of("1000.00");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User owner;
+    private List<Card> cards;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        owner = new User();
+        owner.setUsername("stress_" + suffix);
+        owner.setEmail("stress_" + suffix + "@mail.com");
+        owner.setPassword("password");
+        owner.setUserRole(UserRole.ROLE_USER);
+        owner = userRepository.save(owner);
+
+        cards = new ArrayList<>();
+        for (int i = 0; i < HOT_CARDS; i++) {
+            Card card = new Card();
+            card.setNumber(String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_999_999_999_999_999L)));
+            card.setExpireAt(LocalDate.now().plusYears(1));
+            card.setStatus(CardStatus.ACTIVE.name());
+            card.setBalance(INITIAL_BALANCE);
+            card.setOwner(owner);
+            cards.add(cardRepository.save(card));
+        }
+    }
+
+    @Test
+    void concurrentTransfers_conserveTotalBalance() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            boolean viaCardService = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(HOT_CARDS);
+                    int to = (from + 1 + random.nextInt(HOT_CARDS - 1)) % HOT_CARDS;
+                    TransferRequestDto dto = new TransferRequestDto(
+                            cards.get(from).getNumber(), cards.get(to).getNumber(), Money.ofMinor(100L + random.nextInt(10_000)));
+                    try {
+                        if (viaCardService) {
+                            cardService.transfer(dto, owner.getUsername());
+                        } else {
+                            transferService.transfer(dto);
+                        }
+                        completed.incrementAndGet();
+                    } catch (CardOperationException e) {
+                        assertTrue(e.getErrorCode() == ErrorCode.CARD_INSUFFICIENT_FUNDS
+                                || e.getErrorCode() == ErrorCode.CARD_CONCURRENT_UPDATE, e.getErrorCode().name());
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Money total = Money.ZERO;
+        for (Card card : cards) {
+            Card reloaded = cardRepository.findById(card.getId()).orElseThrow();
+            assertFalse(reloaded.getBalance().isNegative(), "balance must never go negative");
+            total = total.plus(reloaded.getBalance());
+        }
+        assertEquals(Money.ofMinor(HOT_CARDS * INITIAL_BALANCE.getMinorUnits()), total);
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, completed.get() + rejected.get());
+        assertTrue(completed.get() > 0);
+    }
+}
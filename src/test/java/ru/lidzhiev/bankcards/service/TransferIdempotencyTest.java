@@ -0,0 +1,223 @@
+package ru.lidzhiev.bankcards.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.lidzhiev.bankcards.dto.TransferRequestDto;
+import ru.lidzhiev.bankcards.entity.Card;
+import ru.lidzhiev.bankcards.entity.Money;
+import ru.lidzhiev.bankcards.entity.User;
+import ru.lidzhiev.bankcards.entity.enums.CardStatus;
+import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.exception.CardOperationException;
+import ru.lidzhiev.bankcards.exception.ErrorCode;
+import ru.lidzhiev.bankcards.repository.CardRepository;
+import ru.lidzhiev.bankcards.repository.UserRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Transfers with an idempotency key are executed once: retries are answered from the key store
+ * without touching the cards, and only committed transfers store their key.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TransferIdempotencyTest {
+
+    @Autowired
+    private TransferIdempotencyService transferIdempotency;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private Card from;
+    private Card to;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        owner = new User();
+        owner.setUsername("idempotency_" + suffix);
+        owner.setEmail("idempotency_" + suffix + "@mail.com");
+        owner.setPassword("password");
+        owner.setUserRole(UserRole.ROLE_USER);
+        owner = userRepository.save(owner);
+        from = saveCard("100.00");
+        to = saveCard("0.00");
+    }
+
+    @Test
+    void transfer_RetryWithSameKey_IsReplayedWithoutDebitingAgain() {
+        TransferRequestDto dto = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("30.00"));
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(owner.getUsername(), "key-1", "transfer", dto);
+
+        assertFalse(transferIdempotency.execute(key, () -> transferService.transfer(dto, key)));
+        assertTrue(transferIdempotency.execute(key, () -> fail("a replay must not execute the transfer")));
+
+        assertBalances("70.00", "30.00");
+        assertEquals(1, countTransactions());
+    }
+
+    @Test
+    void cardTransfer_RetryWithSameKey_IsReplayedWithoutDebitingAgain() {
+        TransferRequestDto dto = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("30.00"));
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(owner.getUsername(), "key-1", "card_transfer", dto);
+
+        assertFalse(transferIdempotency.execute(key, () -> cardService.transfer(dto, owner.getUsername(), key)));
+        assertTrue(transferIdempotency.execute(key, () -> cardService.transfer(dto, owner.getUsername(), key)));
+
+        assertBalances("70.00", "30.00");
+    }
+
+    @Test
+    void transfer_StoredKeyIsFoundAfterCacheMiss() {
+        TransferRequestDto dto = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("30.00"));
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(owner.getUsername(), "key-1", "transfer", dto);
+        jdbcTemplate.update("INSERT INTO transfer_idempotency_keys (username, idempotency_key, request_hash, created_at) VALUES (?, ?, ?, ?)",
+                key.username(), key.key(), key.fingerprint(), Timestamp.valueOf(LocalDateTime.now()));
+
+        assertTrue(transferIdempotency.execute(key, () -> fail("a replay must not execute the transfer")));
+        assertBalances("100.00", "0.00");
+    }
+
+    @Test
+    void transfer_SameKeyWithDifferentRequest_IsRejected() {
+        TransferRequestDto dto = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("30.00"));
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(owner.getUsername(), "key-1", "transfer", dto);
+        transferIdempotency.execute(key, () -> transferService.transfer(dto, key));
+
+        TransferRequestDto other = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("40.00"));
+        TransferIdempotencyKey otherKey = TransferIdempotencyKey.of(owner.getUsername(), "key-1", "transfer", other);
+        CardOperationException e = assertThrows(CardOperationException.class,
+                () -> transferIdempotency.execute(otherKey, () -> transferService.transfer(other, otherKey)));
+
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_REUSED, e.getErrorCode());
+        assertBalances("70.00", "30.00");
+    }
+
+    @Test
+    void transfer_KeysAreScopedByUser() {
+        TransferRequestDto dto = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("30.00"));
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(owner.getUsername(), "key-1", "transfer", dto);
+        TransferIdempotencyKey otherUserKey = TransferIdempotencyKey.of("other_" + owner.getUsername(), "key-1", "transfer", dto);
+
+        assertFalse(transferIdempotency.execute(key, () -> transferService.transfer(dto, key)));
+        assertFalse(transferIdempotency.execute(otherUserKey, () -> transferService.transfer(dto, otherUserKey)));
+
+        assertBalances("40.00", "60.00");
+    }
+
+    @Test
+    void transfer_FailedTransferDoesNotStoreKey() {
+        TransferRequestDto dto = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("300.00"));
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(owner.getUsername(), "key-1", "transfer", dto);
+        CardOperationException e = assertThrows(CardOperationException.class,
+                () -> transferIdempotency.execute(key, () -> transferService.transfer(dto, key)));
+        assertEquals(ErrorCode.CARD_INSUFFICIENT_FUNDS, e.getErrorCode());
+
+        Card reloaded = cardRepository.findById(from.getId()).orElseThrow();
+        reloaded.setBalance(Money.of("500.00"));
+        cardRepository.save(reloaded);
+
+        assertFalse(transferIdempotency.execute(key, () -> transferService.transfer(dto, key)));
+        assertBalances("200.00", "300.00");
+    }
+
+    @Test
+    void transfer_ConcurrentRequestsWithSameKey_DebitOnce() throws Exception {
+        int threads = 8;
+        TransferRequestDto dto = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("10.00"));
+        TransferIdempotencyKey key = TransferIdempotencyKey.of(owner.getUsername(), "key-1", "transfer", dto);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return transferIdempotency.execute(key, () -> transferService.transfer(dto, key));
+            }));
+        }
+
+        start.countDown();
+        int executed = 0;
+        try {
+            for (Future<Boolean> future : futures) {
+                if (!future.get(1, TimeUnit.MINUTES)) {
+                    executed++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, executed);
+        assertBalances("90.00", "10.00");
+    }
+
+    @Test
+    void purgeExpired_DeletesKeysOlderThanRetention() {
+        jdbcTemplate.update("INSERT INTO transfer_idempotency_keys (username, idempotency_key, request_hash, created_at) VALUES (?, ?, ?, ?)",
+                owner.getUsername(), "old", "0".repeat(64), Timestamp.valueOf(LocalDateTime.now().minusDays(2)));
+        jdbcTemplate.update("INSERT INTO transfer_idempotency_keys (username, idempotency_key, request_hash, created_at) VALUES (?, ?, ?, ?)",
+                owner.getUsername(), "recent", "0".repeat(64), Timestamp.valueOf(LocalDateTime.now()));
+
+        assertTrue(transferIdempotency.purgeExpired() >= 1);
+
+        List<String> keys = jdbcTemplate.queryForList(
+                "SELECT idempotency_key FROM transfer_idempotency_keys WHERE username = ?", String.class, owner.getUsername());
+        assertEquals(List.of("recent"), keys);
+    }
+
+    @Test
+    void of_RejectsBlankAndOverlongKeys() {
+        TransferRequestDto dto = new TransferRequestDto(from.getNumber(), to.getNumber(), Money.of("10.00"));
+        assertEquals(ErrorCode.INVALID_IDEMPOTENCY_KEY, assertThrows(CardOperationException.class,
+                () -> TransferIdempotencyKey.of(owner.getUsername(), " ", "transfer", dto)).getErrorCode());
+        assertEquals(ErrorCode.INVALID_IDEMPOTENCY_KEY, assertThrows(CardOperationException.class,
+                () -> TransferIdempotencyKey.of(owner.getUsername(), "k".repeat(TransferIdempotencyKey.MAX_KEY_LENGTH + 1), "transfer", dto)).getErrorCode());
+    }
+
+    private void assertBalances(String fromBalance, String toBalance) {
+        assertEquals(Money.of(fromBalance), cardRepository.findById(from.getId()).orElseThrow().getBalance());
+        assertEquals(Money.of(toBalance), cardRepository.findById(to.getId()).orElseThrow().getBalance());
+    }
+
+    private long countTransactions() {
+        Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM transactions WHERE from_card_id = ?", Long.class, from.getId());
+        return count != null ? count : 0;
+    }
+
+    private Card saveCard(String balance) {
+        Card card = new Card();
+        card.setNumber(String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_999_999_999_999_999L)));
+        card.setExpireAt(LocalDate.now().plusYears(1));
+        card.setStatus(CardStatus.ACTIVE.name());
+        card.setBalance(Money.of(balance));
+        card.setOwner(owner);
+        return cardRepository.save(card);
+    }
+}
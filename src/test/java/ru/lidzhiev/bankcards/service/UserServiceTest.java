@@ -1,32 +1,42 @@
 package ru.lidzhiev.bankcards.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import ru.lidzhiev.bankcards.dto.CreateUserDto;
 import ru.lidzhiev.bankcards.dto.UserDto;
 import ru.lidzhiev.bankcards.entity.User;
 import ru.lidzhiev.bankcards.entity.enums.UserRole;
+import ru.lidzhiev.bankcards.event.UserModifiedEvent;
 import ru.lidzhiev.bankcards.repository.UserRepository;
+import ru.lidzhiev.bankcards.security.UserSnapshot;
 import ru.lidzhiev.bankcards.service.impl.UserServiceImpl;
 
 
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.mockito.Mockito.*;
 
 class UserServiceTest {
 
     private UserRepository userRepository;
     private PasswordEncoder passwordEncoder;
-    private UserService userService;
+    private ApplicationEventPublisher eventPublisher;
+    private SimpleMeterRegistry meterRegistry;
+    private UserServiceImpl userService;
 
     @BeforeEach
     void setUp() {
         userRepository = mock(UserRepository.class);
         passwordEncoder = mock(PasswordEncoder.class);
-        userService = new UserServiceImpl(userRepository, passwordEncoder);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        userService = new UserServiceImpl(userRepository, passwordEncoder, eventPublisher, meterRegistry, 100, 10);
     }
 
     @Test
@@ -92,4 +102,43 @@ class UserServiceTest {
         assertEquals("u", dto.getUsername());
         assertEquals("e", dto.getEmail());
     }
+
+    @Test
+    void deleteUser_PublishesUserModifiedEvent() {
+        User user = new User();
+        user.setId(3L);
+        user.setUsername("removed");
+
+        when(userRepository.findById(3L)).thenReturn(Optional.of(user));
+
+        userService.deleteUser(3L);
+
+        verify(userRepository).delete(user);
+        verify(eventPublisher).publishEvent(argThat((Object event) ->
+                event instanceof UserModifiedEvent modified && modified.getUserId().equals(3L) && modified.getUsername().equals("removed")));
+    }
+
+    @Test
+    void findSnapshotByUsername_CachesUser_UntilUserModified() {
+        User user = new User();
+        user.setId(4L);
+        user.setUsername("cached");
+        user.setPassword("hash");
+        user.setUserRole(UserRole.ROLE_USER);
+
+        when(userRepository.findByUsername("cached")).thenReturn(Optional.of(user));
+
+        userService.findSnapshotByUsername("cached");
+        // changes of the loaded entity do not leak into the cache
+        user.setPassword("changed");
+        UserDetails details = userService.loadUserByUsername("cached");
+        verify(userRepository, times(1)).findByUsername("cached");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit").functionCounter().count());
+        assertInstanceOf(UserSnapshot.class, details);
+        assertEquals("hash", details.getPassword());
+
+        userService.onUserModified(new UserModifiedEvent(4L, "cached"));
+        assertEquals("changed", userService.findSnapshotByUsername("cached").getPassword());
+        verify(userRepository, times(2)).findByUsername("cached");
+    }
 }